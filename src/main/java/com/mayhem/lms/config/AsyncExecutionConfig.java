@@ -0,0 +1,48 @@
+package com.mayhem.lms.config;
+
+import com.mayhem.lms.web.AsyncWorkload;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Bounded executors for asynchronous handlers, one per workload class so slow bulk reads and BCrypt
+ * logins cannot starve each other or the servlet threads serving short CRUD calls.
+ * Sized with lms.async.&lt;workload&gt;.core-size / max-size / queue-capacity / timeout-ms; a full queue
+ * rejects instead of growing. The executors are owned by the workloads rather than exposed as Executor
+ * beans, which would replace Spring Boot's applicationTaskExecutor. Metrics are executor.*{name=lms-&lt;workload&gt;}.
+ */
+@Configuration
+public class AsyncExecutionConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public AsyncWorkload authWorkload(Environment environment, MeterRegistry meterRegistry) {
+        return workload("auth", environment, meterRegistry, 4, 8, 100, 5000);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public AsyncWorkload bulkReadWorkload(Environment environment, MeterRegistry meterRegistry) {
+        return workload("bulk-read", environment, meterRegistry, 2, 4, 20, 15000);
+    }
+
+    private static AsyncWorkload workload(String name, Environment environment, MeterRegistry meterRegistry,
+                                          int defaultCoreSize, int defaultMaxSize, int defaultQueueCapacity, long defaultTimeoutMillis) {
+        String prefix = "lms.async." + name + ".";
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("lms-" + name + "-");
+        executor.setCorePoolSize(environment.getProperty(prefix + "core-size", Integer.class, defaultCoreSize));
+        executor.setMaxPoolSize(environment.getProperty(prefix + "max-size", Integer.class, defaultMaxSize));
+        executor.setQueueCapacity(environment.getProperty(prefix + "queue-capacity", Integer.class, defaultQueueCapacity));
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "lms-" + name, Tags.empty()).bindTo(meterRegistry);
+        return new AsyncWorkload(name, executor,
+                environment.getProperty(prefix + "timeout-ms", Long.class, defaultTimeoutMillis));
+    }
+}
@@ -0,0 +1,55 @@
+package com.mayhem.lms.config;
+
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Map;
+
+/**
+ * Carries the submitting thread's per-request context onto executor threads: the logging MDC,
+ * the request attributes (request and session scope), the primary pinning of {@link ReplicaRoutingContext}
+ * and the registered context-propagation thread locals, among them the open observation so spans started on
+ * the worker are children of the request's span.
+ * Whatever the worker thread had before is restored afterwards, pooled threads never leak a request's context.
+ */
+public class ContextPropagatingTaskDecorator implements TaskDecorator {
+
+    private final ContextSnapshotFactory snapshotFactory = ContextSnapshotFactory.builder().build();
+
+    @Override
+    public Runnable decorate(Runnable task) {
+        ContextSnapshot snapshot = snapshotFactory.captureAll();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        boolean primaryForced = ReplicaRoutingContext.isPrimaryForced();
+        return () -> {
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+            boolean previousPrimaryForced = ReplicaRoutingContext.isPrimaryForced();
+            apply(mdc, requestAttributes, primaryForced);
+            try (ContextSnapshot.Scope scope = snapshot.setThreadLocals()) {
+                task.run();
+            } finally {
+                apply(previousMdc, previousAttributes, previousPrimaryForced);
+            }
+        };
+    }
+
+    private static void apply(Map<String, String> mdc, RequestAttributes requestAttributes, boolean primaryForced) {
+        if (mdc == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(mdc);
+        }
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+        if (primaryForced) {
+            ReplicaRoutingContext.forcePrimary();
+        } else {
+            ReplicaRoutingContext.clear();
+        }
+    }
+}
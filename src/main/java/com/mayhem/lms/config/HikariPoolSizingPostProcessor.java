@@ -0,0 +1,43 @@
+package com.mayhem.lms.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sizes every Hikari pool from the number of cores, (cores * connections-per-core) + spindles,
+ * unless maximum-pool-size was configured explicitly for that pool.
+ */
+@Component
+@ConditionalOnProperty(prefix = "lms.datasource.pool", name = "connections-per-core")
+public class HikariPoolSizingPostProcessor implements BeanPostProcessor, EnvironmentAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(HikariPoolSizingPostProcessor.class);
+
+    private int connectionsPerCore;
+    private int spindles;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.connectionsPerCore = environment.getRequiredProperty("lms.datasource.pool.connections-per-core", Integer.class);
+        this.spindles = environment.getProperty("lms.datasource.pool.spindles", Integer.class, 1);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource dataSource && dataSource.getMaximumPoolSize() < 1) {
+            int poolSize = Runtime.getRuntime().availableProcessors() * connectionsPerCore + spindles;
+            dataSource.setMaximumPoolSize(poolSize);
+            if (dataSource.getMinimumIdle() > poolSize) {
+                dataSource.setMinimumIdle(poolSize);
+            }
+            logger.info("Pool size of datasource {} derived from core count: {}", beanName, poolSize);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,137 @@
+package com.mayhem.lms.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * One observation, and so one span, per call into a controller, service or repository bean, named after the
+ * class and method (LoanController.getLoanByID, LoanServiceImpl.getLoanById, LoanRepository.findById).
+ * Loan and user ids among the arguments are added as lms.loan.id and lms.user.id, the size of a returned
+ * list, slice or optional as lms.result.count. Together with the HTTP server span and the per-statement
+ * JDBC spans this breaks a request down by layer.
+ * <p>
+ * Only calls made while a request or scheduled task is observed are traced, so the warm-up and startup do not
+ * produce spans of their own. JDBC connection observations do not count, they stay current for as long as a
+ * connection is held. The aspect runs outside the transaction interceptor, so a service span includes
+ * getting the connection and committing.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "lms.tracing.layers.enabled", havingValue = "true", matchIfMissing = true)
+public class LayerTracingAspect {
+
+    private static final String REPOSITORY_PACKAGE = "com.mayhem.lms.repository";
+
+    private final ObservationRegistry observationRegistry;
+
+    public LayerTracingAspect(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Pointcut("!@annotation(org.springframework.scheduling.annotation.Scheduled)")
+    void notScheduled() {
+    }
+
+    @Around("within(com.mayhem.lms.controller..*) && notScheduled()")
+    public Object controller(ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe("lms.controller", "controller", joinPoint);
+    }
+
+    @Around("within(com.mayhem.lms.service..*) && notScheduled()")
+    public Object service(ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe("lms.service", "service", joinPoint);
+    }
+
+    /** Spring Data proxies implement the repository interfaces, inherited methods like findById match too */
+    @Around("execution(* com.mayhem.lms.repository..*.*(..))")
+    public Object repository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe("lms.repository", "repository", joinPoint);
+    }
+
+    private Object observe(String name, String layer, ProceedingJoinPoint joinPoint) throws Throwable {
+        if (observationRegistry.isNoop() || !TracingConfig.withinObservedWork(observationRegistry.getCurrentObservation())) {
+            return joinPoint.proceed();
+        }
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        String type = layer.equals("repository") ? repositoryName(joinPoint.getThis(), signature)
+                : joinPoint.getTarget().getClass().getSimpleName();
+        String method = signature.getName();
+        Observation observation = Observation.createNotStarted(name, observationRegistry)
+                .contextualName(type + "." + method)
+                .lowCardinalityKeyValue("lms.layer", layer)
+                .lowCardinalityKeyValue("code.namespace", type)
+                .lowCardinalityKeyValue("code.function", method);
+        addIds(observation, type, signature.getParameterNames(), joinPoint.getArgs());
+        observation.start();
+        try (Observation.Scope scope = observation.openScope()) {
+            Object result = joinPoint.proceed();
+            Integer count = count(result);
+            if (count != null) {
+                observation.highCardinalityKeyValue("lms.result.count", Integer.toString(count));
+            }
+            return result;
+        } catch (Throwable e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private static void addIds(Observation observation, String type, String[] names, Object[] args) {
+        if (names == null) {
+            return;
+        }
+        for (int i = 0; i < names.length && i < args.length; i++) {
+            if (!(args[i] instanceof Long id)) {
+                continue;
+            }
+            String key = switch (names[i]) {
+                case "loanId" -> "lms.loan.id";
+                case "userId" -> "lms.user.id";
+                case "id" -> type.startsWith("Loan") ? "lms.loan.id" : type.startsWith("User") ? "lms.user.id" : null;
+                default -> null;
+            };
+            if (key != null) {
+                observation.highCardinalityKeyValue(key, id.toString());
+            }
+        }
+    }
+
+    private static Integer count(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return null;
+    }
+
+    private static String repositoryName(Object proxy, MethodSignature signature) {
+        for (Class<?> type : AopProxyUtils.proxiedUserInterfaces(proxy)) {
+            if (type.getPackageName().startsWith(REPOSITORY_PACKAGE)) {
+                return type.getSimpleName();
+            }
+        }
+        return signature.getDeclaringType().getSimpleName();
+    }
+}
@@ -0,0 +1,44 @@
+package com.mayhem.lms.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Beans that stay eager when spring.main.lazy-initialization is on (faststart profile).
+ * The connection pool, Flyway and the entity manager factory are created during startup, so the first
+ * request does not pay for migrations and Hibernate bootstrap. Beans with @Scheduled methods are created
+ * too, a lazy bean's schedule would never be registered. Everything else, controllers and services
+ * included, is created on first use.
+ */
+@Configuration
+public class LazyInitializationConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerInfrastructureAndScheduledBeans() {
+        return (beanName, beanDefinition, beanType) -> beanType != null
+                && (DataSource.class.isAssignableFrom(beanType)
+                || Flyway.class.isAssignableFrom(beanType)
+                || FlywayMigrationInitializer.class.isAssignableFrom(beanType)
+                || EntityManagerFactory.class.isAssignableFrom(beanType)
+                || AbstractEntityManagerFactoryBean.class.isAssignableFrom(beanType)
+                || hasScheduledMethods(beanType));
+    }
+
+    private static boolean hasScheduledMethods(Class<?> beanType) {
+        AtomicBoolean scheduled = new AtomicBoolean();
+        ReflectionUtils.doWithMethods(beanType, method -> scheduled.set(true),
+                method -> AnnotatedElementUtils.hasAnnotation(method, Scheduled.class));
+        return scheduled.get();
+    }
+}
@@ -0,0 +1,109 @@
+package com.mayhem.lms.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.IdentityGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Logs the effective connection pool, JDBC and Hibernate settings once the application is ready
+ * and warns about configurations known to hurt performance.
+ */
+@Component
+public class PerformanceSettingsReport {
+
+    private static final Logger logger = LoggerFactory.getLogger(PerformanceSettingsReport.class);
+
+    private final ApplicationContext applicationContext;
+    private final Environment environment;
+
+    public PerformanceSettingsReport(ApplicationContext applicationContext, Environment environment) {
+        this.applicationContext = applicationContext;
+        this.environment = environment;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        List<String> warnings = collectWarnings();
+        logger.info("Performance settings: profiles={}, cores={}, ddl-auto={}, open-in-view={}, flyway={}, "
+                        + "jdbc.batch_size={}, order_inserts={}, order_updates={}, jdbc.fetch_size={}",
+                Arrays.toString(environment.getActiveProfiles()),
+                Runtime.getRuntime().availableProcessors(),
+                environment.getProperty("spring.jpa.hibernate.ddl-auto", "none"),
+                environment.getProperty("spring.jpa.open-in-view", "true"),
+                environment.getProperty("spring.flyway.enabled", "true"),
+                hibernateProperty("jdbc.batch_size"),
+                hibernateProperty("order_inserts"),
+                hibernateProperty("order_updates"),
+                hibernateProperty("jdbc.fetch_size"));
+        for (Map.Entry<String, HikariDataSource> pool : applicationContext.getBeansOfType(HikariDataSource.class).entrySet()) {
+            HikariDataSource dataSource = pool.getValue();
+            logger.info("Connection pool {}: maximumPoolSize={}, minimumIdle={}, connectionTimeout={}ms, maxLifetime={}ms, driverProperties={}",
+                    pool.getKey(), dataSource.getMaximumPoolSize(), dataSource.getMinimumIdle(),
+                    dataSource.getConnectionTimeout(), dataSource.getMaxLifetime(), dataSource.getDataSourceProperties());
+        }
+        warnings.forEach(warning -> logger.warn("Performance anti-pattern: {}", warning));
+    }
+
+    List<String> collectWarnings() {
+        List<String> warnings = new ArrayList<>();
+        String ddlAuto = environment.getProperty("spring.jpa.hibernate.ddl-auto", "none");
+        if (ddlAuto.equals("update") || ddlAuto.startsWith("create")) {
+            warnings.add("spring.jpa.hibernate.ddl-auto=" + ddlAuto + " diffs the schema on every startup, use Flyway migrations and validate");
+        }
+        if (environment.getProperty("spring.jpa.open-in-view", Boolean.class, true)) {
+            warnings.add("spring.jpa.open-in-view holds a connection for the whole request, set it to false");
+        }
+        if (hibernateProperty("jdbc.batch_size") == null) {
+            warnings.add("hibernate.jdbc.batch_size is not set, inserts and updates are sent one statement at a time");
+        }
+        if (environment.getProperty("spring.jpa.show-sql", Boolean.class, false)) {
+            warnings.add("spring.jpa.show-sql writes every statement to stdout synchronously");
+        }
+        if (ClassUtils.isPresent("org.springframework.boot.devtools.RemoteSpringApplication", getClass().getClassLoader())) {
+            warnings.add("spring-boot-devtools is on the classpath, it restarts the context and disables template caching");
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (Map.Entry<String, HikariDataSource> pool : applicationContext.getBeansOfType(HikariDataSource.class).entrySet()) {
+            if (pool.getValue().getMaximumPoolSize() > cores * 4 + 1) {
+                warnings.add("pool " + pool.getKey() + " has " + pool.getValue().getMaximumPoolSize()
+                        + " connections for " + cores + " cores, oversized pools add contention on the database");
+            }
+        }
+        List<String> identityEntities = identityGeneratedEntities();
+        if (!identityEntities.isEmpty() && hibernateProperty("jdbc.batch_size") != null) {
+            warnings.add("IDENTITY ids disable Hibernate insert batching for " + identityEntities);
+        }
+        return warnings;
+    }
+
+    private List<String> identityGeneratedEntities() {
+        List<String> entities = new ArrayList<>();
+        for (EntityManagerFactory entityManagerFactory : applicationContext.getBeansOfType(EntityManagerFactory.class).values()) {
+            entityManagerFactory.unwrap(SessionFactoryImplementor.class).getMappingMetamodel()
+                    .forEachEntityDescriptor(descriptor -> {
+                        if (descriptor.getGenerator() instanceof IdentityGenerator) {
+                            entities.add(descriptor.getMappedClass().getSimpleName());
+                        }
+                    });
+        }
+        return entities;
+    }
+
+    private String hibernateProperty(String name) {
+        return environment.getProperty("spring.jpa.properties.hibernate." + name);
+    }
+}
@@ -0,0 +1,65 @@
+package com.mayhem.lms.config;
+
+import com.mayhem.lms.dto.GetUserDto;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Pins mutating requests to the primary and keeps a user's reads on the primary
+ * for a short window after their own mutation, so they never read stale replica data.
+ * Asynchronous handlers get the flag through {@link ContextPropagatingTaskDecorator}.
+ */
+public class ReadYourWritesInterceptor implements AsyncHandlerInterceptor {
+
+    static final String LAST_WRITE_ATTRIBUTE = "lastWriteAt";
+
+    private final long stickinessWindowMillis;
+
+    public ReadYourWritesInterceptor(long stickinessWindowMillis) {
+        this.stickinessWindowMillis = stickinessWindowMillis;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!isSafeMethod(request) || wroteRecently(request)) {
+            ReplicaRoutingContext.forcePrimary();
+        }
+        return true;
+    }
+
+    /**
+     * The servlet thread is released before afterCompletion runs on the async dispatch, clear it now
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReplicaRoutingContext.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReplicaRoutingContext.clear();
+        if (isSafeMethod(request) || response.getStatus() >= 400) {
+            return;
+        }
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute("user") instanceof GetUserDto) {
+            session.setAttribute(LAST_WRITE_ATTRIBUTE, System.currentTimeMillis());
+        }
+    }
+
+    private boolean wroteRecently(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return false;
+        }
+        Object lastWrite = session.getAttribute(LAST_WRITE_ATTRIBUTE);
+        return lastWrite instanceof Long lastWriteAt
+                && System.currentTimeMillis() - lastWriteAt < stickinessWindowMillis;
+    }
+
+    private static boolean isSafeMethod(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    }
+}
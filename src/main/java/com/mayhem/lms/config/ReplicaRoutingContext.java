@@ -0,0 +1,25 @@
+package com.mayhem.lms.config;
+
+/**
+ * Per-thread flag that pins data access to the primary database, used for
+ * writes and for read-your-writes stickiness after a user's own mutation.
+ */
+public final class ReplicaRoutingContext {
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    private ReplicaRoutingContext() {
+    }
+
+    public static void forcePrimary() {
+        FORCE_PRIMARY.set(Boolean.TRUE);
+    }
+
+    public static boolean isPrimaryForced() {
+        return Boolean.TRUE.equals(FORCE_PRIMARY.get());
+    }
+
+    public static void clear() {
+        FORCE_PRIMARY.remove();
+    }
+}
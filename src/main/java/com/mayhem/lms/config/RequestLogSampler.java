@@ -0,0 +1,73 @@
+package com.mayhem.lms.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Logback turbo filter that keeps the INFO and lower lines of the request hot paths for a sample of requests only.
+ * The decision is made per correlation id, so a sampled request keeps all of its lines and an unsampled one
+ * costs no message formatting or event allocation at all. WARN and ERROR are always kept, as is everything
+ * logged outside a request (startup, scheduled jobs) and by loggers outside the configured prefixes.
+ * Configured in logback-spring.xml, the rate comes from lms.logging.sample-rate.
+ */
+public class RequestLogSampler extends TurboFilter {
+
+    private final List<String> loggerPrefixes = new ArrayList<>();
+    private String mdcKey = "correlationId";
+    private int threshold = 1 << 16;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (threshold >= 1 << 16 || format == null || level.isGreaterOrEqual(Level.WARN) || !matches(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        String id = MDC.get(mdcKey);
+        if (id == null) {
+            return FilterReply.NEUTRAL;
+        }
+        return sampled(id) ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    /**
+     * @param id correlation id
+     * @return whether lines logged under this id are kept
+     */
+    boolean sampled(String id) {
+        int hash = id.hashCode() * 0x9E3779B9;
+        return (hash >>> 16) < threshold;
+    }
+
+    private boolean matches(String loggerName) {
+        for (String prefix : loggerPrefixes) {
+            if (loggerName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void addLoggerPrefix(String prefix) {
+        loggerPrefixes.add(prefix);
+    }
+
+    public void setMdcKey(String mdcKey) {
+        this.mdcKey = mdcKey;
+    }
+
+    /**
+     * @param rate fraction of requests whose lines are kept, between 0 and 1
+     */
+    public void setRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1, was " + rate);
+        }
+        this.threshold = (int) Math.round(rate * (1 << 16));
+    }
+}
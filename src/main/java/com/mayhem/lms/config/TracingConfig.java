@@ -0,0 +1,39 @@
+package com.mayhem.lms.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationPredicate;
+import io.micrometer.observation.ObservationView;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tracing setup next to {@link LayerTracingAspect} and {@link FileSpanExporter}.
+ */
+@Configuration
+public class TracingConfig {
+
+    /**
+     * JDBC observations only when there is a request or task around them. Startup (Flyway, Hibernate validation)
+     * and the warm-up would otherwise leave thousands of single-connection traces
+     * @return predicate
+     */
+    @Bean
+    public ObservationPredicate jdbcOnlyWithinObservedWork() {
+        return (name, context) -> !name.startsWith("jdbc.") || withinObservedWork(context.getParentObservation());
+    }
+
+    /**
+     * @param observation the current or parent observation
+     * @return whether it or one of its ancestors is a recorded observation other than JDBC
+     */
+    static boolean withinObservedWork(ObservationView observation) {
+        while (observation != null && !(observation instanceof Observation recorded && recorded.isNoop())) {
+            String name = observation.getContextView().getName();
+            if (name != null && !name.startsWith("jdbc.")) {
+                return true;
+            }
+            observation = observation.getContextView().getParentObservation();
+        }
+        return false;
+    }
+}
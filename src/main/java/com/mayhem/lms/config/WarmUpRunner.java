@@ -0,0 +1,169 @@
+package com.mayhem.lms.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayhem.lms.dto.GetLoanDto;
+import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.repository.LoanStatusRepository;
+import com.mayhem.lms.repository.LoanTypeRepository;
+import com.mayhem.lms.repository.RoleRepository;
+import com.mayhem.lms.service.LoanEventService;
+import com.mayhem.lms.service.LoanService;
+import com.mayhem.lms.service.LoanTypeService;
+import com.mayhem.lms.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the application up before it reports ready. Application runners run after the web server has started
+ * but before readiness flips to ACCEPTING_TRAFFIC, so /actuator/health/readiness stays down until this is done.
+ * <p>
+ * Opens minimum-idle connections of every pool, loads the reference data (roles, loan statuses and types) and
+ * then runs the main read paths (user listing, loans by user, loan by id, versions, as-of) and their JSON
+ * mapping for a number of iterations, so the JIT has compiled them before real traffic arrives. Stops early
+ * after timeout-ms. A failing warm-up is logged and never keeps the application from starting.
+ * The duration is recorded in the lms.warmup.duration timer, tagged with the outcome.
+ */
+@Component
+public class WarmUpRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmUpRunner.class);
+    /** Synthetic caller for the ownership checks, never stored or written anywhere */
+    private static final GetUserDto WARM_UP_MANAGER = new GetUserDto(0L, "warmup@localhost", "Warm", "Up", null, "Manager");
+
+    private final ApplicationContext applicationContext;
+    private final UserService userService;
+    private final LoanService loanService;
+    private final LoanTypeService loanTypeService;
+    private final LoanEventService loanEventService;
+    private final RoleRepository roleRepository;
+    private final LoanStatusRepository loanStatusRepository;
+    private final LoanTypeRepository loanTypeRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int iterations;
+    private final int sampleUsers;
+    private final long timeoutMillis;
+
+    public WarmUpRunner(ApplicationContext applicationContext, UserService userService, LoanService loanService,
+                        LoanTypeService loanTypeService, LoanEventService loanEventService, RoleRepository roleRepository,
+                        LoanStatusRepository loanStatusRepository, LoanTypeRepository loanTypeRepository,
+                        ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                        @Value("${lms.warmup.enabled:true}") boolean enabled,
+                        @Value("${lms.warmup.iterations:200}") int iterations,
+                        @Value("${lms.warmup.sample-users:5}") int sampleUsers,
+                        @Value("${lms.warmup.timeout-ms:30000}") long timeoutMillis) {
+        this.applicationContext = applicationContext;
+        this.userService = userService;
+        this.loanService = loanService;
+        this.loanTypeService = loanTypeService;
+        this.loanEventService = loanEventService;
+        this.roleRepository = roleRepository;
+        this.loanStatusRepository = loanStatusRepository;
+        this.loanTypeRepository = loanTypeRepository;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.sampleUsers = sampleUsers;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            logger.info("Warm-up disabled");
+            return;
+        }
+        long start = System.nanoTime();
+        String outcome;
+        int completed = 0;
+        try {
+            completed = warmUp(start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+            outcome = completed < iterations ? "timed-out" : "completed";
+        } catch (RuntimeException | SQLException | IOException e) {
+            outcome = "failed";
+            logger.warn("Warm-up failed, starting without it", e);
+        }
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("lms.warmup.duration")
+                .description("Time spent warming up before accepting traffic")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        logger.info("Warm-up {} in {}ms, {} of {} iterations", outcome, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                completed, iterations);
+    }
+
+    /**
+     * @param deadline System.nanoTime() after which no further iteration is started
+     * @return number of completed iterations
+     */
+    int warmUp(long deadline) throws SQLException, IOException {
+        openConnections();
+        logger.debug("Reference data loaded: {} roles, {} loan statuses, {} loan types", roleRepository.findAll().size(),
+                loanStatusRepository.findAll().size(), loanTypeRepository.findAll().size());
+
+        List<Long> userIds = new ArrayList<>();
+        for (GetUserDto user : userService.findUsers(null, null, null, PageRequest.of(0, sampleUsers))) {
+            userIds.add(user.id());
+        }
+        int completed = 0;
+        while (completed < iterations && System.nanoTime() < deadline) {
+            objectMapper.writeValueAsBytes(loanTypeService.getAllLoanTypes());
+            objectMapper.writeValueAsBytes(userService.findUsers(null, null, null, PageRequest.of(0, 20)).getContent());
+            for (Long userId : userIds) {
+                objectMapper.writeValueAsBytes(userService.getUserById(userId));
+                List<GetLoanDto> loans = loanService.getLoanByUserId(userId);
+                objectMapper.writeValueAsBytes(loans);
+                if (!loans.isEmpty()) {
+                    Long loanId = loans.get(0).id();
+                    objectMapper.writeValueAsBytes(loanService.getLoanById(loanId, WARM_UP_MANAGER));
+                    loanService.getLoanVersion(loanId);
+                    loanEventService.getLoanAsOf(loanId, Instant.now());
+                }
+            }
+            completed++;
+        }
+        return completed;
+    }
+
+    /** Borrows minimum-idle connections of every pool at once, so the pools are filled before the first request */
+    private void openConnections() throws SQLException {
+        for (Map.Entry<String, HikariDataSource> pool : applicationContext.getBeansOfType(HikariDataSource.class).entrySet()) {
+            HikariDataSource dataSource = pool.getValue();
+            int count = Math.max(1, Math.min(dataSource.getMinimumIdle(), dataSource.getMaximumPoolSize()));
+            List<Connection> connections = new ArrayList<>(count);
+            try {
+                for (int i = 0; i < count; i++) {
+                    Connection connection = dataSource.getConnection();
+                    connections.add(connection);
+                    connection.isValid(1);
+                }
+            } finally {
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            }
+            logger.debug("Connection pool {} opened {} connections", pool.getKey(), count);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.mayhem.lms.constants;
+
+public enum AuditAction {
+    CREATE,
+    UPDATE,
+    APPROVE,
+    REJECT,
+    DELETE
+}
@@ -0,0 +1,6 @@
+package com.mayhem.lms.constants;
+
+public enum AuditEntityType {
+    LOAN,
+    USER
+}
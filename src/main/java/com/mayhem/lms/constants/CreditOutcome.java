@@ -0,0 +1,20 @@
+package com.mayhem.lms.constants;
+
+/**
+ * Result of automatic credit decisioning, with the loan status it leads to
+ */
+public enum CreditOutcome {
+    APPROVE(2L),
+    REVIEW(1L),
+    REJECT(3L);
+
+    private final Long statusId;
+
+    CreditOutcome(Long statusId) {
+        this.statusId = statusId;
+    }
+
+    public Long getStatusId() {
+        return statusId;
+    }
+}
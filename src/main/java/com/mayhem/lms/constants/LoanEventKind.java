@@ -0,0 +1,9 @@
+package com.mayhem.lms.constants;
+
+public enum LoanEventKind {
+    CREATED,
+    TERMS_CHANGED,
+    STATUS_CHANGED,
+    DELETED,
+    ERASED
+}
@@ -6,10 +6,12 @@ import com.mayhem.lms.dto.RegisterDto;
 import com.mayhem.lms.model.Account;
 import com.mayhem.lms.service.AccountServiceImpl;
 import com.mayhem.lms.service.UserServiceImpl;
+import com.mayhem.lms.web.AsyncWorkload;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -17,6 +19,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -26,10 +29,13 @@ public class AuthController {
 
     private final UserServiceImpl userService;
     private final AccountServiceImpl accountService;
+    private final AsyncWorkload authWorkload;
 
-    public AuthController(UserServiceImpl userService, AccountServiceImpl accountService) {
+    public AuthController(UserServiceImpl userService, AccountServiceImpl accountService,
+                          @Qualifier("authWorkload") AsyncWorkload authWorkload) {
         this.userService = userService;
         this.accountService = accountService;
+        this.authWorkload = authWorkload;
     }
 
     /**
@@ -71,30 +77,45 @@ public class AuthController {
     }
 
     /**
-     * Login user with email and password
+     * Login user with email and password. BCrypt verification runs on the auth executor,
+     * the servlet thread is released while it runs. The session is only started once the response is a 200,
+     * a login that finishes after the client got a 503 leaves the session untouched
      * @param userCredentials
      * @param session
      * @return
      */
     @PostMapping("/login")
-    public ResponseEntity<?> loginUser(@RequestBody AuthDto userCredentials, HttpSession session){
+    public CompletableFuture<ResponseEntity<?>> loginUser(@RequestBody AuthDto userCredentials, HttpSession session){
         if ( userCredentials.getEmail() == null || userCredentials.getEmail().trim().isEmpty())
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Email is required");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Email is required"));
         if (userCredentials.getPassword() == null || userCredentials.getPassword().trim().isEmpty())
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Password is required");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Password is required"));
 
+        return authWorkload.submit(() -> login(userCredentials))
+                .thenApply(response -> startSession(response, session));
+    }
+
+    private ResponseEntity<?> login(AuthDto userCredentials) {
         if (accountService.verifyCredentials(userCredentials)) {
             Account account = accountService.getAccountByEmail(userCredentials.getEmail());
-            GetUserDto loggedUser = userService.getUserById(account.getUser().getId());
-            session.setAttribute("user", loggedUser);
-            logger.info("Session started for userId: {}", loggedUser.getId());
-            return ResponseEntity.ok(loggedUser);
+            GetUserDto found = userService.getUserById(account.getUser().getId());
+            // the session keeps the identity only, loan totals would go stale there
+            return ResponseEntity.ok(new GetUserDto(found.id(), found.email(), found.firstName(), found.lastName(),
+                    found.phoneNumber(), found.role()));
         } else {
             logger.error("Invalid credentials");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid Credentials");
         }
     }
 
+    private ResponseEntity<?> startSession(ResponseEntity<?> response, HttpSession session) {
+        if (response.getStatusCode() == HttpStatus.OK && response.getBody() instanceof GetUserDto loggedUser) {
+            session.setAttribute("user", loggedUser);
+            logger.info("Session started for userId: {}", loggedUser.id());
+        }
+        return response;
+    }
+
     /**
      * Check if the user is logged in
      * @param session
@@ -120,7 +141,7 @@ public class AuthController {
     public ResponseEntity<String> logout(HttpSession session){
         GetUserDto loggedUser = (GetUserDto) session.getAttribute("user");
         if (loggedUser != null){
-            logger.info("Closing session for userId: {}", loggedUser.getId());
+            logger.info("Closing session for userId: {}", loggedUser.id());
             session.invalidate();
             logger.info("Session closed");
             return ResponseEntity.ok("Logged out successfully");
@@ -1,58 +1,81 @@
 package com.mayhem.lms.controller;
 
+import com.mayhem.lms.config.BinaryFormatConfig;
 import com.mayhem.lms.dto.CreateLoanDto;
 import com.mayhem.lms.dto.GetLoanDto;
 import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.dto.LoanAsOfDto;
+import com.mayhem.lms.dto.ResourceVersionDto;
 import com.mayhem.lms.model.Loan;
 import com.mayhem.lms.service.LoanService;
 import com.mayhem.lms.service.LoanServiceImpl;
+import com.mayhem.lms.web.AsyncWorkload;
+import com.mayhem.lms.web.ConditionalGetSupport;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
-@RequestMapping(value = "/api/loans", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequestMapping(value = "/api/loans", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, BinaryFormatConfig.APPLICATION_SMILE_VALUE})
 public class LoanController {
     private static final Logger logger = LoggerFactory.getLogger(LoanController.class);
 
     private final LoanServiceImpl loanServiceImpl;
+    private final ConditionalGetSupport conditionalGetSupport;
+    private final AsyncWorkload bulkReadWorkload;
 
-    public LoanController(LoanServiceImpl loanServiceImpl) {
+    public LoanController(LoanServiceImpl loanServiceImpl, ConditionalGetSupport conditionalGetSupport,
+                          @Qualifier("bulkReadWorkload") AsyncWorkload bulkReadWorkload) {
         this.loanServiceImpl = loanServiceImpl;
+        this.conditionalGetSupport = conditionalGetSupport;
+        this.bulkReadWorkload = bulkReadWorkload;
     }
 
     /**
-     * Get all loans, only manager can get all loans
+     * Get all loans, only manager can get all loans. Runs on the bulk read executor
      * @param session
      * @return
      */
     @GetMapping
-    public ResponseEntity<?> getAllLoans(HttpSession session){
+    public CompletableFuture<ResponseEntity<?>> getAllLoans(HttpSession session){
         GetUserDto sessionUser = (GetUserDto) session.getAttribute("user");
         if (sessionUser == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not logged in");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not logged in"));
         }
-        if (!"Manager".equals(sessionUser.getRole())) {
+        if (!"Manager".equals(sessionUser.role())) {
             logger.info("Access denied to get all loans");
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied"));
         }
-        return ResponseEntity.ok(loanServiceImpl.getAllLoans());
+        return bulkReadWorkload.submit(() -> ResponseEntity.ok(loanServiceImpl.getAllLoans()));
     }
 
     /**
-     * Get loan by id, user can get its own loan or a manager can get any loan
+     * Get loan by id, user can get its own loan or a manager can get any loan.
+     * Supports If-None-Match / If-Modified-Since, unchanged loans are answered with 304.
+     * With includeHistory archived loans are found as well
      * @param id
+     * @param includeHistory
      * @param session
+     * @param webRequest
      * @return
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getLoanByID(@PathVariable Long id, HttpSession session){
+    public ResponseEntity<?> getLoanByID(@PathVariable Long id, @RequestParam(defaultValue = "false") boolean includeHistory,
+                                         HttpSession session, WebRequest webRequest){
         GetUserDto userLogged = (GetUserDto) session.getAttribute("user");
 
         //Checks if the user is not logged in
@@ -60,15 +83,21 @@ public class LoanController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User is not logged in :(");
         }
 
-        //Checks if the user is a manager or owner user of the loan
-        GetLoanDto foundLoan = loanServiceImpl.getLoanById(id, userLogged);
-        //Checks if the loan exists
-        if(foundLoan == null){
+        //Checks if the loan exists and the user is a manager or owner user of the loan
+        ResourceVersionDto version = loanServiceImpl.getLoanVersion(id);
+        if (version == null && includeHistory) {
+            GetLoanDto archived = loanServiceImpl.getLoanById(id, userLogged, true);
+            if (archived != null) {
+                return ResponseEntity.ok(archived);
+            }
+        }
+        if (version == null || (!userLogged.id().equals(version.ownerId()) && !"Manager".equals(userLogged.role()))) {
             logger.info("Loan with id: {} not found or invalid credentials", id);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Invalid credentials or loan not found");
         }
-        logger.info("Loan id {} found for user id: {}", id, userLogged.getId());
-        return ResponseEntity.ok(foundLoan);
+        logger.info("Loan id {} found for user id: {}", id, userLogged.id());
+        return conditionalGetSupport.respond(webRequest, version.toEtag("loan", id), version.lastModified(),
+                () -> loanServiceImpl.getLoanById(id, userLogged, version));
     }
 
     /**
@@ -121,9 +150,12 @@ public class LoanController {
         GetLoanDto updatedLoan = null;
         try {
             updatedLoan = loanServiceImpl.updateLoan(id, loanDetails, userLogged);
-        } catch (NullPointerException e) {
+        } catch (NoSuchElementException e) {
             logger.error("Loan not found with id: {}", id);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No loan found with id:" + id);
+        } catch (OptimisticLockingFailureException e) {
+            logger.info("Concurrent change of loan {}", id);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Loan was changed concurrently, reload and try again");
         }
 
         if (updatedLoan == null) {
@@ -166,7 +198,7 @@ public class LoanController {
         }
 
         //Check if user owns loan
-        if (newLoan.getUserId() != userLogged.getId()) {
+        if (!Objects.equals(newLoan.getUserId(), userLogged.id())) {
             logger.error("Unauthorized access to create loan for user Id: {}", newLoan.getUserId());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized access");
         }
@@ -191,12 +223,14 @@ public class LoanController {
     }
 
     /**
-     * Get all loans by User id
+     * Get all loans by User id, archived loans are listed as well with includeHistory
      * @param userId
+     * @param includeHistory
      * @return
      */
     @GetMapping(value = "/user/{userId}")
-    public ResponseEntity<List<?>> getLoanByUserId(@PathVariable Long userId, HttpSession session) {
+    public ResponseEntity<List<?>> getLoanByUserId(@PathVariable Long userId, @RequestParam(defaultValue = "false") boolean includeHistory,
+                                                   HttpSession session) {
         //Check if user is logged in
         GetUserDto userLogged = (GetUserDto) session.getAttribute("user");
         if (userLogged == null) {
@@ -205,12 +239,12 @@ public class LoanController {
 
         logger.info("Searching for loans for user id: {}", userId);
         //Check if user is either the owner of the loans or a manager
-        if (!userId.equals(userLogged.getId()) && !"Manager".equals(userLogged.getRole())) {
-            logger.error("Unauthorized access to get loans for userId: {}, userSessionId: {}", userId, userLogged.getId());
+        if (!userId.equals(userLogged.id()) && !"Manager".equals(userLogged.role())) {
+            logger.error("Unauthorized access to get loans for userId: {}, userSessionId: {}", userId, userLogged.id());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
-        List<GetLoanDto> foundLoan = loanServiceImpl.getLoanByUserId(userId);
+        List<GetLoanDto> foundLoan = loanServiceImpl.getLoanByUserId(userId, includeHistory);
         if (foundLoan == null || foundLoan.isEmpty()) {
             logger.info("No loans found for user id {}", userId);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
@@ -219,6 +253,57 @@ public class LoanController {
         return ResponseEntity.ok(foundLoan);
     }
 
+    /**
+     * Get the change history of a loan, newest first. Only the owner or a manager can access it
+     * @param id
+     * @param page
+     * @param size
+     * @param session
+     * @return
+     */
+    @GetMapping("/{id}/history")
+    public ResponseEntity<?> getLoanHistory(@PathVariable Long id,
+                                            @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "20") int size,
+                                            HttpSession session) {
+        GetUserDto userLogged = (GetUserDto) session.getAttribute("user");
+        if (userLogged == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not logged in");
+        }
+        if (page < 0 || size < 1 || size > 100) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Page must be >= 0 and size between 1 and 100");
+        }
+        //Managers can read any history, customers only the history of their own loans
+        if (!"Manager".equals(userLogged.role()) && loanServiceImpl.getLoanById(id, userLogged) == null) {
+            logger.info("Unauthorized access to history of loan {}", id);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Invalid credentials or loan not found");
+        }
+        return ResponseEntity.ok(loanServiceImpl.getLoanHistory(id, page, size));
+    }
+
+    /**
+     * Get a loan as it was at a point in time, replayed from the loan event log.
+     * Only the owner or a manager can access it, also after the loan was deleted
+     * @param id
+     * @param at ISO-8601 instant, e.g. 2026-01-31T23:59:59Z
+     * @param session
+     * @return
+     */
+    @GetMapping("/{id}/as-of")
+    public ResponseEntity<?> getLoanAsOf(@PathVariable Long id, @RequestParam Instant at, HttpSession session) {
+        GetUserDto userLogged = (GetUserDto) session.getAttribute("user");
+        if (userLogged == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not logged in");
+        }
+        Optional<LoanAsOfDto> loan = loanServiceImpl.getLoanAsOf(id, at)
+                .filter(found -> "Manager".equals(userLogged.role()) || userLogged.id().equals(found.userId()));
+        if (loan.isEmpty()) {
+            logger.info("No loan {} as of {} for userId {}", id, at, userLogged.id());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Loan not found at that time");
+        }
+        return ResponseEntity.ok(loan.get());
+    }
+
     /**
      * Reject loan, call approveOrRejectLoan with statusId 3
      * @param loanId = 3L
@@ -258,12 +343,18 @@ public class LoanController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not logged in");
         }
         //Check if user is a manager
-        if(!userLogged.getRole().equals("Manager")) {
+        if(!userLogged.role().equals("Manager")) {
             logger.error("Unauthorized access, cannot approve or reject loan {}", loanId);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized access");
         }
 
-        GetLoanDto response = loanServiceImpl.approveOrRejectLoan(loanId, statusId);
+        GetLoanDto response;
+        try {
+            response = loanServiceImpl.approveOrRejectLoan(loanId, statusId, userLogged);
+        } catch (OptimisticLockingFailureException e) {
+            logger.info("Concurrent change of loan {}", loanId);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Loan was changed concurrently, reload and try again");
+        }
         if (response == null)
             return ResponseEntity.notFound().build();
         return ResponseEntity.ok(response);
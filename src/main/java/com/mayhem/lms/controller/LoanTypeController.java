@@ -1,31 +1,34 @@
 package com.mayhem.lms.controller;
 
-import com.mayhem.lms.dto.GetLoanTypesDto;
 import com.mayhem.lms.service.LoanTypeServiceImpl;
+import com.mayhem.lms.web.ConditionalGetSupport;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/loan-types")
 public class LoanTypeController {
 
     private final LoanTypeServiceImpl loanTypeService;
+    private final ConditionalGetSupport conditionalGetSupport;
 
-    public LoanTypeController(LoanTypeServiceImpl loanTypeService) {
+    public LoanTypeController(LoanTypeServiceImpl loanTypeService, ConditionalGetSupport conditionalGetSupport) {
         this.loanTypeService = loanTypeService;
+        this.conditionalGetSupport = conditionalGetSupport;
     }
 
     /**
      * Endpoint to get all loan types.
+     * The ETag is a hash of the rendered list, unchanged lists are answered with 304.
      *
+     * @param webRequest current request
      * @return List of all loan types.
      */
     @GetMapping
-    public ResponseEntity<List<GetLoanTypesDto>> getAllLoanTypes() {
-        return ResponseEntity.ok().body(loanTypeService.getAllLoanTypes());
+    public ResponseEntity<byte[]> getAllLoanTypes(WebRequest webRequest) {
+        return conditionalGetSupport.respondWithContentHash(webRequest, "loan-types", loanTypeService::getAllLoanTypes);
     }
 }
@@ -1,54 +1,129 @@
 package com.mayhem.lms.controller;
 
 import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.dto.ResourceVersionDto;
 import com.mayhem.lms.model.User;
+import com.mayhem.lms.service.UserPurgeServiceImpl;
 import com.mayhem.lms.service.UserServiceImpl;
+import com.mayhem.lms.web.AsyncWorkload;
+import com.mayhem.lms.web.ConditionalGetSupport;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
 
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_PURGE_BATCH = 10_000;
 
     private final UserServiceImpl userService;
+    private final UserPurgeServiceImpl userPurgeService;
+    private final ConditionalGetSupport conditionalGetSupport;
+    private final AsyncWorkload bulkReadWorkload;
 
-    public UserController(UserServiceImpl userService) {
+    public UserController(UserServiceImpl userService, UserPurgeServiceImpl userPurgeService, ConditionalGetSupport conditionalGetSupport,
+                          @Qualifier("bulkReadWorkload") AsyncWorkload bulkReadWorkload) {
         this.userService = userService;
+        this.userPurgeService = userPurgeService;
+        this.conditionalGetSupport = conditionalGetSupport;
+        this.bulkReadWorkload = bulkReadWorkload;
     }
 
     /**
-     * Get all users. Only Manager can access this endpoint
+     * Get one page of users, optionally filtered by role and name prefix. Only Manager can access this endpoint.
+     * Pages are either offset based (page, size, sort=property[,asc|desc]) or keyset based (afterId, id order).
+     * When more users follow, a Link header with rel="next" points at the next keyset page, or at the next
+     * offset page for other sort orders. Runs on the bulk read executor
+     * @param page
+     * @param size
+     * @param sort
+     * @param afterId
+     * @param role
+     * @param namePrefix
      * @param session
      * @return
      */
     @GetMapping
-    public ResponseEntity<?> getAllUsers(HttpSession session) {
+    public CompletableFuture<ResponseEntity<?>> getAllUsers(@RequestParam(defaultValue = "0") int page,
+                                                            @RequestParam(defaultValue = "50") int size,
+                                                            @RequestParam(defaultValue = "id") String sort,
+                                                            @RequestParam(required = false) Long afterId,
+                                                            @RequestParam(required = false) String role,
+                                                            @RequestParam(required = false) String namePrefix,
+                                                            HttpSession session) {
         GetUserDto sessionUser = (GetUserDto) session.getAttribute("user");
         if (sessionUser == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not logged in");
-        } else if (!"Manager".equals(sessionUser.getRole())) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not logged in"));
+        } else if (!"Manager".equals(sessionUser.role())) {
             logger.info("User not authorized to access getAllUsers endpoint");
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
-        }else {
-            logger.info("Get all users method invoked");
-            return ResponseEntity.ok(userService.findAllUsers());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied"));
+        }
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE));
+        }
+        String[] sortParts = sort.split(",", 2);
+        Sort.Direction direction = sortParts.length > 1 ? Sort.Direction.fromOptionalString(sortParts[1].trim()).orElse(null)
+                : Sort.Direction.ASC;
+        if (direction == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Sort direction must be asc or desc"));
+        }
+        Sort order = Sort.by(direction, sortParts[0].trim());
+        if (afterId != null && !order.equals(Sort.by("id"))) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("afterId requires sort=id"));
         }
+        logger.info("Get all users method invoked");
+        UriComponentsBuilder nextLink = ServletUriComponentsBuilder.fromCurrentRequest();
+        boolean keyset = afterId != null || order.equals(Sort.by("id"));
+        return bulkReadWorkload.submit(() -> {
+            Slice<GetUserDto> users;
+            try {
+                users = userService.findUsers(role, namePrefix, afterId, PageRequest.of(page, size, order));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (users.hasNext()) {
+                if (keyset) {
+                    nextLink.replaceQueryParam("page").replaceQueryParam("afterId", users.getContent().get(users.getNumberOfElements() - 1).id());
+                } else {
+                    nextLink.replaceQueryParam("page", page + 1);
+                }
+                response.header(HttpHeaders.LINK, "<" + nextLink.build().toUriString() + ">; rel=\"next\"");
+            }
+            return response.body(users.getContent());
+        });
     }
 
     /**
-     * Get user by ID. Only the user itself or a Manager can access this endpoint
+     * Get user by ID. Only the user itself or a Manager can access this endpoint.
+     * Supports If-None-Match / If-Modified-Since, unchanged users are answered with 304
      * @param id
      * @param session
+     * @param webRequest
      * @return
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getUserByID(@PathVariable Long id, HttpSession session){
+    public ResponseEntity<?> getUserByID(@PathVariable Long id, HttpSession session, WebRequest webRequest){
         GetUserDto userLogged = (GetUserDto) session.getAttribute("user");
 
         //Checks if the user is not logged in
@@ -57,15 +132,16 @@ public class UserController {
         }
 
         //Checks if the user logged in is the same from the request or if it's a Manager
-        if((id.equals(userLogged.getId())) || (userLogged.getRole().equals("Manager"))){
+        if((id.equals(userLogged.id())) || (userLogged.role().equals("Manager"))){
             logger.info("Get user by id");
-            GetUserDto foundUser = userService.getUserById(id);
-            if(foundUser == null){
+            ResourceVersionDto version = userService.getUserVersion(id);
+            if(version == null){
                 logger.info("User not found, id: {}", id);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
             }
             logger.info("User id {} found", id);
-            return ResponseEntity.ok(foundUser);
+            return conditionalGetSupport.respond(webRequest, version.toEtag("user", id), version.lastModified(),
+                    () -> userService.getUserById(id, version));
         }
         else {
             logger.info("Unauthorized access to user with id {}", id);
@@ -88,7 +164,7 @@ public class UserController {
         }
 
         //Check if userId matches with logged user
-        if (userLogged.getId() == id) {
+        if (Objects.equals(userLogged.id(), id)) {
             logger.info("Updating user with id {}", id);
 
             //Validations to check no empty fields are sent
@@ -126,16 +202,46 @@ public class UserController {
         if(userLogged == null){
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not logged in");
         }
-        if (!id.equals(userLogged.getId())) {
+        if (!id.equals(userLogged.id())) {
             logger.info("Unauthorized access attempt to delete user with id {}", id);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized access");
         }
 
-        boolean deleted = userService.deleteUser(id);
+        boolean deleted;
+        try {
+            deleted = userService.deleteUser(id);
+        } catch (OptimisticLockingFailureException e) {
+            logger.info("Loan of user {} approved during deletion", id);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("A loan was approved meanwhile, user not deleted");
+        }
         if (deleted){
             session.invalidate();
             return ResponseEntity.status(HttpStatus.OK).body("User successfully deleted");
         }
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User has active loans, cannot delete");
     }
-}
\ No newline at end of file
+
+    /**
+     * Purge users with their loans and accounts, for example on erasure requests. Only Manager can access
+     * this endpoint. Users with an approved loan are kept and listed in the result
+     * @param userIds
+     * @param session
+     * @return
+     */
+    @PostMapping("/purge")
+    public ResponseEntity<?> purgeUsers(@RequestBody List<Long> userIds, HttpSession session) {
+        GetUserDto userLogged = (GetUserDto) session.getAttribute("user");
+        if (userLogged == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Not logged in");
+        }
+        if (!"Manager".equals(userLogged.role())) {
+            logger.info("User not authorized to purge users");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
+        }
+        if (userIds == null || userIds.isEmpty() || userIds.size() > MAX_PURGE_BATCH || userIds.contains(null)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Between 1 and " + MAX_PURGE_BATCH + " user ids are required");
+        }
+        logger.info("Purging {} users", userIds.size());
+        return ResponseEntity.ok(userPurgeService.purgeUsers(userIds, userLogged.id()));
+    }
+}
@@ -1,8 +1,10 @@
 package com.mayhem.lms.dto;
 
+import com.mayhem.lms.model.Money;
+
 public class CreateLoanDto {
     private Long loanId;
-    private Double amount;
+    private Money amount;
     private Integer term;
     private Long userId;
     private Long type;
@@ -11,7 +13,7 @@ public class CreateLoanDto {
     public CreateLoanDto() {
     }
 
-    public CreateLoanDto(Long loanId, Double amount, Integer term, Long userId, Long type, Long statusId) {
+    public CreateLoanDto(Long loanId, Money amount, Integer term, Long userId, Long type, Long statusId) {
         this.loanId = loanId;
         this.amount = amount;
         this.term = term;
@@ -20,7 +22,7 @@ public class CreateLoanDto {
         this.statusId = 1L;
     }
 
-    public CreateLoanDto(Long loanId, Double amount, Integer term, Long userId, Long type) {
+    public CreateLoanDto(Long loanId, Money amount, Integer term, Long userId, Long type) {
         this.loanId = loanId;
         this.amount = amount;
         this.term = term;
@@ -37,11 +39,11 @@ public class CreateLoanDto {
         this.loanId = loanId;
     }
 
-    public Double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -0,0 +1,12 @@
+package com.mayhem.lms.dto;
+
+import com.mayhem.lms.constants.CreditOutcome;
+
+/**
+ * Outcome of the credit rules for one loan application
+ * @param outcome decision to apply
+ * @param riskScore 0 (no risk) to 100 (at a limit), above 100 when a hard limit is exceeded
+ * @param reason rule that determined the outcome
+ */
+public record CreditDecisionDto(CreditOutcome outcome, int riskScore, String reason) {
+}
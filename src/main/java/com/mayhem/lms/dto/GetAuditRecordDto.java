@@ -0,0 +1,76 @@
+package com.mayhem.lms.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.Instant;
+
+public class GetAuditRecordDto {
+    private Long id;
+    private String action;
+    private Long actorId;
+    @JsonRawValue
+    private String before;
+    @JsonRawValue
+    private String after;
+    private Instant createdAt;
+
+    public GetAuditRecordDto() {
+    }
+
+    public GetAuditRecordDto(Long id, String action, Long actorId, String before, String after, Instant createdAt) {
+        this.id = id;
+        this.action = action;
+        this.actorId = actorId;
+        this.before = before;
+        this.after = after;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public Long getActorId() {
+        return actorId;
+    }
+
+    public void setActorId(Long actorId) {
+        this.actorId = actorId;
+    }
+
+    public String getBefore() {
+        return before;
+    }
+
+    public void setBefore(String before) {
+        this.before = before;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public void setAfter(String after) {
+        this.after = after;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
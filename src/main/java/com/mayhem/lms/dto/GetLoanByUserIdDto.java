@@ -1,8 +1,10 @@
 package com.mayhem.lms.dto;
 
+import com.mayhem.lms.model.Money;
+
 public class GetLoanByUserIdDto {
     private Long loanId;
-    private Double amount;
+    private Money amount;
     private Integer term;
     private String type;
     private String status;
@@ -11,7 +13,7 @@ public class GetLoanByUserIdDto {
     public GetLoanByUserIdDto() {
     }
 
-    public GetLoanByUserIdDto(Long loanId, Double amount, Integer term, String type, String status, Long userId) {
+    public GetLoanByUserIdDto(Long loanId, Money amount, Integer term, String type, String status, Long userId) {
         this.loanId = loanId;
         this.amount = amount;
         this.term = term;
@@ -28,11 +30,11 @@ public class GetLoanByUserIdDto {
         this.loanId = loanId;
     }
 
-    public Double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -1,75 +1,14 @@
 package com.mayhem.lms.dto;
 
-public class GetLoanDto {
-    private Long id;
-    private Double amount;
-    private Integer term;
-    private String type;
-    private String status;
-    private String clientName;
+import com.mayhem.lms.model.Money;
 
-    public GetLoanDto() {
-    }
-
-    public GetLoanDto(Long id, Double amount, Integer term, String type, String status, String clientName) {
-        this.id = id;
-        this.amount = amount;
-        this.term = term;
-        this.type = type;
-        this.status = status;
-        this.clientName = clientName;
-    }
+/**
+ * Read-only view of a loan as returned by the API.
+ * Serialised by {@link com.mayhem.lms.web.DtoJsonSerializers.GetLoanDtoSerializer}.
+ */
+public record GetLoanDto(Long id, Money amount, Integer term, String type, String status, String clientName) {
 
     public GetLoanDto(Long id, String status) {
-        this.id = id;
-        this.status = status;
-    }
-
-    public Long getId() {
-        return id;
-    }
-
-    public void setId(Long id) {
-        this.id = id;
-    }
-
-    public Double getAmount() {
-        return amount;
-    }
-
-    public void setAmount(Double amount) {
-        this.amount = amount;
-    }
-
-    public Integer getTerm() {
-        return term;
-    }
-
-    public void setTerm(Integer term) {
-        this.term = term;
-    }
-
-    public String getType() {
-        return type;
-    }
-
-    public void setType(String type) {
-        this.type = type;
-    }
-
-    public String getStatus() {
-        return status;
-    }
-
-    public void setStatus(String status) {
-        this.status = status;
-    }
-
-    public String getClientName() {
-        return clientName;
-    }
-
-    public void setClientName(String clientName) {
-        this.clientName = clientName;
+        this(id, null, null, null, status, null);
     }
-}
\ No newline at end of file
+}
@@ -1,74 +1,23 @@
 package com.mayhem.lms.dto;
 
-public class GetUserDto {
-    private Long id;
-    private String email;
-    private String firstName;
-    private String lastName;
-    private String phoneNumber;
-    private String role;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
-    public GetUserDto() {
-    }
+import java.io.Serializable;
+
+/**
+ * Read-only view of a user as returned by the API and kept in the session.
+ * The exposure is only filled in for a single user lookup and left out of the JSON otherwise.
+ * Serialised by {@link com.mayhem.lms.web.DtoJsonSerializers.GetUserDtoSerializer}.
+ */
+public record GetUserDto(Long id, String email, String firstName, String lastName, String phoneNumber, String role,
+                         @JsonInclude(JsonInclude.Include.NON_NULL) UserExposureDto exposure)
+        implements Serializable {
 
     public GetUserDto(Long id, String email, String firstName, String lastName, String phoneNumber, String role) {
-        this.id = id;
-        this.email = email;
-        this.firstName = firstName;
-        this.lastName = lastName;
-        this.phoneNumber = phoneNumber;
-        this.role = role;
+        this(id, email, firstName, lastName, phoneNumber, role, null);
     }
 
     public GetUserDto(String email, String firstName, String lastName, String phoneNumber, String role) {
-        this.email = email;
-        this.firstName = firstName;
-        this.lastName = lastName;
-        this.phoneNumber = phoneNumber;
-        this.role = role;
-    }
-
-    public Long getId(){ return id;}
-
-    public void setId(Long id){ this.id = id;}
-
-    public String getEmail() {
-        return email;
-    }
-
-    public void setEmail(String email) {
-        this.email = email;
-    }
-
-    public String getFirstName() {
-        return firstName;
-    }
-
-    public void setFirstName(String firstName) {
-        this.firstName = firstName;
-    }
-
-    public String getLastName() {
-        return lastName;
-    }
-
-    public void setLastName(String lastName) {
-        this.lastName = lastName;
-    }
-
-    public String getPhoneNumber() {
-        return phoneNumber;
-    }
-
-    public void setPhoneNumber(String phoneNumber) {
-        this.phoneNumber = phoneNumber;
-    }
-
-    public String getRole() {
-        return role;
-    }
-
-    public void setRole(String role) {
-        this.role = role;
+        this(null, email, firstName, lastName, phoneNumber, role, null);
     }
-}
\ No newline at end of file
+}
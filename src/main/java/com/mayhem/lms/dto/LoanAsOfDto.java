@@ -0,0 +1,14 @@
+package com.mayhem.lms.dto;
+
+import com.mayhem.lms.model.Money;
+
+import java.time.Instant;
+
+/**
+ * A loan as it was at a point in time, replayed from the loan event log.
+ * lastEvent, changedAt and changedBy describe the latest change at or before that time, changedBy is null for
+ * automatic decisions.
+ */
+public record LoanAsOfDto(Long id, Long userId, Money amount, Integer term, String type, String status,
+                          String lastEvent, Instant changedAt, Long changedBy) {
+}
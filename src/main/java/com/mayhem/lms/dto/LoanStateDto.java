@@ -0,0 +1,15 @@
+package com.mayhem.lms.dto;
+
+import com.mayhem.lms.model.Money;
+
+/**
+ * Current state of a loan read with one projection query instead of the entity graph. It is the pre-image
+ * of conditional writes: the version guards the write, the rest feeds the exposure index and the audit log.
+ */
+public record LoanStateDto(Long id, Long version, Long ownerId, Long statusId, Long typeId, Money amount, Integer term,
+                           String type, String status, String clientName) {
+
+    public GetLoanDto toGetLoanDto() {
+        return new GetLoanDto(id, amount, term, type, status, clientName);
+    }
+}
@@ -0,0 +1,12 @@
+package com.mayhem.lms.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of purging a batch of users
+ * @param usersPurged users deleted together with their accounts
+ * @param loansDeleted loans deleted with them
+ * @param refusedUserIds users kept because they have an approved loan
+ */
+public record PurgeResultDto(int usersPurged, long loansDeleted, List<Long> refusedUserIds) {
+}
@@ -0,0 +1,32 @@
+package com.mayhem.lms.dto;
+
+import java.time.Instant;
+
+/**
+ * Version of a resource and of the owner data rendered with it, read with one projection query
+ * to answer conditional GETs without loading the entity graph
+ * @param ownerId
+ * @param version
+ * @param ownerVersion
+ * @param lastModified latest modification of the resource or its owner data
+ */
+public record ResourceVersionDto(Long ownerId, Long version, Long ownerVersion, Instant lastModified) {
+
+    public ResourceVersionDto(Long ownerId, Long version, Instant lastModified) {
+        this(ownerId, version, 0L, lastModified);
+    }
+
+    public ResourceVersionDto(Long ownerId, Long version, Long ownerVersion, Instant lastModified, Instant ownerLastModified) {
+        this(ownerId, version, ownerVersion, lastModified.isAfter(ownerLastModified) ? lastModified : ownerLastModified);
+    }
+
+    /**
+     * Strong entity tag, changes whenever the resource or the owner data rendered with it changes
+     * @param prefix resource kind
+     * @param id resource id
+     * @return quoted ETag value
+     */
+    public String toEtag(String prefix, Long id) {
+        return "\"" + prefix + id + "-" + version + "-" + ownerVersion + "\"";
+    }
+}
@@ -2,9 +2,10 @@ package com.mayhem.lms.dto;
 
 import com.mayhem.lms.model.LoanStatus;
 import com.mayhem.lms.model.LoanType;
+import com.mayhem.lms.model.Money;
 
 public class UpdateLoanDto {
-    private Double amount;
+    private Money amount;
     private Integer term;
     private LoanType type;
     private LoanStatus status;
@@ -12,18 +13,18 @@ public class UpdateLoanDto {
     public UpdateLoanDto() {
     }
 
-    public UpdateLoanDto(Double amount, Integer term, LoanType type, LoanStatus status) {
+    public UpdateLoanDto(Money amount, Integer term, LoanType type, LoanStatus status) {
         this.amount = amount;
         this.term = term;
         this.type = type;
         this.status = status;
     }
 
-    public Double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -0,0 +1,12 @@
+package com.mayhem.lms.dto;
+
+import com.mayhem.lms.model.Money;
+
+import java.io.Serializable;
+
+/**
+ * A user's loans by status as kept in the exposure index, returned with GET /api/users/{id}
+ */
+public record UserExposureDto(long pendingLoans, Money pendingAmount, long approvedLoans, Money approvedAmount,
+                              long rejectedLoans, Money monthlyInstallment) implements Serializable {
+}
@@ -0,0 +1,12 @@
+package com.mayhem.lms.dto;
+
+/**
+ * Aggregated open (pending or approved) loans of one user, as used by credit decisioning
+ */
+public interface UserExposureSummary {
+    long getOpenLoans();
+
+    long getOpenAmountCents();
+
+    long getMonthlyInstallmentCents();
+}
@@ -0,0 +1,128 @@
+package com.mayhem.lms.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "audit_record", indexes = {
+        @Index(name = "idx_audit_record_entity", columnList = "entity_type, entity_id, created_at")
+})
+public class AuditRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "audit_id")
+    private Long id;
+
+    @Column(name = "entity_type", nullable = false, length = 20)
+    private String entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Column(name = "action", nullable = false, length = 20)
+    private String action;
+
+    @Column(name = "actor_id")
+    private Long actorId;
+
+    @Column(name = "before_state", columnDefinition = "text")
+    private String beforeState;
+
+    @Column(name = "after_state", columnDefinition = "text")
+    private String afterState;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public AuditRecord() {
+    }
+
+    public AuditRecord(Long id, String entityType, Long entityId, String action, Long actorId, String beforeState, String afterState, Instant createdAt) {
+        this.id = id;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.action = action;
+        this.actorId = actorId;
+        this.beforeState = beforeState;
+        this.afterState = afterState;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public Long getActorId() {
+        return actorId;
+    }
+
+    public void setActorId(Long actorId) {
+        this.actorId = actorId;
+    }
+
+    public String getBeforeState() {
+        return beforeState;
+    }
+
+    public void setBeforeState(String beforeState) {
+        this.beforeState = beforeState;
+    }
+
+    public String getAfterState() {
+        return afterState;
+    }
+
+    public void setAfterState(String afterState) {
+        this.afterState = afterState;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "AuditRecord{" +
+                "id=" + id +
+                ", entityType='" + entityType + '\'' +
+                ", entityId=" + entityId +
+                ", action='" + action + '\'' +
+                ", actorId=" + actorId +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
@@ -1,10 +1,11 @@
 package com.mayhem.lms.model;
 
-import com.fasterxml.jackson.annotation.JsonIdentityInfo;
-import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
-@JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
 @Entity
 @Table(name = "loan")
 public class Loan {
@@ -13,8 +14,8 @@ public class Loan {
     @Column(name = "loan_id")
     private Long id;
 
-    @Column(name = "amount", nullable = false)
-    private Double amount;
+    @Column(name = "amount_cents", nullable = false)
+    private Money amount;
 
     @Column(name = "term", nullable = false)
     private Integer term;
@@ -31,10 +32,27 @@ public class Loan {
     @JoinColumn(name = "status_id", nullable = false)
     private LoanStatus loanStatus;
 
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    /** Set on insert and by status changes, archival picks old Rejected loans by it */
+    @CreationTimestamp
+    @Column(name = "status_updated_at", nullable = false)
+    private Instant statusUpdatedAt;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
     public Loan() {
     }
 
-    public Loan(Long id, Double amount, Integer term, User users, LoanType loanTypes, LoanStatus loanStatus) {
+    public Loan(Long id, Money amount, Integer term, User users, LoanType loanTypes, LoanStatus loanStatus) {
         this.id = id;
         this.amount = amount;
         this.term = term;
@@ -51,11 +69,11 @@ public class Loan {
         this.id = id;
     }
 
-    public Double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -91,6 +109,38 @@ public class Loan {
         this.loanStatus = loanStatus;
     }
 
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getStatusUpdatedAt() {
+        return statusUpdatedAt;
+    }
+
+    public void setStatusUpdatedAt(Instant statusUpdatedAt) {
+        this.statusUpdatedAt = statusUpdatedAt;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
     @Override
     public String toString() {
         return "Loan{" +
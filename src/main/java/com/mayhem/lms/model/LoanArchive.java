@@ -0,0 +1,83 @@
+package com.mayhem.lms.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Archived copy of a closed loan. Written by {@link com.mayhem.lms.repository.LoanArchiveRepository#copyFromLoans}
+ * with a set-based insert and never changed afterwards, so it carries no version.
+ */
+@Entity
+@Table(name = "loan_archive")
+public class LoanArchive {
+
+    @Id
+    @Column(name = "loan_id")
+    private Long id;
+
+    @Column(name = "amount_cents", nullable = false)
+    private Money amount;
+
+    @Column(name = "term", nullable = false)
+    private Integer term;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @ManyToOne
+    @JoinColumn(name = "type_id", nullable = false)
+    private LoanType loanType;
+
+    @ManyToOne
+    @JoinColumn(name = "status_id", nullable = false)
+    private LoanStatus loanStatus;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "status_updated_at", nullable = false)
+    private Instant statusUpdatedAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private Instant archivedAt;
+
+    public LoanArchive() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public Integer getTerm() {
+        return term;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LoanType getLoanType() {
+        return loanType;
+    }
+
+    public LoanStatus getLoanStatus() {
+        return loanStatus;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getStatusUpdatedAt() {
+        return statusUpdatedAt;
+    }
+
+    public Instant getArchivedAt() {
+        return archivedAt;
+    }
+}
@@ -0,0 +1,264 @@
+package com.mayhem.lms.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Exact monetary amount stored as a long number of minor units (cents).
+ * Instances are immutable; the static cent helpers let hot loops do exact arithmetic on
+ * primitive longs without allocating. In JSON the amount is a plain decimal number such as 1250.50,
+ * binary formats (CBOR, Smile) carry it as a native decimal.
+ */
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final Money ZERO = new Money(0);
+    /** Longest rendering, "-92233720368547758.08" */
+    public static final int MAX_CHARS = 21;
+
+    private static final int CENTS_PER_UNIT = 100;
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Parse a decimal amount with at most two fractional digits, e.g. "1250", "1250.5" or "-3.07"
+     * @param text decimal amount
+     * @return parsed amount
+     */
+    public static Money parse(String text) {
+        return ofCents(parseCents(text));
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public Money add(Money other) {
+        return ofCents(addCents(cents, other.cents));
+    }
+
+    public Money subtract(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money multiply(long factor) {
+        return ofCents(Math.multiplyExact(cents, factor));
+    }
+
+    /**
+     * Multiply by numerator / denominator, rounding half-even to the nearest cent
+     * @param numerator
+     * @param denominator
+     * @return scaled amount
+     */
+    public Money multiply(long numerator, long denominator) {
+        return ofCents(roundDivide(Math.multiplyExact(cents, numerator), denominator));
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    public static long addCents(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long multiplyCents(long cents, long factor) {
+        return Math.multiplyExact(cents, factor);
+    }
+
+    /**
+     * Divide rounding half-even, as banks round
+     * @param dividend
+     * @param divisor must not be zero
+     * @return rounded quotient
+     */
+    public static long roundDivide(long dividend, long divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        long twiceRemainder = Math.abs(remainder) * 2;
+        long absDivisor = Math.abs(divisor);
+        int sign = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        if (twiceRemainder > absDivisor || (twiceRemainder == absDivisor && (quotient & 1) != 0)) {
+            return quotient + sign;
+        }
+        return quotient;
+    }
+
+    static long parseCents(String text) {
+        if (text == null || text.isEmpty()) {
+            throw new NumberFormatException("Amount must not be empty");
+        }
+        int index = 0;
+        boolean negative = false;
+        char first = text.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            index++;
+        }
+        long units = 0;
+        int integerDigits = 0;
+        while (index < text.length() && text.charAt(index) != '.') {
+            units = Math.addExact(Math.multiplyExact(units, 10), digit(text, index++));
+            integerDigits++;
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (index < text.length()) {
+            index++;
+            while (index < text.length()) {
+                int digit = digit(text, index++);
+                if (fractionDigits == 2) {
+                    if (digit != 0) {
+                        throw new NumberFormatException("Amount must have at most two decimal places: " + text);
+                    }
+                    continue;
+                }
+                fraction = fraction * 10 + digit;
+                fractionDigits++;
+            }
+        }
+        if (integerDigits == 0 && fractionDigits == 0) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        long cents = Math.addExact(Math.multiplyExact(units, CENTS_PER_UNIT), fraction);
+        return negative ? -cents : cents;
+    }
+
+    private static int digit(String text, int index) {
+        char c = text.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        return c - '0';
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Money money && money.cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        char[] buffer = new char[MAX_CHARS];
+        return new String(buffer, 0, formatTo(buffer));
+    }
+
+    /**
+     * Write the plain decimal form, e.g. "1250.50", without allocating a String
+     * @param buffer at least {@link #MAX_CHARS} long
+     * @return number of chars written from index 0
+     */
+    public int formatTo(char[] buffer) {
+        int pos = MAX_CHARS;
+        // negated magnitude, so Long.MIN_VALUE needs no special case
+        long rest = cents < 0 ? cents : -cents;
+        buffer[--pos] = (char) ('0' - rest % 10);
+        rest /= 10;
+        buffer[--pos] = (char) ('0' - rest % 10);
+        rest /= 10;
+        buffer[--pos] = '.';
+        do {
+            buffer[--pos] = (char) ('0' - rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (cents < 0) {
+            buffer[--pos] = '-';
+        }
+        int length = MAX_CHARS - pos;
+        System.arraycopy(buffer, pos, buffer, 0, length);
+        return length;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Write as a number value: exact decimal digits for text formats, a native decimal for binary ones
+     * @param gen generator positioned where the value goes
+     * @param scratch at least {@link #MAX_CHARS} long, only used by text formats
+     */
+    public void writeTo(JsonGenerator gen, char[] scratch) throws IOException {
+        if (gen.canWriteBinaryNatively()) {
+            gen.writeNumber(toBigDecimal());
+        } else {
+            gen.writeNumber(scratch, 0, formatTo(scratch));
+        }
+    }
+
+    public static class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            value.writeTo(gen, new char[MAX_CHARS]);
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_STRING) {
+                return (Money) context.handleUnexpectedToken(Money.class, parser);
+            }
+            try {
+                if (token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                    return ofCents(Math.multiplyExact(parser.getLongValue(), CENTS_PER_UNIT));
+                }
+                if (token == JsonToken.VALUE_NUMBER_FLOAT && parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL) {
+                    // native decimal from CBOR/Smile, no detour through text
+                    return ofCents(parser.getDecimalValue().setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+                }
+                return parse(parser.getText().trim());
+            } catch (NumberFormatException | ArithmeticException e) {
+                return (Money) context.handleWeirdStringValue(Money.class, parser.getText(), e.getMessage());
+            }
+        }
+    }
+}
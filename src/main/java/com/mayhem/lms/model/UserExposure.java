@@ -0,0 +1,110 @@
+package com.mayhem.lms.model;
+
+import com.mayhem.lms.dto.UserExposureSummary;
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Running totals of one user's loans by status. Never saved through the entity after creation,
+ * the loan service applies deltas with {@link com.mayhem.lms.repository.UserExposureRepository#applyDelta}
+ * in the same transaction as the loan change, which also bumps the version.
+ */
+@Entity
+@Table(name = "user_exposure")
+public class UserExposure implements UserExposureSummary {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "pending_loans", nullable = false)
+    private long pendingLoans;
+
+    @Column(name = "pending_cents", nullable = false)
+    private long pendingCents;
+
+    @Column(name = "approved_loans", nullable = false)
+    private long approvedLoans;
+
+    @Column(name = "approved_cents", nullable = false)
+    private long approvedCents;
+
+    @Column(name = "rejected_loans", nullable = false)
+    private long rejectedLoans;
+
+    @Column(name = "monthly_installment_cents", nullable = false)
+    private long monthlyInstallmentCents;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public UserExposure() {
+    }
+
+    public UserExposure(Long userId) {
+        this(userId, 0, 0, 0, 0, 0, 0);
+    }
+
+    public UserExposure(Long userId, long pendingLoans, long pendingCents, long approvedLoans, long approvedCents, long rejectedLoans, long monthlyInstallmentCents) {
+        this.userId = userId;
+        this.pendingLoans = pendingLoans;
+        this.pendingCents = pendingCents;
+        this.approvedLoans = approvedLoans;
+        this.approvedCents = approvedCents;
+        this.rejectedLoans = rejectedLoans;
+        this.monthlyInstallmentCents = monthlyInstallmentCents;
+        this.updatedAt = Instant.now();
+    }
+
+    @Override
+    public long getOpenLoans() {
+        return pendingLoans + approvedLoans;
+    }
+
+    @Override
+    public long getOpenAmountCents() {
+        return Money.addCents(pendingCents, approvedCents);
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public long getPendingLoans() {
+        return pendingLoans;
+    }
+
+    public long getPendingCents() {
+        return pendingCents;
+    }
+
+    public long getApprovedLoans() {
+        return approvedLoans;
+    }
+
+    public long getApprovedCents() {
+        return approvedCents;
+    }
+
+    public long getRejectedLoans() {
+        return rejectedLoans;
+    }
+
+    @Override
+    public long getMonthlyInstallmentCents() {
+        return monthlyInstallmentCents;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
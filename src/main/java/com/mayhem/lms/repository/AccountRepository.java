@@ -2,9 +2,22 @@ package com.mayhem.lms.repository;
 
 import com.mayhem.lms.model.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Optional;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
     Optional<Account> findByEmail(String email);
-}
\ No newline at end of file
+
+    /**
+     * Delete the given accounts in one statement. Their user profiles must be gone already
+     * @param ids
+     * @return number of deleted accounts
+     */
+    @Modifying
+    @Query("delete from Account a where a.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,12 @@
+package com.mayhem.lms.repository;
+
+import com.mayhem.lms.model.AuditRecord;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AuditRecordRepository extends JpaRepository<AuditRecord, Long> {
+    Page<AuditRecord> findByEntityTypeAndEntityIdOrderByCreatedAtDescIdDesc(String entityType, Long entityId, Pageable pageable);
+}
@@ -0,0 +1,60 @@
+package com.mayhem.lms.repository;
+
+import com.mayhem.lms.dto.LoanStateDto;
+import com.mayhem.lms.model.LoanArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LoanArchiveRepository extends JpaRepository<LoanArchive, Long> {
+
+    /**
+     * Copy loans in the given status into the archive in one statement
+     * @param ids
+     * @param statusId only loans still in this status are copied
+     * @param now archival time
+     * @return number of archived loans
+     */
+    @Modifying
+    @Query(value = "insert into loan_archive (loan_id, amount_cents, term, user_id, type_id, status_id, created_at, status_updated_at, archived_at) " +
+            "select loan_id, amount_cents, term, user_id, type_id, status_id, created_at, status_updated_at, :now " +
+            "from loan where loan_id in (:ids) and status_id = :statusId", nativeQuery = true)
+    int copyFromLoans(@Param("ids") Collection<Long> ids, @Param("statusId") Long statusId, @Param("now") Instant now);
+
+    /**
+     * An archived loan in the same shape as a live one, with version 0 since archived loans never change
+     * @param id
+     * @return
+     */
+    @Query("select new com.mayhem.lms.dto.LoanStateDto(a.id, 0L, a.userId, s.id, t.id, a.amount, a.term, t.type, s.status, " +
+            "concat(u.firstName, ' ', u.lastName)) " +
+            "from LoanArchive a join a.loanType t join a.loanStatus s join User u on u.id = a.userId where a.id = :id")
+    Optional<LoanStateDto> findStateById(@Param("id") Long id);
+
+    /**
+     * Archived loans of a user, oldest first
+     * @param userId
+     * @return
+     */
+    @Query("select new com.mayhem.lms.dto.LoanStateDto(a.id, 0L, a.userId, s.id, t.id, a.amount, a.term, t.type, s.status, " +
+            "concat(u.firstName, ' ', u.lastName)) " +
+            "from LoanArchive a join a.loanType t join a.loanStatus s join User u on u.id = a.userId " +
+            "where a.userId = :userId order by a.id")
+    List<LoanStateDto> findStatesByUserId(@Param("userId") Long userId);
+
+    /**
+     * Ids of the archived loans of the given users
+     * @param userIds
+     * @return
+     */
+    @Query("select a.id from LoanArchive a where a.userId in :userIds")
+    List<Long> findIdsByUserIds(@Param("userIds") Collection<Long> userIds);
+}
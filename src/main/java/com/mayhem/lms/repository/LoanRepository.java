@@ -1,13 +1,150 @@
 package com.mayhem.lms.repository;
 
+import com.mayhem.lms.dto.LoanStateDto;
+import com.mayhem.lms.dto.ResourceVersionDto;
 import com.mayhem.lms.model.Loan;
+import com.mayhem.lms.model.LoanStatus;
+import com.mayhem.lms.model.LoanType;
+import com.mayhem.lms.model.Money;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LoanRepository extends JpaRepository<Loan, Long>{
     Optional<List<Loan>> findByUsersId(Long userId);
+
+    @Query("select new com.mayhem.lms.dto.ResourceVersionDto(u.id, l.version, u.version, l.updatedAt, u.updatedAt) " +
+            "from Loan l join l.users u where l.id = :id")
+    Optional<ResourceVersionDto> findVersionById(@Param("id") Long id);
+
+    /**
+     * Ownership, status, version and display fields of a loan in one query
+     * @param id
+     * @return
+     */
+    @Query("select new com.mayhem.lms.dto.LoanStateDto(l.id, l.version, u.id, s.id, t.id, l.amount, l.term, t.type, s.status, " +
+            "concat(u.firstName, ' ', u.lastName)) " +
+            "from Loan l join l.users u join l.loanTypes t join l.loanStatus s where l.id = :id")
+    Optional<LoanStateDto> findStateById(@Param("id") Long id);
+
+    /**
+     * Whether the user has a loan in the given status, answered from the (user_id, status_id) index
+     * @param userId
+     * @param statusId
+     * @return
+     */
+    boolean existsByUsersIdAndLoanStatusId(Long userId, Long statusId);
+
+    /**
+     * Which of the given users have a loan in the given status
+     * @param userIds
+     * @param statusId
+     * @return
+     */
+    @Query("select distinct l.users.id from Loan l where l.users.id in :userIds and l.loanStatus.id = :statusId")
+    List<Long> findUserIdsWithLoanStatus(@Param("userIds") Collection<Long> userIds, @Param("statusId") Long statusId);
+
+    /**
+     * Loans of the given users that are not approved, the pre-image of a purge
+     * @param userIds
+     * @param approvedStatusId
+     * @return
+     */
+    @Query("select new com.mayhem.lms.dto.LoanStateDto(l.id, l.version, u.id, s.id, t.id, l.amount, l.term, t.type, s.status, " +
+            "concat(u.firstName, ' ', u.lastName)) " +
+            "from Loan l join l.users u join l.loanTypes t join l.loanStatus s " +
+            "where u.id in :userIds and s.id <> :approvedStatusId")
+    List<LoanStateDto> findStatesByUserIdsUnlessApproved(@Param("userIds") Collection<Long> userIds,
+                                                         @Param("approvedStatusId") Long approvedStatusId);
+
+    /**
+     * Delete all loans of the given users in one statement unless they are approved, nothing is loaded
+     * @param userIds
+     * @param approvedStatusId
+     * @return number of deleted loans
+     */
+    @Modifying
+    @Query("delete from Loan l where l.users.id in :userIds and l.loanStatus.id <> :approvedStatusId")
+    int deleteByUserIdsUnlessApproved(@Param("userIds") Collection<Long> userIds, @Param("approvedStatusId") Long approvedStatusId);
+
+    /**
+     * Delete a loan of the given owner unless it is approved, and only if nobody changed it since it was read
+     * @param id
+     * @param userId owner
+     * @param version version that was read
+     * @param approvedStatusId
+     * @return 1 if deleted, 0 otherwise
+     */
+    @Modifying
+    @Query("delete from Loan l where l.id = :id and l.users.id = :userId and l.version = :version " +
+            "and l.loanStatus.id <> :approvedStatusId")
+    int deleteOwnedUnlessApproved(@Param("id") Long id, @Param("userId") Long userId, @Param("version") Long version,
+                                  @Param("approvedStatusId") Long approvedStatusId);
+
+    /**
+     * Change amount, term and type of a loan of the given owner if it is still at the version that was read.
+     * Bumps the version like a managed update would
+     * @param id
+     * @param userId owner
+     * @param version version that was read
+     * @param amount
+     * @param term
+     * @param type
+     * @param now
+     * @return 1 if updated, 0 otherwise
+     */
+    @Modifying
+    @Query("update Loan l set l.amount = :amount, l.term = :term, l.loanTypes = :type, " +
+            "l.version = l.version + 1, l.updatedAt = :now " +
+            "where l.id = :id and l.users.id = :userId and l.version = :version")
+    int updateOwnedTerms(@Param("id") Long id, @Param("userId") Long userId, @Param("version") Long version,
+                         @Param("amount") Money amount, @Param("term") Integer term, @Param("type") LoanType type,
+                         @Param("now") Instant now);
+
+    /**
+     * Move a loan to another status if it is still at the version that was read. Bumps the version
+     * and records when the status changed
+     * @param id
+     * @param version version that was read
+     * @param status
+     * @param now
+     * @return 1 if updated, 0 otherwise
+     */
+    @Modifying
+    @Query("update Loan l set l.loanStatus = :status, l.statusUpdatedAt = :now, l.version = l.version + 1, l.updatedAt = :now " +
+            "where l.id = :id and l.version = :version")
+    int updateStatus(@Param("id") Long id, @Param("version") Long version, @Param("status") LoanStatus status,
+                     @Param("now") Instant now);
+
+    /**
+     * Lock the oldest loans that have been in a status since before the cutoff, one chunk at a time
+     * @param statusId
+     * @param cutoff
+     * @param pageable chunk size
+     * @return locked loan ids
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l.id from Loan l where l.loanStatus.id = :statusId and l.statusUpdatedAt < :cutoff order by l.id")
+    List<Long> lockIdsInStatusSince(@Param("statusId") Long statusId, @Param("cutoff") Instant cutoff, Pageable pageable);
+
+    /**
+     * Delete the given loans if they are still in the status
+     * @param ids
+     * @param statusId
+     * @return number of deleted loans
+     */
+    @Modifying
+    @Query("delete from Loan l where l.id in :ids and l.loanStatus.id = :statusId")
+    int deleteByIdsInStatus(@Param("ids") Collection<Long> ids, @Param("statusId") Long statusId);
 }
@@ -0,0 +1,108 @@
+package com.mayhem.lms.repository;
+
+import com.mayhem.lms.model.Money;
+import com.mayhem.lms.model.UserExposure;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+
+@Repository
+public interface UserExposureRepository extends JpaRepository<UserExposure, Long> {
+
+    /** loan_status ids seeded by the baseline migration */
+    long PENDING = 1L;
+    long APPROVED = 2L;
+    long REJECTED = 3L;
+
+    /**
+     * Read a user's exposure and lock the row until the transaction ends, so concurrent applications
+     * of the same user are checked one after the other against up to date totals
+     * @param userId
+     * @return
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from UserExposure e where e.userId = :userId")
+    Optional<UserExposure> findForUpdate(@Param("userId") Long userId);
+
+    /**
+     * Add deltas to a user's totals in a single statement and bump the row version
+     * @return number of updated rows, 0 when the user has no exposure row
+     */
+    @Modifying
+    @Query("update UserExposure e set e.pendingLoans = e.pendingLoans + :pendingLoans, " +
+            "e.pendingCents = e.pendingCents + :pendingCents, " +
+            "e.approvedLoans = e.approvedLoans + :approvedLoans, " +
+            "e.approvedCents = e.approvedCents + :approvedCents, " +
+            "e.rejectedLoans = e.rejectedLoans + :rejectedLoans, " +
+            "e.monthlyInstallmentCents = e.monthlyInstallmentCents + :monthlyInstallmentCents, " +
+            "e.version = e.version + 1, e.updatedAt = :now where e.userId = :userId")
+    int applyDelta(@Param("userId") Long userId, @Param("pendingLoans") long pendingLoans, @Param("pendingCents") long pendingCents,
+                   @Param("approvedLoans") long approvedLoans, @Param("approvedCents") long approvedCents,
+                   @Param("rejectedLoans") long rejectedLoans, @Param("monthlyInstallmentCents") long monthlyInstallmentCents,
+                   @Param("now") Instant now);
+
+    /**
+     * Delete the exposure rows of the given users
+     * @param userIds
+     * @return number of deleted rows
+     */
+    @Modifying
+    @Query("delete from UserExposure e where e.userId in :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Move one loan's contribution from its previous state to its new one. A null status means the loan
+     * did not exist before (create) or does not exist after (delete). Must run in the loan's transaction
+     * @param userId owner of the loan
+     * @param fromStatusId
+     * @param fromAmount
+     * @param fromTerm
+     * @param toStatusId
+     * @param toAmount
+     * @param toTerm
+     */
+    default void moveLoan(Long userId, Long fromStatusId, Money fromAmount, Integer fromTerm,
+                          Long toStatusId, Money toAmount, Integer toTerm) {
+        long[] delta = new long[6];
+        contribute(delta, fromStatusId, fromAmount, fromTerm, -1);
+        contribute(delta, toStatusId, toAmount, toTerm, 1);
+        if (delta[0] == 0 && delta[1] == 0 && delta[2] == 0 && delta[3] == 0 && delta[4] == 0 && delta[5] == 0) {
+            return;
+        }
+        Instant now = Instant.now();
+        if (applyDelta(userId, delta[0], delta[1], delta[2], delta[3], delta[4], delta[5], now) == 0) {
+            // users registered before the exposure table existed and were missed by the backfill
+            save(new UserExposure(userId));
+            applyDelta(userId, delta[0], delta[1], delta[2], delta[3], delta[4], delta[5], now);
+        }
+    }
+
+    private static void contribute(long[] delta, Long statusId, Money amount, Integer term, int sign) {
+        if (statusId == null) {
+            return;
+        }
+        long cents = amount == null ? 0 : amount.getCents();
+        if (statusId == REJECTED) {
+            delta[4] += sign;
+            return;
+        }
+        if (statusId == PENDING) {
+            delta[0] += sign;
+            delta[1] += sign * cents;
+        } else if (statusId == APPROVED) {
+            delta[2] += sign;
+            delta[3] += sign * cents;
+        } else {
+            return;
+        }
+        delta[5] += sign * (term != null && term > 0 ? cents / term : cents);
+    }
+}
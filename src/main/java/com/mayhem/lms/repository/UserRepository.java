@@ -1,9 +1,68 @@
 package com.mayhem.lms.repository;
 
+import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.dto.ResourceVersionDto;
 import com.mayhem.lms.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    /**
+     * Version of a user together with its exposure row, which is rendered with the user
+     * @param id
+     * @return
+     */
+    @Query("select new com.mayhem.lms.dto.ResourceVersionDto(u.id, u.version, coalesce(e.version, 0), u.updatedAt, coalesce(e.updatedAt, u.updatedAt)) " +
+            "from User u left join UserExposure e on e.userId = u.id where u.id = :id")
+    Optional<ResourceVersionDto> findVersionById(@Param("id") Long id);
+
+    /**
+     * One page of users projected straight into the DTO, one query joining account and role.
+     * Filters are optional, null matches everything. Sort properties are relative to the user,
+     * account columns are addressed through the alias a (a.email)
+     * @param role role name, exact
+     * @param namePrefix lower case LIKE pattern matched against first and last name, backslash escapes
+     * @param afterId keyset position, only ids above it
+     * @param pageable page, size and sort
+     * @return
+     */
+    @Query("select new com.mayhem.lms.dto.GetUserDto(u.id, a.email, u.firstName, u.lastName, u.phoneNumber, r.roleName) " +
+            "from User u join u.account a join a.role r " +
+            "where (:role is null or r.roleName = :role) " +
+            "and (:namePrefix is null or lower(u.firstName) like :namePrefix escape '\\' or lower(u.lastName) like :namePrefix escape '\\') " +
+            "and (:afterId is null or u.id > :afterId)")
+    Slice<GetUserDto> findUserViews(@Param("role") String role, @Param("namePrefix") String namePrefix,
+                                    @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Ids of those of the given users that exist, with their account ids
+     * @param ids
+     * @return
+     */
+    @Query("select u.id as userId, u.account.id as accountId from User u where u.id in :ids")
+    List<UserAccountIds> findAccountIds(@Param("ids") Collection<Long> ids);
+
+    interface UserAccountIds {
+        Long getUserId();
+        Long getAccountId();
+    }
+
+    /**
+     * Delete the given users in one statement. Their loans and exposure rows must be gone already
+     * @param ids
+     * @return number of deleted users
+     */
+    @Modifying
+    @Query("delete from User u where u.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
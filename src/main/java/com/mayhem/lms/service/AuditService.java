@@ -0,0 +1,15 @@
+package com.mayhem.lms.service;
+
+import com.mayhem.lms.constants.AuditAction;
+import com.mayhem.lms.constants.AuditEntityType;
+import com.mayhem.lms.dto.GetAuditRecordDto;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AuditService {
+    void record(AuditEntityType entityType, Long entityId, AuditAction action, Long actorId, Object before, Object after);
+    int flush();
+    void redact(AuditEntityType entityType, Collection<Long> entityIds);
+    List<GetAuditRecordDto> getLoanHistory(Long loanId, int page, int size);
+}
@@ -0,0 +1,251 @@
+package com.mayhem.lms.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayhem.lms.constants.AuditAction;
+import com.mayhem.lms.constants.AuditEntityType;
+import com.mayhem.lms.dto.GetAuditRecordDto;
+import com.mayhem.lms.model.AuditRecord;
+import com.mayhem.lms.repository.AuditRecordRepository;
+import com.mayhem.lms.util.RingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+public class AuditServiceImpl implements AuditService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditServiceImpl.class);
+
+    private static final String INSERT_SQL = "INSERT INTO audit_record " +
+            "(entity_type, entity_id, action, actor_id, before_state, after_state, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String REDACT_SQL = "UPDATE audit_record SET before_state = NULL, after_state = NULL " +
+            "WHERE entity_type = ? AND entity_id = ?";
+
+    private final AuditRecordRepository auditRecordRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final RingBuffer<PendingRecord> buffer;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final int maxRetainedRecords;
+    // batches whose write failed, oldest first, guarded by this
+    private final Deque<FailedBatch> failedBatches = new ArrayDeque<>();
+    private volatile int retainedRecords;
+    private final Counter writeFailures;
+    private final Counter droppedRecords;
+
+    public AuditServiceImpl(AuditRecordRepository auditRecordRepository, JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${lms.audit.buffer-capacity:8192}") int bufferCapacity,
+                            @Value("${lms.audit.batch-size:200}") int batchSize,
+                            @Value("${lms.audit.max-attempts:50}") int maxAttempts,
+                            @Value("${lms.audit.max-retained-records:8192}") int maxRetainedRecords) {
+        this.auditRecordRepository = auditRecordRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.buffer = new RingBuffer<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.maxRetainedRecords = maxRetainedRecords;
+        this.writeFailures = meterRegistry.counter("lms.audit.write.failures");
+        this.droppedRecords = meterRegistry.counter("lms.audit.records.dropped");
+        meterRegistry.gauge("lms.audit.records.retained", this, service -> service.retainedRecords);
+    }
+
+    /**
+     * Queue an audit record once the caller's transaction commits, the request thread only pays for the enqueue.
+     * A rolled back change leaves no record. Outside a transaction the record is queued at once.
+     * If the buffer is full the record is dropped, logged with its content and counted in lms.audit.records.dropped;
+     * the request thread never writes, so a slow or unavailable database does not stall requests
+     * @param entityType audited entity
+     * @param entityId id of the audited entity
+     * @param action performed action
+     * @param actorId id of the user performing the action
+     * @param before state before the change, null for creations
+     * @param after state after the change, null for deletions
+     */
+    @Override
+    public void record(AuditEntityType entityType, Long entityId, AuditAction action, Long actorId, Object before, Object after) {
+        PendingRecord pending = new PendingRecord(entityType, entityId, action, actorId, before, after, Instant.now());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(pending);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(pending);
+            }
+        });
+    }
+
+    private void enqueue(PendingRecord pending) {
+        if (!buffer.offer(pending)) {
+            drop(List.of(pending), "the buffer was full");
+        }
+    }
+
+    /**
+     * Retry the batches that failed before, then drain the buffer and write the records in JDBC batches.
+     * A batch that fails is kept and retried on the next flush, up to lms.audit.max-attempts writes and
+     * lms.audit.max-retained-records records. Past those limits records are dropped, logged with their content
+     * and counted in lms.audit.records.dropped
+     * @return number of written records
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${lms.audit.flush-interval-ms:200}")
+    public synchronized int flush() {
+        int written = 0;
+        while (!failedBatches.isEmpty()) {
+            FailedBatch failed = failedBatches.pollFirst();
+            retainedRecords -= failed.records().size();
+            if (!write(failed.records())) {
+                if (failed.attempts() + 1 >= maxAttempts) {
+                    drop(failed.records(), "failing " + maxAttempts + " writes");
+                } else {
+                    failedBatches.addFirst(new FailedBatch(failed.records(), failed.attempts() + 1));
+                    retainedRecords += failed.records().size();
+                }
+                // the database is still failing, leave the buffer to the next flush
+                return written;
+            }
+            written += failed.records().size();
+        }
+        List<PendingRecord> batch = new ArrayList<>(batchSize);
+        while (buffer.drain(batch::add, batchSize) > 0) {
+            if (!write(batch)) {
+                retain(batch);
+                return written;
+            }
+            written += batch.size();
+            batch.clear();
+        }
+        return written;
+    }
+
+    /**
+     * Drop the before and after states from all audit records of the given entities, for example when their
+     * owner is purged. Queued records are written first so none of them escapes the redaction.
+     * Runs outside the caller's transaction when there is none, call it once the deletion has committed
+     * @param entityType audited entity
+     * @param entityIds ids of the audited entities
+     */
+    @Override
+    public void redact(AuditEntityType entityType, Collection<Long> entityIds) {
+        if (entityIds.isEmpty()) {
+            return;
+        }
+        flush();
+        jdbcTemplate.batchUpdate(REDACT_SQL, entityIds, batchSize, (ps, entityId) -> {
+            ps.setString(1, entityType.name());
+            ps.setLong(2, entityId);
+        });
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        int written = flush();
+        logger.info("Audit buffer flushed on shutdown, {} records written", written);
+        while (!failedBatches.isEmpty()) {
+            FailedBatch failed = failedBatches.pollFirst();
+            retainedRecords -= failed.records().size();
+            drop(failed.records(), "shutdown");
+        }
+    }
+
+    /**
+     * Get the audit history of a loan, newest first
+     * @param loanId
+     * @param page
+     * @param size
+     * @return
+     */
+    @Override
+    public List<GetAuditRecordDto> getLoanHistory(Long loanId, int page, int size) {
+        return auditRecordRepository.findByEntityTypeAndEntityIdOrderByCreatedAtDescIdDesc(
+                        AuditEntityType.LOAN.name(), loanId, PageRequest.of(page, size))
+                .stream()
+                .map(auditRecord -> new GetAuditRecordDto(
+                        auditRecord.getId(),
+                        auditRecord.getAction(),
+                        auditRecord.getActorId(),
+                        auditRecord.getBeforeState(),
+                        auditRecord.getAfterState(),
+                        auditRecord.getCreatedAt()
+                )).collect(Collectors.toList());
+    }
+
+    private void retain(List<PendingRecord> records) {
+        failedBatches.addLast(new FailedBatch(records, 1));
+        retainedRecords += records.size();
+        while (retainedRecords > maxRetainedRecords) {
+            FailedBatch oldest = failedBatches.pollFirst();
+            retainedRecords -= oldest.records().size();
+            drop(oldest.records(), "more than " + maxRetainedRecords + " records failed");
+        }
+    }
+
+    private void drop(List<PendingRecord> records, String reason) {
+        droppedRecords.increment(records.size());
+        logger.error("Dropped {} audit records after {}: {}", records.size(), reason, records);
+    }
+
+    private boolean write(List<PendingRecord> records) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, records, records.size(), (ps, pending) -> {
+                ps.setString(1, pending.entityType().name());
+                ps.setLong(2, pending.entityId());
+                ps.setString(3, pending.action().name());
+                ps.setObject(4, pending.actorId());
+                ps.setString(5, toJson(pending.before()));
+                ps.setString(6, toJson(pending.after()));
+                ps.setTimestamp(7, Timestamp.from(pending.createdAt()));
+            });
+            return true;
+        } catch (RuntimeException e) {
+            writeFailures.increment();
+            logger.warn("Failed to write {} audit records, keeping them for a retry", records.size(), e);
+            return false;
+        }
+    }
+
+    private String toJson(Object state) {
+        if (state == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(state);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize audit state {}", state, e);
+            return null;
+        }
+    }
+
+    private record FailedBatch(List<PendingRecord> records, int attempts) {
+    }
+
+    private record PendingRecord(AuditEntityType entityType, Long entityId, AuditAction action, Long actorId,
+                                 Object before, Object after, Instant createdAt) {
+    }
+}
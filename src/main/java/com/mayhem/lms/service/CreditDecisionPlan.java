@@ -0,0 +1,149 @@
+package com.mayhem.lms.service;
+
+import com.mayhem.lms.constants.CreditOutcome;
+import com.mayhem.lms.dto.CreditDecisionDto;
+import com.mayhem.lms.dto.UserExposureSummary;
+import com.mayhem.lms.model.Money;
+import org.springframework.core.env.PropertyResolver;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+/**
+ * Credit rules compiled into flat arrays indexed by loan type id. Evaluating an application is a
+ * handful of long comparisons on exact cents, with no lookups, parsing or allocation besides the result.
+ * <p>
+ * Hard limits (per-type amount and term, total exposure, debt-to-income) reject the application, or leave
+ * it for review when auto-reject is off. Otherwise the risk score is the highest utilisation of any limit
+ * in percent, and applications scoring below the auto-approve threshold are approved.
+ * There is no income on file, so debt-to-income is a proxy: monthly instalments of all open loans
+ * against a configured reference income.
+ */
+public final class CreditDecisionPlan {
+
+    private static final String PREFIX = "lms.credit.";
+    /** Keeps limit * 10000 within a long */
+    private static final long MAX_LIMIT_CENTS = Long.MAX_VALUE / 10_000;
+
+    private final long[] maxAmountCents;
+    private final int[] minTerm;
+    private final int[] maxTerm;
+    private final long maxExposureCents;
+    private final long referenceIncomeCents;
+    private final long maxDebtToIncomeBasisPoints;
+    private final int autoApproveBelow;
+    private final boolean autoReject;
+
+    private CreditDecisionPlan(long[] maxAmountCents, int[] minTerm, int[] maxTerm, long maxExposureCents,
+                               long referenceIncomeCents, long maxDebtToIncomeBasisPoints, int autoApproveBelow,
+                               boolean autoReject) {
+        this.maxAmountCents = maxAmountCents;
+        this.minTerm = minTerm;
+        this.maxTerm = maxTerm;
+        this.maxExposureCents = maxExposureCents;
+        this.referenceIncomeCents = referenceIncomeCents;
+        this.maxDebtToIncomeBasisPoints = maxDebtToIncomeBasisPoints;
+        this.autoApproveBelow = autoApproveBelow;
+        this.autoReject = autoReject;
+    }
+
+    /**
+     * Read the lms.credit.* rules and compile them for the given loan types.
+     * Types without lms.credit.types.&lt;name&gt;.max-amount are never decided automatically
+     * @param loanTypes type name by id
+     * @param properties rule configuration
+     * @return compiled plan
+     */
+    public static CreditDecisionPlan compile(Map<Long, String> loanTypes, PropertyResolver properties) {
+        int size = loanTypes.keySet().stream().mapToInt(Long::intValue).max().orElse(0) + 1;
+        long[] maxAmountCents = new long[size];
+        int[] minTerm = new int[size];
+        int[] maxTerm = new int[size];
+        loanTypes.forEach((id, name) -> {
+            String maxAmount = properties.getProperty(PREFIX + "types." + name + ".max-amount");
+            if (maxAmount != null) {
+                int index = id.intValue();
+                maxAmountCents[index] = limit(Money.parse(maxAmount), "types." + name + ".max-amount");
+                minTerm[index] = properties.getProperty(PREFIX + "types." + name + ".min-term", Integer.class, 1);
+                maxTerm[index] = properties.getProperty(PREFIX + "types." + name + ".max-term", Integer.class, Integer.MAX_VALUE);
+            }
+        });
+        long maxExposure = limit(Money.parse(properties.getProperty(PREFIX + "max-exposure", "1000000.00")), "max-exposure");
+        long referenceIncome = limit(Money.parse(properties.getProperty(PREFIX + "reference-monthly-income", "8000.00")), "reference-monthly-income");
+        long maxDebtToIncome = new BigDecimal(properties.getProperty(PREFIX + "max-debt-to-income", "0.45"))
+                .movePointRight(4).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+        if (maxDebtToIncome <= 0) {
+            throw new IllegalArgumentException(PREFIX + "max-debt-to-income must be positive");
+        }
+        return new CreditDecisionPlan(maxAmountCents, minTerm, maxTerm, maxExposure, referenceIncome, maxDebtToIncome,
+                properties.getProperty(PREFIX + "auto-approve-below", Integer.class, 60),
+                properties.getProperty(PREFIX + "auto-reject", Boolean.class, false));
+    }
+
+    /**
+     * Evaluate one application
+     * @param typeId loan type id
+     * @param amount requested amount
+     * @param term term in months
+     * @param exposure the user's open loans before this one
+     * @return decision
+     */
+    public CreditDecisionDto evaluate(Long typeId, Money amount, Integer term, UserExposureSummary exposure) {
+        if (typeId == null || typeId < 0 || typeId >= maxAmountCents.length || maxAmountCents[typeId.intValue()] == 0) {
+            return new CreditDecisionDto(CreditOutcome.REVIEW, 0, "No credit limits configured for loan type");
+        }
+        if (amount == null || !amount.isPositive() || term == null || term < 1) {
+            return new CreditDecisionDto(CreditOutcome.REVIEW, 0, "Amount or term missing");
+        }
+        int type = typeId.intValue();
+        long amountCents = amount.getCents();
+        if (amountCents > maxAmountCents[type]) {
+            return hardLimit("Amount above the limit for the loan type");
+        }
+        if (term < minTerm[type] || term > maxTerm[type]) {
+            return hardLimit("Term outside the range for the loan type");
+        }
+        long exposureCents = saturatedAdd(exposure.getOpenAmountCents(), amountCents);
+        int exposureScore = percentOf(exposureCents, maxExposureCents);
+        if (exposureScore > 100) {
+            return hardLimit("Total exposure above the limit");
+        }
+        long installmentCents = Money.roundDivide(amountCents, term);
+        long monthlyCents = saturatedAdd(exposure.getMonthlyInstallmentCents(), installmentCents);
+        int debtToIncomeScore = monthlyCents >= referenceIncomeCents ? 101
+                : percentOf(monthlyCents * 10_000 / referenceIncomeCents, maxDebtToIncomeBasisPoints);
+        if (debtToIncomeScore > 100) {
+            return hardLimit("Debt-to-income above the limit");
+        }
+        int score = Math.max(percentOf(amountCents, maxAmountCents[type]), Math.max(exposureScore, debtToIncomeScore));
+        if (score < autoApproveBelow) {
+            return new CreditDecisionDto(CreditOutcome.APPROVE, score, "Within all limits");
+        }
+        return new CreditDecisionDto(CreditOutcome.REVIEW, score, "Close to a limit");
+    }
+
+    private CreditDecisionDto hardLimit(String reason) {
+        return new CreditDecisionDto(autoReject ? CreditOutcome.REJECT : CreditOutcome.REVIEW, 101, reason);
+    }
+
+    /** Utilisation in percent, 101 for anything above the limit. Safe because limits are at most MAX_LIMIT_CENTS */
+    private static int percentOf(long value, long limit) {
+        if (value > limit) {
+            return 101;
+        }
+        return (int) (value * 100 / limit);
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return ((a ^ sum) & (b ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static long limit(Money value, String property) {
+        if (!value.isPositive() || value.getCents() > MAX_LIMIT_CENTS) {
+            throw new IllegalArgumentException(PREFIX + property + " must be positive and at most " + Money.ofCents(MAX_LIMIT_CENTS));
+        }
+        return value.getCents();
+    }
+}
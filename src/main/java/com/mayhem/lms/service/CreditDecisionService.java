@@ -0,0 +1,8 @@
+package com.mayhem.lms.service;
+
+import com.mayhem.lms.dto.CreateLoanDto;
+import com.mayhem.lms.dto.CreditDecisionDto;
+
+public interface CreditDecisionService {
+    CreditDecisionDto decide(CreateLoanDto newLoan);
+}
@@ -0,0 +1,76 @@
+package com.mayhem.lms.service;
+
+import com.mayhem.lms.constants.CreditOutcome;
+import com.mayhem.lms.dto.CreateLoanDto;
+import com.mayhem.lms.dto.CreditDecisionDto;
+import com.mayhem.lms.dto.UserExposureSummary;
+import com.mayhem.lms.model.LoanType;
+import com.mayhem.lms.model.UserExposure;
+import com.mayhem.lms.repository.LoanTypeRepository;
+import com.mayhem.lms.repository.UserExposureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Service
+public class CreditDecisionServiceImpl implements CreditDecisionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CreditDecisionServiceImpl.class);
+
+    private final UserExposureRepository userExposureRepository;
+    private final LoanTypeRepository loanTypeRepository;
+    private final Environment environment;
+    private final boolean enabled;
+    private volatile CreditDecisionPlan plan;
+
+    public CreditDecisionServiceImpl(UserExposureRepository userExposureRepository, LoanTypeRepository loanTypeRepository, Environment environment,
+                                     @Value("${lms.credit.enabled:false}") boolean enabled) {
+        this.userExposureRepository = userExposureRepository;
+        this.loanTypeRepository = loanTypeRepository;
+        this.environment = environment;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Run the credit rules for a new loan. Costs one primary key read of the user's exposure row,
+     * which stays locked until the caller's transaction has recorded the new loan
+     * @param newLoan
+     * @return
+     */
+    @Override
+    public CreditDecisionDto decide(CreateLoanDto newLoan) {
+        if (!enabled) {
+            return new CreditDecisionDto(CreditOutcome.REVIEW, 0, "Automatic decisions disabled");
+        }
+        UserExposureSummary exposure = userExposureRepository.findForUpdate(newLoan.getUserId())
+                .orElseGet(() -> new UserExposure(newLoan.getUserId()));
+        CreditDecisionDto decision = plan().evaluate(newLoan.getType(), newLoan.getAmount(), newLoan.getTerm(), exposure);
+        logger.info("Credit decision for userId {}: {} (score {}, {})", newLoan.getUserId(), decision.outcome(),
+                decision.riskScore(), decision.reason());
+        return decision;
+    }
+
+    /**
+     * The plan is compiled on first use, loan types are reference data that only change with a deployment
+     */
+    private CreditDecisionPlan plan() {
+        CreditDecisionPlan compiled = plan;
+        if (compiled == null) {
+            synchronized (this) {
+                compiled = plan;
+                if (compiled == null) {
+                    Map<Long, String> loanTypes = loanTypeRepository.findAll().stream()
+                            .collect(Collectors.toMap(LoanType::getId, LoanType::getType));
+                    compiled = CreditDecisionPlan.compile(loanTypes, environment);
+                    plan = compiled;
+                }
+            }
+        }
+        return compiled;
+    }
+}
@@ -0,0 +1,8 @@
+package com.mayhem.lms.service;
+
+import java.time.Instant;
+
+public interface LoanArchiveService {
+    int archiveRejectedLoans();
+    int archiveRejectedBefore(Instant cutoff);
+}
@@ -0,0 +1,98 @@
+package com.mayhem.lms.service;
+
+import com.mayhem.lms.repository.LoanArchiveRepository;
+import com.mayhem.lms.repository.LoanRepository;
+import com.mayhem.lms.repository.UserExposureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Moves loans that have been Rejected for lms.archive.rejected-after from the hot loan table to loan_archive,
+ * so the indexes behind the loan listings only cover loans that can still change. Each chunk locks its loans,
+ * copies them with one insert-select and deletes them, in one transaction. The exposure index keeps counting
+ * archived loans, they still belong to the user's history.
+ */
+@Service
+public class LoanArchiveServiceImpl implements LoanArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoanArchiveServiceImpl.class);
+
+    private final LoanRepository loanRepository;
+    private final LoanArchiveRepository loanArchiveRepository;
+    private final TransactionTemplate chunkTransaction;
+    private final boolean enabled;
+    private final Duration rejectedAfter;
+    private final int chunkSize;
+
+    public LoanArchiveServiceImpl(LoanRepository loanRepository, LoanArchiveRepository loanArchiveRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${lms.archive.enabled:true}") boolean enabled,
+                                  @Value("${lms.archive.rejected-after:90d}") Duration rejectedAfter,
+                                  @Value("${lms.archive.chunk-size:500}") int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("lms.archive.chunk-size must be positive");
+        }
+        this.loanRepository = loanRepository;
+        this.loanArchiveRepository = loanArchiveRepository;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.rejectedAfter = rejectedAfter;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Scheduled archival run
+     * @return number of archived loans
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${lms.archive.interval-ms:3600000}", initialDelayString = "${lms.archive.initial-delay-ms:60000}")
+    public int archiveRejectedLoans() {
+        if (!enabled) {
+            return 0;
+        }
+        return archiveRejectedBefore(Instant.now().minus(rejectedAfter));
+    }
+
+    /**
+     * Archive all loans rejected before the cutoff, chunk by chunk
+     * @param cutoff
+     * @return number of archived loans
+     */
+    @Override
+    public int archiveRejectedBefore(Instant cutoff) {
+        int archived = 0;
+        int chunk;
+        do {
+            chunk = chunkTransaction.execute(status -> archiveChunk(cutoff));
+            archived += chunk;
+        } while (chunk == chunkSize);
+        if (archived > 0) {
+            logger.info("Archived {} loans rejected before {}", archived, cutoff);
+        }
+        return archived;
+    }
+
+    private int archiveChunk(Instant cutoff) {
+        List<Long> ids = loanRepository.lockIdsInStatusSince(UserExposureRepository.REJECTED, cutoff, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int copied = loanArchiveRepository.copyFromLoans(ids, UserExposureRepository.REJECTED, Instant.now());
+        int deleted = loanRepository.deleteByIdsInStatus(ids, UserExposureRepository.REJECTED);
+        if (copied != deleted) {
+            // the rows are locked, so this means the lock did not hold, roll back rather than lose or duplicate loans
+            throw new IllegalStateException("Archived " + copied + " loans but deleted " + deleted);
+        }
+        return deleted;
+    }
+}
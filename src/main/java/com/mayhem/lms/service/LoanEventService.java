@@ -0,0 +1,15 @@
+package com.mayhem.lms.service;
+
+import com.mayhem.lms.constants.LoanEventKind;
+import com.mayhem.lms.dto.LoanAsOfDto;
+import com.mayhem.lms.model.Money;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+
+public interface LoanEventService {
+    void record(LoanEventKind kind, Long loanId, Long userId, Money amount, Integer term, Long typeId, Long statusId, Long actorId);
+    void erase(Collection<Long> loanIds);
+    Optional<LoanAsOfDto> getLoanAsOf(Long loanId, Instant at);
+}
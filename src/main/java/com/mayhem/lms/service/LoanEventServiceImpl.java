@@ -0,0 +1,164 @@
+package com.mayhem.lms.service;
+
+import com.mayhem.lms.constants.LoanEventKind;
+import com.mayhem.lms.dto.LoanAsOfDto;
+import com.mayhem.lms.model.LoanStatus;
+import com.mayhem.lms.model.LoanType;
+import com.mayhem.lms.model.Money;
+import com.mayhem.lms.repository.LoanStatusRepository;
+import com.mayhem.lms.repository.LoanTypeRepository;
+import com.mayhem.lms.util.LoanEventLog;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the history of every loan in the memory-mapped {@link LoanEventLog}, so point-in-time questions
+ * ("what did this loan look like on date X") are answered without touching the database.
+ * Events are appended after the surrounding transaction commits, rolled back changes never reach the log.
+ * Loans of purged users are erased: /as-of no longer finds them at any point in time.
+ */
+@Service
+public class LoanEventServiceImpl implements LoanEventService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoanEventServiceImpl.class);
+
+    private final LoanTypeRepository typeRepository;
+    private final LoanStatusRepository statusRepository;
+    private final LoanEventLog eventLog;
+    private volatile Map<Long, String> typeNames;
+    private volatile Map<Long, String> statusNames;
+
+    public LoanEventServiceImpl(LoanTypeRepository typeRepository, LoanStatusRepository statusRepository,
+                                @Value("${lms.event-log.enabled:true}") boolean enabled,
+                                @Value("${lms.event-log.dir:var/loan-events}") String directory,
+                                @Value("${lms.event-log.segment-records:1048576}") int segmentRecords,
+                                @Value("${lms.event-log.snapshot-every:16}") int snapshotEvery) {
+        this.typeRepository = typeRepository;
+        this.statusRepository = statusRepository;
+        this.eventLog = enabled ? new LoanEventLog(Path.of(directory), segmentRecords, snapshotEvery) : null;
+    }
+
+    /**
+     * Record a loan change with the loan's state after it
+     * @param kind
+     * @param loanId
+     * @param userId owner of the loan
+     * @param amount
+     * @param term
+     * @param typeId
+     * @param statusId
+     * @param actorId user making the change, null for automatic decisions
+     */
+    @Override
+    public void record(LoanEventKind kind, Long loanId, Long userId, Money amount, Integer term, Long typeId, Long statusId,
+                       Long actorId) {
+        if (eventLog == null) {
+            return;
+        }
+        appendAfterCommit(new LoanEventLog.Event(kind, loanId, userId, amount == null ? 0 : amount.getCents(),
+                term == null ? 0 : term, typeId == null ? 0 : typeId, statusId == null ? 0 : statusId, actorId == null ? 0 : actorId));
+    }
+
+    /**
+     * Erase the history of loans, e.g. of purged users. Each loan gets an ERASED tombstone and
+     * is not found at any point in time afterwards
+     * @param loanIds
+     */
+    @Override
+    public void erase(Collection<Long> loanIds) {
+        if (eventLog == null) {
+            return;
+        }
+        for (Long loanId : loanIds) {
+            appendAfterCommit(new LoanEventLog.Event(LoanEventKind.ERASED, loanId, 0, 0, 0, 0, 0, 0));
+        }
+    }
+
+    /**
+     * Replay a loan to a point in time
+     * @param loanId
+     * @param at
+     * @return the loan at that time, empty if it did not exist yet or was deleted
+     */
+    @Override
+    public Optional<LoanAsOfDto> getLoanAsOf(Long loanId, Instant at) {
+        if (eventLog == null) {
+            return Optional.empty();
+        }
+        return eventLog.stateAt(loanId, at).map(state -> new LoanAsOfDto(state.loanId(), state.userId(),
+                Money.ofCents(state.amountCents()), state.term(), typeNames().get(state.typeId()),
+                statusNames().get(state.statusId()), state.lastEvent().name(), state.changedAt(),
+                state.actorId() == 0 ? null : state.actorId()));
+    }
+
+    /**
+     * Write appended events to disk, they already survive a crash of the process without it
+     */
+    @Scheduled(fixedDelayString = "${lms.event-log.force-interval-ms:1000}")
+    public void force() {
+        if (eventLog != null) {
+            eventLog.force();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (eventLog != null) {
+            eventLog.close();
+        }
+    }
+
+    private void appendAfterCommit(LoanEventLog.Event event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                append(event);
+            }
+        });
+    }
+
+    private void append(LoanEventLog.Event event) {
+        try {
+            eventLog.append(event);
+        } catch (RuntimeException e) {
+            logger.error("Failed to append loan event {}", event, e);
+        }
+    }
+
+    /** Loan types and statuses are reference data that only change with a deployment */
+    private Map<Long, String> typeNames() {
+        Map<Long, String> names = typeNames;
+        if (names == null) {
+            names = typeRepository.findAll().stream().collect(Collectors.toMap(LoanType::getId, LoanType::getType));
+            typeNames = names;
+        }
+        return names;
+    }
+
+    private Map<Long, String> statusNames() {
+        Map<Long, String> names = statusNames;
+        if (names == null) {
+            names = statusRepository.findAll().stream().collect(Collectors.toMap(LoanStatus::getId, LoanStatus::getStatus));
+            statusNames = names;
+        }
+        return names;
+    }
+}
@@ -1,18 +1,29 @@
 package com.mayhem.lms.service;
 
 import com.mayhem.lms.dto.CreateLoanDto;
+import com.mayhem.lms.dto.GetAuditRecordDto;
 import com.mayhem.lms.dto.GetLoanDto;
 import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.dto.LoanAsOfDto;
+import com.mayhem.lms.dto.ResourceVersionDto;
 import com.mayhem.lms.model.Loan;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 public interface LoanService {
     List<GetLoanDto> getAllLoans();
     GetLoanDto getLoanById(Long id, GetUserDto userLogged);
+    GetLoanDto getLoanById(Long id, GetUserDto userLogged, boolean includeHistory);
+    GetLoanDto getLoanById(Long id, GetUserDto userLogged, ResourceVersionDto version);
+    ResourceVersionDto getLoanVersion(Long id);
     GetLoanDto updateLoan(Long id, Loan loan, GetUserDto userLogged);
     Loan createLoan(CreateLoanDto loan);
     List<GetLoanDto> getLoanByUserId(Long userId);
-    GetLoanDto approveOrRejectLoan(Long loanId, Long statusId);
+    List<GetLoanDto> getLoanByUserId(Long userId, boolean includeHistory);
+    GetLoanDto approveOrRejectLoan(Long loanId, Long statusId, GetUserDto userLogged);
     boolean deleteLoan(Long loanId, GetUserDto userLogged);
+    List<GetAuditRecordDto> getLoanHistory(Long loanId, int page, int size);
+    Optional<LoanAsOfDto> getLoanAsOf(Long loanId, Instant at);
 }
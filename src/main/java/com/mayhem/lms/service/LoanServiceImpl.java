@@ -1,20 +1,37 @@
 package com.mayhem.lms.service;
 
+import com.mayhem.lms.constants.AuditAction;
+import com.mayhem.lms.constants.AuditEntityType;
+import com.mayhem.lms.constants.CreditOutcome;
+import com.mayhem.lms.constants.LoanEventKind;
 import com.mayhem.lms.dto.CreateLoanDto;
+import com.mayhem.lms.dto.CreditDecisionDto;
+import com.mayhem.lms.dto.GetAuditRecordDto;
 import com.mayhem.lms.dto.GetLoanDto;
 import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.dto.LoanAsOfDto;
+import com.mayhem.lms.dto.LoanStateDto;
+import com.mayhem.lms.dto.ResourceVersionDto;
 import com.mayhem.lms.model.Loan;
 import com.mayhem.lms.model.LoanStatus;
 import com.mayhem.lms.model.LoanType;
 import com.mayhem.lms.model.User;
+import com.mayhem.lms.repository.LoanArchiveRepository;
 import com.mayhem.lms.repository.LoanRepository;
 import com.mayhem.lms.repository.LoanStatusRepository;
 import com.mayhem.lms.repository.LoanTypeRepository;
+import com.mayhem.lms.repository.UserExposureRepository;
 import com.mayhem.lms.repository.UserRepository;
+import com.mayhem.lms.util.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -29,57 +46,75 @@ public class LoanServiceImpl implements LoanService{
     private final LoanStatusRepository statusRepository;
     private final LoanTypeRepository typeRepository;
     private final UserRepository userRepository;
+    private final AuditService auditService;
+    private final CreditDecisionService creditDecisionService;
+    private final UserExposureRepository userExposureRepository;
+    private final LoanArchiveRepository loanArchiveRepository;
+    private final LoanEventService loanEventService;
+    private final SingleFlight<RequestCoalescer.Key, OwnedLoan> loanLookups;
+    private final TransactionTemplate readOnlyTransaction;
 
-    public LoanServiceImpl(LoanRepository loanRepository, LoanStatusRepository statusRepository, LoanTypeRepository typeRepository, UserRepository userRepository) {
+    public LoanServiceImpl(LoanRepository loanRepository, LoanStatusRepository statusRepository, LoanTypeRepository typeRepository, UserRepository userRepository, AuditService auditService, CreditDecisionService creditDecisionService, UserExposureRepository userExposureRepository,
+                           LoanArchiveRepository loanArchiveRepository, LoanEventService loanEventService, RequestCoalescer requestCoalescer,
+                           PlatformTransactionManager transactionManager) {
         this.loanRepository = loanRepository;
         this.statusRepository = statusRepository;
         this.typeRepository = typeRepository;
         this.userRepository = userRepository;
+        this.auditService = auditService;
+        this.creditDecisionService = creditDecisionService;
+        this.userExposureRepository = userExposureRepository;
+        this.loanArchiveRepository = loanArchiveRepository;
+        this.loanEventService = loanEventService;
+        this.loanLookups = requestCoalescer.group("loan");
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
-     * Update loan
+     * Update amount, term and type of a loan. Reads the loan as a projection, then writes with a conditional
+     * update on owner and version, so nothing of the entity graph is loaded
      * @param id
      * @param loanDetails
-     * @return
+     * @return updated loan, null if the loan belongs to someone else
+     * @throws java.util.NoSuchElementException if the loan does not exist
+     * @throws OptimisticLockingFailureException if the loan changed since it was read
      */
     @Override
+    @Transactional
     public GetLoanDto updateLoan(Long id, Loan loanDetails, GetUserDto session) {
-        Loan existingLoan = loanRepository.findById(id).orElse(null);
-        if (existingLoan.getUsers().getId() != session.getId()) {
-            logger.error("Unauthorized access attempt for userId: {} to update loan with id: {}", session.getId(), id);
+        LoanStateDto current = loanRepository.findStateById(id).orElseThrow();
+        if (!current.ownerId().equals(session.id())) {
+            logger.error("Unauthorized access attempt for userId: {} to update loan with id: {}", session.id(), id);
             return null;
         }
 
-        if (existingLoan != null) {
-            existingLoan.setAmount(loanDetails.getAmount());
-            existingLoan.setTerm(loanDetails.getTerm());
-
-            // Get loanType by id
-            LoanType loanType = typeRepository.findById(loanDetails.getLoanTypes().getId())
-                    .orElseThrow(() -> new RuntimeException("Loan type not found"));
-            existingLoan.setLoanTypes(loanType);
-
-            Loan updatedLoan = loanRepository.save(existingLoan);
-
-            return new GetLoanDto(
-                    updatedLoan.getId(),
-                    updatedLoan.getAmount(),
-                    updatedLoan.getTerm(),
-                    updatedLoan.getLoanTypes().getType(),
-                    updatedLoan.getLoanStatus().getStatus(),
-                    updatedLoan.getUsers().getFirstName() + " " + updatedLoan.getUsers().getLastName()
-            );
+        // Get loanType by id
+        LoanType loanType = typeRepository.findById(loanDetails.getLoanTypes().getId())
+                .orElseThrow(() -> new RuntimeException("Loan type not found"));
+        if (loanRepository.updateOwnedTerms(id, session.id(), current.version(), loanDetails.getAmount(), loanDetails.getTerm(),
+                loanType, Instant.now()) == 0) {
+            throw new OptimisticLockingFailureException("Loan " + id + " was changed concurrently");
         }
-        return null;
+        userExposureRepository.moveLoan(current.ownerId(), current.statusId(), current.amount(), current.term(),
+                current.statusId(), loanDetails.getAmount(), loanDetails.getTerm());
+
+        GetLoanDto after = new GetLoanDto(id, loanDetails.getAmount(), loanDetails.getTerm(), loanType.getType(),
+                current.status(), current.clientName());
+        auditService.record(AuditEntityType.LOAN, id, AuditAction.UPDATE, session.id(), current.toGetLoanDto(), after);
+        loanEventService.record(LoanEventKind.TERMS_CHANGED, id, current.ownerId(), loanDetails.getAmount(), loanDetails.getTerm(),
+                loanType.getId(), current.statusId(), session.id());
+        return after;
     }
 
     /**
-     * Create a new loan
+     * Create a new loan. The credit rules decide it right away when the outcome is clear,
+     * borderline applications stay Pending for a manager
      * @param newLoan
      * @return
      */
     @Override
+    @Transactional
     public Loan createLoan(CreateLoanDto newLoan) {
         Loan loan = new Loan();
         loan.setAmount(newLoan.getAmount());
@@ -88,10 +123,47 @@ public class LoanServiceImpl implements LoanService{
         loan.setUsers(user);
         LoanType type = typeRepository.findById(newLoan.getType()).orElseThrow(() -> new RuntimeException("Loan type not found"));
         loan.setLoanTypes(type);
-        LoanStatus status = statusRepository.findById(1L).orElseThrow(() -> new RuntimeException("Loan status not found"));
+        CreditDecisionDto decision = creditDecisionService.decide(newLoan);
+        LoanStatus status = statusRepository.findById(decision.outcome().getStatusId()).orElseThrow(() -> new RuntimeException("Loan status not found"));
         loan.setLoanStatus(status);
+        Loan createdLoan = loanRepository.save(loan);
+        userExposureRepository.moveLoan(user.getId(), null, null, null, status.getId(), createdLoan.getAmount(), createdLoan.getTerm());
         logger.info("Loan created successfully for userId: {}", user.getId());
-        return loanRepository.save(loan);
+        GetLoanDto created = toGetLoanDto(createdLoan);
+        if (decision.outcome() == CreditOutcome.REVIEW) {
+            auditService.record(AuditEntityType.LOAN, createdLoan.getId(), AuditAction.CREATE, user.getId(), null, created);
+            loanEventService.record(LoanEventKind.CREATED, createdLoan.getId(), user.getId(), createdLoan.getAmount(),
+                    createdLoan.getTerm(), type.getId(), status.getId(), user.getId());
+        } else {
+            // the application as submitted, then the automatic decision with no actor
+            GetLoanDto submitted = new GetLoanDto(created.id(), created.amount(), created.term(), created.type(), "Pending", created.clientName());
+            auditService.record(AuditEntityType.LOAN, createdLoan.getId(), AuditAction.CREATE, user.getId(), null, submitted);
+            auditService.record(AuditEntityType.LOAN, createdLoan.getId(),
+                    decision.outcome() == CreditOutcome.APPROVE ? AuditAction.APPROVE : AuditAction.REJECT, null, submitted, created);
+            loanEventService.record(LoanEventKind.CREATED, createdLoan.getId(), user.getId(), createdLoan.getAmount(),
+                    createdLoan.getTerm(), type.getId(), UserExposureRepository.PENDING, user.getId());
+            loanEventService.record(LoanEventKind.STATUS_CHANGED, createdLoan.getId(), user.getId(), createdLoan.getAmount(),
+                    createdLoan.getTerm(), type.getId(), status.getId(), null);
+        }
+        return createdLoan;
+    }
+
+    /**
+     * Get all loans by user id, with the archived ones after the live ones when history is asked for
+     * @param userId
+     * @param includeHistory
+     * @return
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<GetLoanDto> getLoanByUserId(Long userId, boolean includeHistory) {
+        List<GetLoanDto> loans = getLoanByUserId(userId);
+        if (!includeHistory) {
+            return loans;
+        }
+        List<GetLoanDto> withHistory = loans == null ? new ArrayList<>() : new ArrayList<>(loans);
+        loanArchiveRepository.findStatesByUserId(userId).forEach(archived -> withHistory.add(archived.toGetLoanDto()));
+        return withHistory;
     }
 
     /**
@@ -100,6 +172,7 @@ public class LoanServiceImpl implements LoanService{
      * @return
      */
     @Override
+    @Transactional(readOnly = true)
     public List<GetLoanDto> getLoanByUserId(Long userId) {
         Optional<List<Loan>> loans = loanRepository.findByUsersId(userId);
         if (loans.isPresent()) {
@@ -116,31 +189,37 @@ public class LoanServiceImpl implements LoanService{
     }
 
     /**
-     * Approve or reject loan
+     * Approve or reject a loan with a conditional status update on the version that was read
      * @param loanId
      * @param statusId
-     * @return
+     * @param userLogged manager deciding the loan
+     * @return updated loan, null if the loan does not exist
+     * @throws OptimisticLockingFailureException if the loan changed since it was read
      */
     @Override
-    public GetLoanDto approveOrRejectLoan(Long loanId, Long statusId) {
-        Optional<Loan> existingLoan = loanRepository.findById(loanId);
-        if (existingLoan.isPresent()) {
-            //Retrieve the loan status using the status id passed in the URL
-            LoanStatus status = statusRepository.findById(statusId).orElseThrow(() -> new RuntimeException("Loan status not found"));
-            existingLoan.get().setLoanStatus(status);
-            Loan updatedLoan = loanRepository.save(existingLoan.get());
-            logger.info("Loan status updated for loanId {} with statusId: {}", loanId, statusId);
-            return new GetLoanDto(
-                    updatedLoan.getId(),
-                    updatedLoan.getAmount(),
-                    updatedLoan.getTerm(),
-                    updatedLoan.getLoanTypes().getType(),
-                    updatedLoan.getLoanStatus().getStatus(),
-                    updatedLoan.getUsers().getFirstName() + " " + updatedLoan.getUsers().getLastName()
-            );
+    @Transactional
+    public GetLoanDto approveOrRejectLoan(Long loanId, Long statusId, GetUserDto userLogged) {
+        LoanStateDto current = loanRepository.findStateById(loanId).orElse(null);
+        if (current == null) {
+            logger.info("No loan found with loanId {}", loanId);
+            return null;
         }
-        logger.info("No loan found with loanId {}", loanId);
-        return null;
+        //Retrieve the loan status using the status id passed in the URL
+        LoanStatus status = statusRepository.findById(statusId).orElseThrow(() -> new RuntimeException("Loan status not found"));
+        if (loanRepository.updateStatus(loanId, current.version(), status, Instant.now()) == 0) {
+            throw new OptimisticLockingFailureException("Loan " + loanId + " was changed concurrently");
+        }
+        userExposureRepository.moveLoan(current.ownerId(), current.statusId(), current.amount(), current.term(),
+                status.getId(), current.amount(), current.term());
+        logger.info("Loan status updated for loanId {} with statusId: {}", loanId, statusId);
+        GetLoanDto after = new GetLoanDto(loanId, current.amount(), current.term(), current.type(), status.getStatus(),
+                current.clientName());
+        AuditAction action = "Approved".equals(status.getStatus()) ? AuditAction.APPROVE
+                : "Rejected".equals(status.getStatus()) ? AuditAction.REJECT : AuditAction.UPDATE;
+        auditService.record(AuditEntityType.LOAN, loanId, action, userLogged.id(), current.toGetLoanDto(), after);
+        loanEventService.record(LoanEventKind.STATUS_CHANGED, loanId, current.ownerId(), current.amount(), current.term(),
+                current.typeId(), status.getId(), userLogged.id());
+        return after;
     }
 
 
@@ -149,6 +228,7 @@ public class LoanServiceImpl implements LoanService{
      * @return
      */
     @Override
+    @Transactional(readOnly = true)
     public List<GetLoanDto> getAllLoans() {
         List<Loan> loans = loanRepository.findAll();
         List<GetLoanDto> loanDto = new ArrayList<>();
@@ -170,13 +250,63 @@ public class LoanServiceImpl implements LoanService{
     }
 
     /**
-     * Get loan by id
+     * Get loan by id. Concurrent lookups of the same loan share one read-only transaction,
+     * access is still checked for every caller
      * @param id
      * @param userLogged
      * @return
      */
     @Override
     public GetLoanDto getLoanById(Long id, GetUserDto userLogged){
+        return getLoanById(RequestCoalescer.Key.of(id), id, userLogged);
+    }
+
+    /**
+     * Get loan by id for a response cached under the given version. Only lookups expecting the same version
+     * share a read, so a body read before an update is never handed to a caller that already saw the update
+     * @param id
+     * @param userLogged
+     * @param version version the response will be cached under
+     * @return
+     */
+    @Override
+    public GetLoanDto getLoanById(Long id, GetUserDto userLogged, ResourceVersionDto version) {
+        return getLoanById(RequestCoalescer.Key.of(id, version.toEtag("loan", id)), id, userLogged);
+    }
+
+    private GetLoanDto getLoanById(RequestCoalescer.Key key, Long id, GetUserDto userLogged) {
+        OwnedLoan foundedLoan = loanLookups.execute(key, () -> readOnlyTransaction.execute(status -> loadLoan(id)));
+
+        if(foundedLoan == null)
+            return null;
+
+        //Checks if the user logged is the same user stored in the loan or if it is a Manager
+        if((userLogged.id().equals(foundedLoan.ownerId())) || (userLogged.role().equals("Manager"))){
+            return foundedLoan.loan();
+        }
+        else return null;
+    }
+
+    /**
+     * Get loan by id, falling back to the archive for loans that were archived when history is asked for
+     * @param id
+     * @param userLogged
+     * @param includeHistory
+     * @return
+     */
+    @Override
+    public GetLoanDto getLoanById(Long id, GetUserDto userLogged, boolean includeHistory) {
+        GetLoanDto loan = getLoanById(id, userLogged);
+        if (loan != null || !includeHistory) {
+            return loan;
+        }
+        return loanArchiveRepository.findStateById(id)
+                .filter(archived -> userLogged.id().equals(archived.ownerId()) || "Manager".equals(userLogged.role()))
+                .map(LoanStateDto::toGetLoanDto)
+                .orElse(null);
+    }
+
+    private OwnedLoan loadLoan(Long id) {
         Loan foundedLoan = loanRepository.findById(id).orElse(null);
 
         if(foundedLoan == null)
@@ -184,48 +314,91 @@ public class LoanServiceImpl implements LoanService{
 
         Long userIDByLoan = foundedLoan.getUsers().getId();
         User usersLoan = userRepository.findById(userIDByLoan).orElse(null);
-
-        String userRole = usersLoan.getAccount().getRole().getRoleName();
         String usersName = usersLoan.getFirstName() + " " + usersLoan.getLastName();
 
-        //Checks if the user logged is the same user stored in the loan or if it is a Manager
-        if((userLogged.getId().equals(userIDByLoan)) || (userLogged.getRole().equals("Manager"))){
-            return new GetLoanDto(foundedLoan.getId(),
-                    foundedLoan.getAmount(),
-                    foundedLoan.getTerm(),
-                    foundedLoan.getLoanTypes().getType(),
-                    foundedLoan.getLoanStatus().getStatus(),
-                    usersName);
-        }
-        else return null;
+        return new OwnedLoan(new GetLoanDto(foundedLoan.getId(),
+                foundedLoan.getAmount(),
+                foundedLoan.getTerm(),
+                foundedLoan.getLoanTypes().getType(),
+                foundedLoan.getLoanStatus().getStatus(),
+                usersName), userIDByLoan);
     }
 
     /**
-     * Delete loan
+     * Get the version of a loan and of its owner without loading the entity graph
+     * @param id
+     * @return version or null if the loan does not exist
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersionDto getLoanVersion(Long id) {
+        return loanRepository.findVersionById(id).orElse(null);
+    }
+
+    /**
+     * Delete a loan of the logged user unless it is approved. The checks run on a projection and are
+     * repeated by the conditional delete, which also refuses if the loan changed in between
      * @param loanId
      * @param userLogged
-     * @return
+     * @return whether the loan was deleted
      */
     @Override
+    @Transactional
     public boolean deleteLoan(Long loanId, GetUserDto userLogged){
-        Loan loanToDelete = loanRepository.findById(loanId).orElse(null);
+        LoanStateDto loanToDelete = loanRepository.findStateById(loanId).orElse(null);
         if (loanToDelete == null) {
             logger.error("Loan with id {} not found", loanId);
             return false;
         }
-
-        Long ownerId = loanToDelete.getUsers().getId();
-
-        if (loanToDelete.getLoanStatus().getStatus().equals("Approved")) {
+        if (loanToDelete.statusId() == UserExposureRepository.APPROVED || !userLogged.id().equals(loanToDelete.ownerId())
+                || loanRepository.deleteOwnedUnlessApproved(loanId, userLogged.id(), loanToDelete.version(), UserExposureRepository.APPROVED) == 0) {
             logger.error("Loan with id {} cannot be deleted because it is already approved or access denied", loanId);
             return false;
         }
+        userExposureRepository.moveLoan(loanToDelete.ownerId(), loanToDelete.statusId(), loanToDelete.amount(), loanToDelete.term(),
+                null, null, null);
+        logger.info("Loan with id {} deleted successfully", loanId);
+        auditService.record(AuditEntityType.LOAN, loanId, AuditAction.DELETE, userLogged.id(), loanToDelete.toGetLoanDto(), null);
+        loanEventService.record(LoanEventKind.DELETED, loanId, loanToDelete.ownerId(), loanToDelete.amount(), loanToDelete.term(),
+                loanToDelete.typeId(), loanToDelete.statusId(), userLogged.id());
+        return true;
+    }
 
-        if(userLogged.getId().equals(ownerId)){
-            logger.info("Loan with id {} deleted successfully", loanId);
-            loanRepository.delete(loanToDelete);
-            return true;
-        }
-        return false;
+    /**
+     * Get the audit history of a loan, newest first
+     * @param loanId
+     * @param page
+     * @param size
+     * @return
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<GetAuditRecordDto> getLoanHistory(Long loanId, int page, int size) {
+        return auditService.getLoanHistory(loanId, page, size);
+    }
+
+    /**
+     * Get a loan as it was at a point in time
+     * @param loanId
+     * @param at
+     * @return the loan at that time, empty if it did not exist yet or was deleted
+     */
+    @Override
+    public Optional<LoanAsOfDto> getLoanAsOf(Long loanId, Instant at) {
+        return loanEventService.getLoanAsOf(loanId, at);
+    }
+
+    private record OwnedLoan(GetLoanDto loan, Long ownerId) {
+    }
+
+    private GetLoanDto toGetLoanDto(Loan loan) {
+        return new GetLoanDto(
+                loan.getId(),
+                loan.getAmount(),
+                loan.getTerm(),
+                loan.getLoanTypes().getType(),
+                loan.getLoanStatus().getStatus(),
+                loan.getUsers().getFirstName() + " " + loan.getUsers().getLastName()
+        );
     }
 }
\ No newline at end of file
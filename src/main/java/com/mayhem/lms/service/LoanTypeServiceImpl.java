@@ -4,6 +4,7 @@ import com.mayhem.lms.dto.GetLoanTypesDto;
 import com.mayhem.lms.model.LoanType;
 import com.mayhem.lms.repository.LoanTypesRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -22,6 +23,7 @@ public class LoanTypeServiceImpl implements LoanTypeService{
      * @return List of GetLoanTypesDto
      */
     @Override
+    @Transactional(readOnly = true)
     public List<GetLoanTypesDto> getAllLoanTypes() {
         List<LoanType> types = loanTypesRepository.findAll();
         List<GetLoanTypesDto> typesDto = new ArrayList<>();
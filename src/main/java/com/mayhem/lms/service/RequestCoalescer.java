@@ -0,0 +1,62 @@
+package com.mayhem.lms.service;
+
+import com.mayhem.lms.config.ReplicaRoutingContext;
+import com.mayhem.lms.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out named {@link SingleFlight} groups for hot reads and publishes their metrics:
+ * lms.coalescing.calls{name, outcome=executed|shared} and lms.coalescing.in-flight{name}.
+ * The coalescing ratio of a group is shared / (executed + shared).
+ */
+@Component
+public class RequestCoalescer {
+
+    private final MeterRegistry meterRegistry;
+
+    public RequestCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Create a single-flight group with metrics tagged with its name, once per lookup at construction time
+     * @param name lookup name, e.g. "user"
+     * @return new group
+     */
+    public <V> SingleFlight<Key, V> group(String name) {
+        SingleFlight<Key, V> group = new SingleFlight<>();
+        FunctionCounter.builder("lms.coalescing.calls", group, SingleFlight::executedCount)
+                .description("Lookups that ran against the database")
+                .tags("name", name, "outcome", "executed")
+                .register(meterRegistry);
+        FunctionCounter.builder("lms.coalescing.calls", group, SingleFlight::sharedCount)
+                .description("Lookups answered by a concurrent identical lookup")
+                .tags("name", name, "outcome", "shared")
+                .register(meterRegistry);
+        Gauge.builder("lms.coalescing.in-flight", group, SingleFlight::inFlightCount)
+                .tag("name", name)
+                .register(meterRegistry);
+        return group;
+    }
+
+    /**
+     * Lookup key including the database route of the calling thread, so a request pinned to the primary
+     * after its own write never receives a result read from the replica.
+     * A version, when given, keeps a caller that saw a newer version from joining a lookup started before it
+     * @param id
+     * @param version version the caller expects, null when it has none
+     * @param primary
+     */
+    public record Key(Object id, Object version, boolean primary) {
+        public static Key of(Object id) {
+            return of(id, null);
+        }
+
+        public static Key of(Object id, Object version) {
+            return new Key(id, version, ReplicaRoutingContext.isPrimaryForced());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.mayhem.lms.service;
+
+import com.mayhem.lms.dto.PurgeResultDto;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface UserPurgeService {
+    PurgeResultDto purgeUsers(Collection<Long> userIds, Long actorId);
+    PurgeResultDto deleteUsers(List<Long> userIds, Long actorId);
+}
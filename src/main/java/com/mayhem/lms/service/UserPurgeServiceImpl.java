@@ -0,0 +1,177 @@
+package com.mayhem.lms.service;
+
+import com.mayhem.lms.constants.AuditAction;
+import com.mayhem.lms.constants.AuditEntityType;
+import com.mayhem.lms.constants.LoanEventKind;
+import com.mayhem.lms.dto.LoanStateDto;
+import com.mayhem.lms.dto.PurgeResultDto;
+import com.mayhem.lms.repository.AccountRepository;
+import com.mayhem.lms.repository.LoanArchiveRepository;
+import com.mayhem.lms.repository.LoanRepository;
+import com.mayhem.lms.repository.UserExposureRepository;
+import com.mayhem.lms.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Deletes users with set-based statements in dependency order: loans, exposure rows, user profiles, accounts.
+ * Nothing is loaded into the persistence context, only a projection of the deleted loans, which get a DELETE
+ * audit record and a DELETED loan event like any other deleted loan. Batches are split into chunks of
+ * lms.purge.chunk-size users, each committed in its own transaction, so a large purge holds locks briefly and
+ * a failure only rolls back one chunk. Approved loans are never deleted: a user whose loan is approved between
+ * the check and the delete rolls back their chunk, which is then retried once.
+ * <p>
+ * A purge is an erasure: once a chunk has committed, the before and after states of all audit records of its
+ * users and of their live and archived loans are dropped, since they hold names, emails and phone numbers.
+ * The records themselves stay, so the history of who changed what and when survives. The same loans are erased
+ * from the loan event log, so their past states are no longer served as of any point in time.
+ */
+@Service
+public class UserPurgeServiceImpl implements UserPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPurgeServiceImpl.class);
+
+    private final LoanRepository loanRepository;
+    private final LoanArchiveRepository loanArchiveRepository;
+    private final UserExposureRepository userExposureRepository;
+    private final UserRepository userRepository;
+    private final AccountRepository accountRepository;
+    private final AuditService auditService;
+    private final LoanEventService loanEventService;
+    private final TransactionTemplate chunkTransaction;
+    private final int chunkSize;
+
+    public UserPurgeServiceImpl(LoanRepository loanRepository, LoanArchiveRepository loanArchiveRepository,
+                                UserExposureRepository userExposureRepository, UserRepository userRepository,
+                                AccountRepository accountRepository, AuditService auditService, LoanEventService loanEventService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${lms.purge.chunk-size:500}") int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("lms.purge.chunk-size must be positive");
+        }
+        this.loanRepository = loanRepository;
+        this.loanArchiveRepository = loanArchiveRepository;
+        this.userExposureRepository = userExposureRepository;
+        this.userRepository = userRepository;
+        this.accountRepository = accountRepository;
+        this.auditService = auditService;
+        this.loanEventService = loanEventService;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Purge users with their loans and accounts, chunk by chunk. Users with an approved loan are kept
+     * and reported, the same rule as a user deleting their own profile. The audit states of purged users and
+     * their loans are redacted and the loans erased from the event log after each chunk commits
+     * @param userIds
+     * @param actorId manager running the purge, recorded in the audit log
+     * @return totals over all chunks
+     */
+    @Override
+    public PurgeResultDto purgeUsers(Collection<Long> userIds, Long actorId) {
+        List<Long> ids = new ArrayList<>(new TreeSet<>(userIds));
+        int usersPurged = 0;
+        long loansDeleted = 0;
+        List<Long> refused = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + chunkSize));
+            Purged result;
+            try {
+                result = chunkTransaction.execute(status -> purgeChunk(chunk, actorId));
+            } catch (OptimisticLockingFailureException e) {
+                logger.info("Retrying purge chunk: {}", e.getMessage());
+                result = chunkTransaction.execute(status -> purgeChunk(chunk, actorId));
+            }
+            auditService.redact(AuditEntityType.USER, result.userIds());
+            auditService.redact(AuditEntityType.LOAN, result.loanIds());
+            loanEventService.erase(result.loanIds());
+            usersPurged += result.userIds().size();
+            loansDeleted += result.loansDeleted();
+            refused.addAll(result.refusedUserIds());
+        }
+        logger.info("Purged {} users and {} loans, {} users kept for approved loans", usersPurged, loansDeleted, refused.size());
+        return new PurgeResultDto(usersPurged, loansDeleted, refused);
+    }
+
+    /**
+     * Delete users, their loans, exposure rows and accounts in the caller's transaction. The caller checks for
+     * approved loans first, the delete only guards against one being approved concurrently
+     * @param userIds
+     * @param actorId user running the deletion, recorded in the audit log and the loan events
+     * @return rows deleted
+     * @throws OptimisticLockingFailureException if one of the users has an approved loan, roll back
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public PurgeResultDto deleteUsers(List<Long> userIds, Long actorId) {
+        Purged deleted = delete(userIds.isEmpty() ? List.of() : userRepository.findAccountIds(userIds), actorId);
+        return new PurgeResultDto(deleted.userIds().size(), deleted.loansDeleted(), List.of());
+    }
+
+    private Purged purgeChunk(List<Long> chunk, Long actorId) {
+        List<Long> refused = loanRepository.findUserIdsWithLoanStatus(chunk, UserExposureRepository.APPROVED);
+        List<Long> eligible = chunk;
+        if (!refused.isEmpty()) {
+            HashSet<Long> kept = new HashSet<>(refused);
+            eligible = chunk.stream().filter(id -> !kept.contains(id)).toList();
+        }
+        List<UserRepository.UserAccountIds> users = eligible.isEmpty() ? List.of() : userRepository.findAccountIds(eligible);
+        Purged deleted = delete(users, actorId);
+        for (Long userId : deleted.userIds()) {
+            auditService.record(AuditEntityType.USER, userId, AuditAction.DELETE, actorId, null, null);
+        }
+        return new Purged(deleted.userIds(), deleted.loanIds(), deleted.loansDeleted(), refused);
+    }
+
+    private Purged delete(List<UserRepository.UserAccountIds> users, Long actorId) {
+        if (users.isEmpty()) {
+            return new Purged(List.of(), List.of(), 0, List.of());
+        }
+        List<Long> userIds = users.stream().map(UserRepository.UserAccountIds::getUserId).toList();
+        List<LoanStateDto> loans = loanRepository.findStatesByUserIdsUnlessApproved(userIds, UserExposureRepository.APPROVED);
+        List<Long> archivedLoanIds = loanArchiveRepository.findIdsByUserIds(userIds);
+        int deletedLoans = loanRepository.deleteByUserIdsUnlessApproved(userIds, UserExposureRepository.APPROVED);
+        List<Long> approved = loanRepository.findUserIdsWithLoanStatus(userIds, UserExposureRepository.APPROVED);
+        if (deletedLoans != loans.size() || !approved.isEmpty()) {
+            // a loan was approved or added after it was read, it must be neither deleted nor deleted unrecorded
+            throw new OptimisticLockingFailureException("Read " + loans.size() + " loans but deleted " + deletedLoans
+                    + ", users with approved loans: " + approved);
+        }
+        userExposureRepository.deleteByUserIds(userIds);
+        userRepository.deleteByIds(userIds);
+        accountRepository.deleteByIds(users.stream().map(UserRepository.UserAccountIds::getAccountId).toList());
+        List<Long> loanIds = new ArrayList<>(loans.size() + archivedLoanIds.size());
+        for (LoanStateDto loan : loans) {
+            auditService.record(AuditEntityType.LOAN, loan.id(), AuditAction.DELETE, actorId, null, null);
+            loanEventService.record(LoanEventKind.DELETED, loan.id(), loan.ownerId(), loan.amount(), loan.term(),
+                    loan.typeId(), loan.statusId(), actorId);
+            loanIds.add(loan.id());
+        }
+        loanIds.addAll(archivedLoanIds);
+        return new Purged(userIds, loanIds, deletedLoans, List.of());
+    }
+
+    /**
+     * What a chunk deleted
+     * @param userIds deleted users
+     * @param loanIds deleted live loans and the archived loans removed with their users
+     * @param loansDeleted deleted live loans
+     * @param refusedUserIds users kept for an approved loan
+     */
+    private record Purged(List<Long> userIds, List<Long> loanIds, int loansDeleted, List<Long> refusedUserIds) {
+    }
+}
@@ -2,16 +2,20 @@ package com.mayhem.lms.service;
 
 import com.mayhem.lms.dto.GetUserDto;
 import com.mayhem.lms.dto.RegisterDto;
+import com.mayhem.lms.dto.ResourceVersionDto;
 import com.mayhem.lms.model.Account;
 import com.mayhem.lms.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
-import java.util.List;
 import java.util.Optional;
 
 public interface UserService {
     GetUserDto createUser(RegisterDto newUser, Account account);
-    List<GetUserDto> findAllUsers();
+    Slice<GetUserDto> findUsers(String role, String namePrefix, Long afterId, Pageable pageable);
     boolean deleteUser(Long id);
     GetUserDto getUserById(Long id);
+    GetUserDto getUserById(Long id, ResourceVersionDto version);
+    ResourceVersionDto getUserVersion(Long id);
     GetUserDto updateUser(Long id, User user);
 }
\ No newline at end of file
@@ -1,43 +1,86 @@
 package com.mayhem.lms.service;
 
+import com.mayhem.lms.constants.AuditAction;
+import com.mayhem.lms.constants.AuditEntityType;
 import com.mayhem.lms.dto.GetUserDto;
 import com.mayhem.lms.dto.RegisterDto;
+import com.mayhem.lms.dto.ResourceVersionDto;
+import com.mayhem.lms.dto.UserExposureDto;
 import com.mayhem.lms.model.Account;
-import com.mayhem.lms.model.Loan;
+import com.mayhem.lms.model.Money;
 import com.mayhem.lms.model.User;
+import com.mayhem.lms.model.UserExposure;
+import com.mayhem.lms.repository.AccountRepository;
+import com.mayhem.lms.repository.LoanRepository;
+import com.mayhem.lms.repository.UserExposureRepository;
 import com.mayhem.lms.repository.UserRepository;
+import com.mayhem.lms.util.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 @Service
 public class UserServiceImpl implements UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
+    /** API sort names to query paths, account columns go through the alias of the join */
+    private static final Map<String, String> SORTABLE = Map.of(
+            "id", "id", "firstName", "firstName", "lastName", "lastName", "email", "a.email");
+    private static final Pattern LIKE_SPECIAL = Pattern.compile("[\\\\%_]");
 
     private final UserRepository userRepository;
+    private final AccountRepository accountRepository;
+    private final LoanRepository loanRepository;
+    private final AuditService auditService;
+    private final UserPurgeService userPurgeService;
+    private final UserExposureRepository userExposureRepository;
+    private final SingleFlight<RequestCoalescer.Key, GetUserDto> userLookups;
+    private final TransactionTemplate readOnlyTransaction;
 
-    public UserServiceImpl(UserRepository userRepository) {
+    public UserServiceImpl(UserRepository userRepository, AccountRepository accountRepository, LoanRepository loanRepository, AuditService auditService,
+                           UserPurgeService userPurgeService, UserExposureRepository userExposureRepository,
+                           RequestCoalescer requestCoalescer, PlatformTransactionManager transactionManager) {
         this.userRepository = userRepository;
+        this.accountRepository = accountRepository;
+        this.loanRepository = loanRepository;
+        this.auditService = auditService;
+        this.userPurgeService = userPurgeService;
+        this.userExposureRepository = userExposureRepository;
+        this.userLookups = requestCoalescer.group("user");
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
-     * Create a new user
+     * Create a new user. The account was saved in its own transaction, it is attached by reference so the
+     * cascade from User does not see a detached entity when no persistence context spans the request
      * @param newUser
      * @param account
      * @return
      */
     @Override
+    @Transactional
     public GetUserDto createUser(RegisterDto newUser, Account account) {
         User user = new User();
         user.setFirstName(newUser.getFirstName());
         user.setLastName(newUser.getLastName());
         user.setPhoneNumber(newUser.getPhoneNumber());
-        user.setAccount(account);
+        user.setAccount(accountRepository.getReferenceById(account.getId()));
         User createdUser = userRepository.save(user);
+        userExposureRepository.save(new UserExposure(createdUser.getId()));
         logger.info("User created successfully with id: {}", user.getId());
         return new GetUserDto(
                 createdUser.getId(),
@@ -50,33 +93,67 @@ public class UserServiceImpl implements UserService {
     }
 
     /**
-     * Find all users
+     * Find one page of users, optionally filtered by role and first or last name prefix (case-insensitive).
+     * With afterId set the page is the keyset continuation in id order and the page number is ignored.
+     * Sortable by id, firstName, lastName and email, ties are broken by id so pages never overlap
+     * @param role
+     * @param namePrefix
+     * @param afterId
+     * @param pageable
      * @return
      */
     @Override
-    public List<GetUserDto> findAllUsers() {
-        List<User> users = userRepository.findAll();
-        List<GetUserDto> usersDto = new ArrayList<>();
-        for (User user : users) {
-            usersDto.add(new GetUserDto(
-                    user.getId(),
-                    user.getAccount().getEmail(),
-                    user.getFirstName(),
-                    user.getLastName(),
-                    user.getPhoneNumber(),
-                    user.getAccount().getRole().getRoleName()
-            ));
+    @Transactional(readOnly = true)
+    public Slice<GetUserDto> findUsers(String role, String namePrefix, Long afterId, Pageable pageable) {
+        Sort sort = afterId != null ? Sort.by("id") : toQuerySort(pageable.getSort());
+        Pageable query = PageRequest.of(afterId != null ? 0 : pageable.getPageNumber(), pageable.getPageSize(), sort);
+        String pattern = namePrefix == null || namePrefix.isBlank() ? null
+                : LIKE_SPECIAL.matcher(namePrefix.trim().toLowerCase(Locale.ROOT)).replaceAll("\\\\$0") + "%";
+        return userRepository.findUserViews(role, pattern, afterId, query);
+    }
+
+    private static Sort toQuerySort(Sort sort) {
+        List<Sort.Order> orders = new ArrayList<>();
+        boolean byId = false;
+        for (Sort.Order order : sort) {
+            String property = SORTABLE.get(order.getProperty());
+            if (property == null) {
+                throw new IllegalArgumentException("Cannot sort users by " + order.getProperty());
+            }
+            byId |= property.equals("id");
+            orders.add(new Sort.Order(order.getDirection(), property));
         }
-        return usersDto;
+        if (!byId) {
+            orders.add(Sort.Order.asc("id"));
+        }
+        return Sort.by(orders);
     }
 
     /**
-     * Find a user by id
+     * Find a user by id, with the loan totals from the exposure index.
+     * Concurrent lookups of the same user share one read-only transaction and its result
      * @param id
      * @return
      */
     @Override
     public GetUserDto getUserById(Long id){
+        return userLookups.execute(RequestCoalescer.Key.of(id), () -> readOnlyTransaction.execute(status -> loadUser(id)));
+    }
+
+    /**
+     * Find a user by id for a response cached under the given version. Only lookups expecting the same version
+     * share a read, so a body read before an update is never handed to a caller that already saw the update
+     * @param id
+     * @param version version the response will be cached under
+     * @return
+     */
+    @Override
+    public GetUserDto getUserById(Long id, ResourceVersionDto version) {
+        return userLookups.execute(RequestCoalescer.Key.of(id, version.toEtag("user", id)),
+                () -> readOnlyTransaction.execute(status -> loadUser(id)));
+    }
+
+    private GetUserDto loadUser(Long id) {
         User foundUser = userRepository.findById(id).orElse(null);
         if (foundUser!=null){
             return new GetUserDto(
@@ -85,11 +162,24 @@ public class UserServiceImpl implements UserService {
                     foundUser.getFirstName(),
                     foundUser.getLastName(),
                     foundUser.getPhoneNumber(),
-                    foundUser.getAccount().getRole().getRoleName()
+                    foundUser.getAccount().getRole().getRoleName(),
+                    userExposureRepository.findById(id).map(UserServiceImpl::toUserExposureDto)
+                            .orElseGet(() -> toUserExposureDto(new UserExposure(id)))
             );
         } else return null;
     }
 
+    /**
+     * Get the version of a user without loading the entity graph
+     * @param id
+     * @return version or null if the user does not exist
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersionDto getUserVersion(Long id) {
+        return userRepository.findVersionById(id).orElse(null);
+    }
+
     /**
      * Update a user, only first name, last name and phone number can be updated
      * @param id
@@ -100,20 +190,16 @@ public class UserServiceImpl implements UserService {
     public GetUserDto updateUser(Long id, User userDetails) {
         User existingUser = userRepository.findById(id).orElse(null);
         if (existingUser != null){
+            GetUserDto before = toGetUserDto(existingUser);
             existingUser.setFirstName(userDetails.getFirstName());
             existingUser.setLastName(userDetails.getLastName());
             existingUser.setPhoneNumber(userDetails.getPhoneNumber());
             userRepository.save(existingUser);
             User updatedUser = userRepository.findById(id).orElse(null);
             if (updatedUser != null){
-                return new GetUserDto(
-                        updatedUser.getId(),
-                        updatedUser.getAccount().getEmail(),
-                        updatedUser.getFirstName(),
-                        updatedUser.getLastName(),
-                        updatedUser.getPhoneNumber(),
-                        updatedUser.getAccount().getRole().getRoleName()
-                );
+                GetUserDto after = toGetUserDto(updatedUser);
+                auditService.record(AuditEntityType.USER, id, AuditAction.UPDATE, id, before, after);
+                return after;
             } else return null;
         } else {
             logger.info("No user found");
@@ -122,23 +208,50 @@ public class UserServiceImpl implements UserService {
     }
 
     /**
-     * Delete a user
+     * Delete a user unless they have an approved loan. The refusal costs a single index lookup,
+     * the deletion runs as set-based statements and never loads the user's loans
      * @param id
      * @return
+     * @throws org.springframework.dao.OptimisticLockingFailureException if a loan of the user was approved meanwhile
      */
     @Override
+    @Transactional
     public boolean deleteUser(Long id){
-        User userToDelete = userRepository.findById(id).orElse(null);
         logger.info("Deleting user with id: {}", id);
-        List<?> userLoans = userToDelete.getLoans();
-        boolean hasApprovedLoans = userLoans.stream()
-                .anyMatch(loan -> ((Loan) loan).getLoanStatus().getStatus().equals("Approved"));
-        if (hasApprovedLoans) {
+        if (loanRepository.existsByUsersIdAndLoanStatusId(id, UserExposureRepository.APPROVED)) {
             logger.info("User has active loans, cannot delete");
             return false;
         }
-        userRepository.delete(userToDelete);
+        User userToDelete = userRepository.findById(id).orElse(null);
+        if (userToDelete == null) {
+            return false;
+        }
+        GetUserDto before = toGetUserDto(userToDelete);
+        userPurgeService.deleteUsers(List.of(id), id);
         logger.info("User with id {} deleted", id);
+        auditService.record(AuditEntityType.USER, id, AuditAction.DELETE, id, before, null);
         return true;
     }
+
+    private static UserExposureDto toUserExposureDto(UserExposure exposure) {
+        return new UserExposureDto(
+                exposure.getPendingLoans(),
+                Money.ofCents(exposure.getPendingCents()),
+                exposure.getApprovedLoans(),
+                Money.ofCents(exposure.getApprovedCents()),
+                exposure.getRejectedLoans(),
+                Money.ofCents(exposure.getMonthlyInstallmentCents())
+        );
+    }
+
+    private GetUserDto toGetUserDto(User user) {
+        return new GetUserDto(
+                user.getId(),
+                user.getAccount().getEmail(),
+                user.getFirstName(),
+                user.getLastName(),
+                user.getPhoneNumber(),
+                user.getAccount().getRole().getRoleName()
+        );
+    }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.mayhem.lms.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that adapts to observed latency, AIMD style. The no-load latency is the fastest
+ * successful call of the previous window of samples. While calls finish within tolerance times that
+ * (and above a fixed floor, so jitter on sub-millisecond calls is not mistaken for queueing) the limit
+ * grows by about one per round trip, as long as it is actually being used. A slower call or a failure
+ * cuts it by the backoff ratio, at most once per round trip so one burst of slow completions does not
+ * collapse it to the minimum. Times are {@link System#nanoTime()} values.
+ */
+public class AdaptiveLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final long latencyFloorNanos;
+    private final int windowSize;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // guarded by this
+    private double estimatedLimit;
+    private long noLoadNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private long lastDecreaseAt;
+    private boolean decreased;
+
+    /**
+     * @param initialLimit starting limit
+     * @param minLimit the limit never goes below, at least 1
+     * @param maxLimit the limit never goes above
+     * @param tolerance latency multiple of the no-load latency still considered healthy, above 1
+     * @param backoffRatio multiplier applied on a slow call or failure, between 0 and 1
+     * @param latencyFloorNanos latencies up to this are always healthy
+     * @param windowSize samples after which the no-load latency is re-measured
+     */
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoffRatio,
+                         long latencyFloorNanos, int windowSize) {
+        if (minLimit < 1 || maxLimit < minLimit || tolerance <= 1 || backoffRatio <= 0 || backoffRatio >= 1 || windowSize < 1) {
+            throw new IllegalArgumentException("Invalid adaptive limit settings");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.latencyFloorNanos = latencyFloorNanos;
+        this.windowSize = windowSize;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Take a slot if fewer than limit calls are in flight
+     * @return false when the call must be shed
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give back a slot taken with {@link #tryAcquire} and feed the call's outcome into the limit
+     * @param startNanos when the call was admitted
+     * @param nowNanos when it finished
+     * @param failed true for server errors and timeouts
+     */
+    public void release(long startNanos, long nowNanos, boolean failed) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        update(nowNanos - startNanos, nowNanos, failed, inFlightBefore);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void update(long latencyNanos, long nowNanos, boolean failed, int inFlightBefore) {
+        if (!failed) {
+            noLoadNanos = Math.min(noLoadNanos, latencyNanos);
+            windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+            if (++windowSamples >= windowSize) {
+                noLoadNanos = windowMinNanos;
+                windowMinNanos = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+        }
+        boolean slow = latencyNanos > latencyFloorNanos && latencyNanos > noLoadNanos * tolerance;
+        if (failed || slow) {
+            if (!decreased || nowNanos - lastDecreaseAt >= latencyNanos) {
+                estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+                lastDecreaseAt = nowNanos;
+                decreased = true;
+            }
+        } else if (inFlightBefore * 2 >= estimatedLimit) {
+            estimatedLimit = Math.min(maxLimit, estimatedLimit + 1 / estimatedLimit);
+        }
+        limit = (int) estimatedLimit;
+    }
+}
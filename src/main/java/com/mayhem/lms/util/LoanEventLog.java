@@ -0,0 +1,411 @@
+package com.mayhem.lms.util;
+
+import com.mayhem.lms.constants.LoanEventKind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of loan changes in memory-mapped segment files of fixed-size 64 byte records.
+ * <p>
+ * Records only carry what the event changed, except that the first record of a loan and then every
+ * snapshotEvery-th one carry the full state. Every record points back to the previous record of the same loan.
+ * The in-memory index is sparse: per loan the newest record and the position and time of its full records.
+ * The state at a point in time is the nearest full record at or before it plus at most snapshotEvery - 1
+ * records replayed on top, whatever the size of the log.
+ * An ERASED record is a tombstone: the loan then has no state at any time, its earlier records are never read again.
+ * <p>
+ * Record layout: header (kind, full flag), status id, term, time in epoch microseconds, loan id, user id,
+ * amount in cents, type id, CRC32C, previous position, actor id. Records are written in place and
+ * survive a crash of the process; {@link #force()} writes them to disk. On open the segments are scanned
+ * to rebuild the index, a record with a bad checksum ends the log. Segments stay mapped until the log is closed.
+ */
+public class LoanEventLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoanEventLog.class);
+
+    public static final int RECORD_SIZE = 64;
+    private static final String SEGMENT_PREFIX = "loan-events-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int FULL = 0x80;
+    private static final LoanEventKind[] KINDS = LoanEventKind.values();
+
+    private static final int HEADER = 0;
+    private static final int STATUS = 1;
+    private static final int TERM = 4;
+    private static final int TIME = 8;
+    private static final int LOAN = 16;
+    private static final int USER = 24;
+    private static final int AMOUNT = 32;
+    private static final int TYPE = 40;
+    private static final int CHECKSUM = 44;
+    private static final int PREVIOUS = 48;
+    private static final int ACTOR = 56;
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int snapshotEvery;
+    private final FileChannel lockChannel;
+    private final FileLock directoryLock;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final Map<Long, LoanIndex> index = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long nextPosition;
+    private long lastMicros;
+
+    /**
+     * Open the log in the directory, creating it if needed
+     * @param directory directory of the segment files, used by one log at a time
+     * @param recordsPerSegment records per segment file, must not change for an existing log
+     * @param snapshotEvery a full record is written at least every snapshotEvery records of a loan
+     */
+    public LoanEventLog(Path directory, int recordsPerSegment, int snapshotEvery) {
+        if (recordsPerSegment < 1 || (long) recordsPerSegment * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Records per segment must be between 1 and " + Integer.MAX_VALUE / RECORD_SIZE);
+        }
+        if (snapshotEvery < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.snapshotEvery = snapshotEvery;
+        try {
+            Files.createDirectories(directory);
+            this.lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            this.directoryLock = tryLock(lockChannel);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open loan event log in " + directory, e);
+        }
+    }
+
+    /**
+     * Append an event. Its time is the current time, always later than the previous event
+     * @param event the change and the loan state after it
+     * @return time recorded for the event
+     */
+    public Instant append(Event event) {
+        lock.writeLock().lock();
+        try {
+            long micros = Math.max(nowMicros(), lastMicros + 1);
+            LoanIndex loan = index.get(event.loanId());
+            boolean full = loan == null || event.kind() == LoanEventKind.CREATED || loan.sinceFull + 1 >= snapshotEvery;
+            long position = nextPosition;
+            MappedByteBuffer segment = segmentFor(position);
+            int offset = offset(position);
+            segment.put(offset + HEADER, (byte) (event.kind().ordinal() + 1 | (full ? FULL : 0)));
+            segment.put(offset + STATUS, (byte) (full || event.kind() == LoanEventKind.STATUS_CHANGED ? event.statusId() : 0));
+            segment.putLong(offset + TIME, micros);
+            segment.putLong(offset + LOAN, event.loanId());
+            segment.putLong(offset + USER, event.userId());
+            boolean terms = full || event.kind() == LoanEventKind.TERMS_CHANGED;
+            segment.putInt(offset + TERM, terms ? event.term() : 0);
+            segment.putLong(offset + AMOUNT, terms ? event.amountCents() : 0);
+            segment.putInt(offset + TYPE, terms ? (int) event.typeId() : 0);
+            segment.putLong(offset + PREVIOUS, loan == null ? -1 : loan.head);
+            segment.putLong(offset + ACTOR, event.actorId());
+            segment.putInt(offset + CHECKSUM, checksum(segment, offset));
+            if (loan == null) {
+                loan = new LoanIndex();
+                index.put(event.loanId(), loan);
+            }
+            loan.add(position, micros, full);
+            loan.erased |= event.kind() == LoanEventKind.ERASED;
+            nextPosition = position + 1;
+            lastMicros = micros;
+            return toInstant(micros);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reconstruct a loan as it was at a point in time
+     * @param loanId
+     * @param at point in time, inclusive
+     * @return the state, empty if the loan did not exist yet or was deleted at that time, or was erased
+     */
+    public Optional<State> stateAt(long loanId, Instant at) {
+        long atMicros = toMicros(at);
+        lock.readLock().lock();
+        try {
+            LoanIndex loan = index.get(loanId);
+            if (loan == null || loan.erased) {
+                return Optional.empty();
+            }
+            // walk back from the first full record after the point in time, or from the newest record,
+            // to the nearest full record at or before it
+            int next = loan.firstFullAfter(atMicros);
+            long position = next < loan.fullCount ? loan.fullPositions[next] : loan.head;
+            Deque<Long> replay = new ArrayDeque<>();
+            while (position >= 0) {
+                MappedByteBuffer segment = segments.get(segmentIndex(position));
+                int offset = offset(position);
+                if (segment.getLong(offset + TIME) <= atMicros) {
+                    replay.push(position);
+                    if ((segment.get(offset + HEADER) & FULL) != 0) {
+                        break;
+                    }
+                }
+                position = segment.getLong(offset + PREVIOUS);
+            }
+            State state = null;
+            for (long replayed : replay) {
+                state = apply(state, segments.get(segmentIndex(replayed)), offset(replayed));
+            }
+            return Optional.ofNullable(state).filter(found -> found.lastEvent() != LoanEventKind.DELETED);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of records in the log
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return nextPosition;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write the current segment to disk
+     */
+    public void force() {
+        lock.readLock().lock();
+        try {
+            if (!segments.isEmpty()) {
+                segments.get(segments.size() - 1).force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            segments.forEach(MappedByteBuffer::force);
+            segments.clear();
+            index.clear();
+            directoryLock.release();
+            lockChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private State apply(State state, MappedByteBuffer segment, int offset) {
+        int header = segment.get(offset + HEADER);
+        LoanEventKind kind = KINDS[(header & 0x7f) - 1];
+        Instant changedAt = toInstant(segment.getLong(offset + TIME));
+        long actorId = segment.getLong(offset + ACTOR);
+        if ((header & FULL) != 0 || state == null) {
+            return new State(segment.getLong(offset + LOAN), segment.getLong(offset + USER), segment.getLong(offset + AMOUNT),
+                    segment.getInt(offset + TERM), segment.getInt(offset + TYPE), segment.get(offset + STATUS), kind, changedAt, actorId);
+        }
+        return switch (kind) {
+            case TERMS_CHANGED -> new State(state.loanId(), state.userId(), segment.getLong(offset + AMOUNT),
+                    segment.getInt(offset + TERM), segment.getInt(offset + TYPE), state.statusId(), kind, changedAt, actorId);
+            case STATUS_CHANGED -> new State(state.loanId(), state.userId(), state.amountCents(), state.term(), state.typeId(),
+                    segment.get(offset + STATUS), kind, changedAt, actorId);
+            default -> new State(state.loanId(), state.userId(), state.amountCents(), state.term(), state.typeId(),
+                    state.statusId(), kind, changedAt, actorId);
+        };
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX)).sorted().toList();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            if (!files.get(i).getFileName().toString().equals(segmentName(i))
+                    || Files.size(files.get(i)) != (long) recordsPerSegment * RECORD_SIZE) {
+                throw new IllegalStateException("Segment " + files.get(i) + " does not match " + recordsPerSegment + " records per segment");
+            }
+            segments.add(map(files.get(i)));
+        }
+        long capacity = (long) segments.size() * recordsPerSegment;
+        long position = 0;
+        while (position < capacity) {
+            MappedByteBuffer segment = segments.get(segmentIndex(position));
+            int offset = offset(position);
+            int header = segment.get(offset + HEADER) & 0xff;
+            if (header == 0) {
+                break;
+            }
+            if ((header & ~FULL) > KINDS.length || segment.getInt(offset + CHECKSUM) != checksum(segment, offset)) {
+                logger.warn("Loan event log {} ends with a torn record at position {}, discarding the rest", directory, position);
+                discardFrom(position);
+                break;
+            }
+            long micros = segment.getLong(offset + TIME);
+            LoanIndex loan = index.computeIfAbsent(segment.getLong(offset + LOAN), loanId -> new LoanIndex());
+            loan.add(position, micros, (header & FULL) != 0);
+            loan.erased |= KINDS[(header & ~FULL) - 1] == LoanEventKind.ERASED;
+            lastMicros = Math.max(lastMicros, micros);
+            position++;
+        }
+        nextPosition = position;
+        logger.info("Loan event log {} opened with {} records of {} loans", directory, nextPosition, index.size());
+    }
+
+    private void discardFrom(long position) throws IOException {
+        MappedByteBuffer segment = segments.get(segmentIndex(position));
+        for (int offset = offset(position); offset < recordsPerSegment * RECORD_SIZE; offset += RECORD_SIZE) {
+            segment.put(offset + HEADER, (byte) 0);
+        }
+        segment.force();
+        while (segments.size() > segmentIndex(position) + 1) {
+            segments.remove(segments.size() - 1);
+            Files.delete(directory.resolve(segmentName(segments.size())));
+        }
+    }
+
+    private MappedByteBuffer segmentFor(long position) {
+        int segmentIndex = segmentIndex(position);
+        if (segmentIndex == segments.size()) {
+            try {
+                segments.add(map(directory.resolve(segmentName(segmentIndex))));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create loan event log segment " + segmentIndex, e);
+            }
+        }
+        return segments.get(segmentIndex);
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        }
+    }
+
+    private int segmentIndex(long position) {
+        return (int) (position / recordsPerSegment);
+    }
+
+    private int offset(long position) {
+        return (int) (position % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    private static String segmentName(int segmentIndex) {
+        return String.format("%s%010d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX);
+    }
+
+    private static int checksum(MappedByteBuffer segment, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(segment.slice(offset, CHECKSUM));
+        crc.update(segment.slice(offset + CHECKSUM + 4, RECORD_SIZE - CHECKSUM - 4));
+        return (int) crc.getValue();
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        FileLock acquired;
+        try {
+            acquired = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            channel.close();
+            throw new IllegalStateException("Loan event log directory is in use by another log");
+        }
+        return acquired;
+    }
+
+    private static long nowMicros() {
+        return toMicros(Instant.now());
+    }
+
+    private static long toMicros(Instant instant) {
+        return TimeUnit.SECONDS.toMicros(instant.getEpochSecond()) + instant.getNano() / 1_000;
+    }
+
+    private static Instant toInstant(long micros) {
+        return Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+
+    /**
+     * A loan change with the full state after it, the log keeps only what the kind of change needs
+     */
+    public record Event(LoanEventKind kind, long loanId, long userId, long amountCents, int term, long typeId,
+                        long statusId, long actorId) {
+    }
+
+    /**
+     * A loan reconstructed from the log, with the last change applied to it
+     */
+    public record State(long loanId, long userId, long amountCents, int term, long typeId, long statusId,
+                        LoanEventKind lastEvent, Instant changedAt, long actorId) {
+    }
+
+    /** Newest record of a loan, and position and time of each of its full records in log order */
+    private static final class LoanIndex {
+        private long head = -1;
+        private boolean erased;
+        private int sinceFull;
+        private long[] fullPositions = new long[1];
+        private long[] fullMicros = new long[1];
+        private int fullCount;
+
+        void add(long position, long micros, boolean full) {
+            head = position;
+            if (!full) {
+                sinceFull++;
+                return;
+            }
+            sinceFull = 0;
+            if (fullCount == fullPositions.length) {
+                fullPositions = Arrays.copyOf(fullPositions, fullCount * 2);
+                fullMicros = Arrays.copyOf(fullMicros, fullCount * 2);
+            }
+            fullPositions[fullCount] = position;
+            fullMicros[fullCount] = micros;
+            fullCount++;
+        }
+
+        /** Index of the first full record later than the time, fullCount if there is none */
+        int firstFullAfter(long micros) {
+            int low = 0;
+            int high = fullCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (fullMicros[middle] <= micros) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
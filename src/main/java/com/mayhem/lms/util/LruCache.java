@@ -0,0 +1,58 @@
+package com.mayhem.lms.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Small bounded cache evicting the least recently used entry once maxEntries is reached.
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+
+    private final Map<K, V> entries;
+
+    public LruCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Get the cached value or compute and cache it. The loader runs outside the lock,
+     * so concurrent misses for the same key may both compute it
+     * @param key
+     * @param loader
+     * @return cached or loaded value, null values are not cached
+     */
+    public V computeIfAbsent(K key, Supplier<V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.get();
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,83 @@
+package com.mayhem.lms.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls for the same key into one execution: the first caller runs the loader,
+ * callers arriving before it finishes wait on its future and get the same result or exception.
+ * Nothing is cached, the key is forgotten as soon as the call completes.
+ * In-flight calls live in a ConcurrentHashMap, whose per-bin locking keeps unrelated keys from contending.
+ * @param <K> key type
+ * @param <V> result type, null results are shared like any other
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * Run the loader for the key, or wait for the call already running for it
+     * @param key
+     * @param loader
+     * @return result of the single execution
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            shared.increment();
+            return await(running);
+        }
+        executed.increment();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * @return calls that ran the loader
+     */
+    public long executedCount() {
+        return executed.sum();
+    }
+
+    /**
+     * @return calls that got the result of another caller's execution
+     */
+    public long sharedCount() {
+        return shared.sum();
+    }
+
+    /**
+     * @return keys currently being loaded
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.mayhem.lms.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its GCRA form: the whole state is the instant at which the bucket
+ * would be full again, updated with a single CAS. No refill timer is needed and a bucket whose
+ * instant has passed is full, so dropping it and creating a fresh one later loses nothing.
+ * Times are {@link System#nanoTime()} values.
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param capacity maximum burst, at least 1
+     * @param tokensPerSecond sustained refill rate
+     * @param nowNanos current time, the bucket starts full
+     */
+    public TokenBucket(long capacity, double tokensPerSecond, long nowNanos) {
+        if (capacity < 1 || tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and rate must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) Math.ceil(1_000_000_000d / tokensPerSecond));
+        this.burstNanos = Math.multiplyExact(intervalNanos, capacity);
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Take one token
+     * @param nowNanos current time
+     * @return 0 if a token was taken, otherwise the nanoseconds until one becomes available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - nowNanos > 0 ? current : nowNanos) + intervalNanos;
+            long wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @param nowNanos current time
+     * @return true if the bucket has refilled completely, i.e. it carries no state worth keeping
+     */
+    public boolean isFull(long nowNanos) {
+        return fullAt.get() - nowNanos <= 0;
+    }
+}
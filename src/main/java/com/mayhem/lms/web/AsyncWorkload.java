@@ -0,0 +1,86 @@
+package com.mayhem.lms.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * A class of slow handler work (logins, bulk reads) with its own bounded executor and timeout.
+ * Controllers validate on the servlet thread and hand the service call to {@link #submit}, returning the
+ * future so the servlet thread goes back to the pool. A full executor or an expired timeout is answered
+ * with 503 and Retry-After; a timed out task still runs to completion on its worker. Work with side effects the
+ * client must see, like starting a session, returns what to apply and applies it in a stage on the returned
+ * future, which only sees the work's response if the work finished in time.
+ */
+public class AsyncWorkload {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncWorkload.class);
+
+    private final String name;
+    private final ThreadPoolTaskExecutor executor;
+    private final long timeoutMillis;
+
+    /**
+     * @param name workload name, used in logs
+     * @param executor initialised bounded executor, owned by this workload from now on
+     * @param timeoutMillis time after which the client gets 503
+     */
+    public AsyncWorkload(String name, ThreadPoolTaskExecutor executor, long timeoutMillis) {
+        this.name = name;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Run the work on this workload's executor
+     * @param work produces the response, runs with the caller's request context
+     * @return response future, completed with 503 when the work is rejected or times out
+     */
+    public CompletableFuture<ResponseEntity<?>> submit(Supplier<ResponseEntity<?>> work) {
+        CompletableFuture<ResponseEntity<?>> future;
+        try {
+            future = CompletableFuture.supplyAsync(work, executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Workload {} is saturated, rejecting request", name);
+            return CompletableFuture.completedFuture(unavailable("Server busy, retry later"));
+        }
+        return future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionally(this::timeoutToUnavailable);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Stop accepting work and let queued tasks finish
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private ResponseEntity<?> timeoutToUnavailable(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof TimeoutException) {
+            logger.warn("Workload {} did not complete within {} ms", name, timeoutMillis);
+            return unavailable("Request timed out, retry later");
+        }
+        throw failure instanceof CompletionException completion ? completion : new CompletionException(cause);
+    }
+
+    private static ResponseEntity<?> unavailable(String message) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(message);
+    }
+}
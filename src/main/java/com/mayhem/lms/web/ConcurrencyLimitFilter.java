@@ -0,0 +1,188 @@
+package com.mayhem.lms.web;
+
+import com.mayhem.lms.util.AdaptiveLimit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Load shedding with an {@link AdaptiveLimit} per endpoint group: auth (login, register), loan-write
+ * (every mutation of loans and users), loan-read-bulk (full loan and user listings) and lookup (single
+ * loan and user reads). When the database slows down each group's limit shrinks with the latency it
+ * observes and excess requests are answered with 503 right away instead of queueing in Tomcat.
+ * Loan types, session check, logout and non-API paths are never limited so they stay responsive.
+ * Asynchronous requests hold their slot until the async processing completes.
+ */
+@Component
+@ConditionalOnProperty(name = "lms.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private final Group auth;
+    private final Group loanWrite;
+    private final Group loanReadBulk;
+    private final Group lookup;
+
+    public ConcurrencyLimitFilter(Environment environment, MeterRegistry meterRegistry) {
+        this.auth = new Group("auth", environment, meterRegistry, 20, 4, 100);
+        this.loanWrite = new Group("loan-write", environment, meterRegistry, 20, 2, 100);
+        this.loanReadBulk = new Group("loan-read-bulk", environment, meterRegistry, 4, 1, 20);
+        this.lookup = new Group("lookup", environment, meterRegistry, 50, 5, 200);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return match(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Group group = match(request);
+        if (!group.limit.tryAcquire()) {
+            group.shed.increment();
+            logger.debug("Shedding {} {}, group '{}' at its limit of {}", request.getMethod(), request.getRequestURI(),
+                    group.name, group.limit.getLimit());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Server busy, retry later");
+            return;
+        }
+        long start = System.nanoTime();
+        Permit permit = new Permit(group.limit, start, response);
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(permit);
+            } else {
+                permit.release(failed || response.getStatus() >= 500);
+            }
+        }
+    }
+
+    /**
+     * @param request
+     * @return group of the request, null when it is never limited
+     */
+    private Group match(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String method = request.getMethod();
+        boolean read = "GET".equals(method) || "HEAD".equals(method);
+        if (path.equals("/api/auth/login") || path.equals("/api/auth/register")) {
+            return "POST".equals(method) ? auth : null;
+        }
+        boolean loans = path.equals("/api/loans") || path.startsWith("/api/loans/");
+        boolean users = path.equals("/api/users") || path.startsWith("/api/users/");
+        if (!loans && !users || "OPTIONS".equals(method)) {
+            return null;
+        }
+        if (!read) {
+            return loanWrite;
+        }
+        return path.equals("/api/loans") || path.equals("/api/users") ? loanReadBulk : lookup;
+    }
+
+    /**
+     * @param name group name
+     * @return current limit of the group, for monitoring and tests
+     */
+    public int currentLimit(String name) {
+        return switch (name) {
+            case "auth" -> auth.limit.getLimit();
+            case "loan-write" -> loanWrite.limit.getLimit();
+            case "loan-read-bulk" -> loanReadBulk.limit.getLimit();
+            case "lookup" -> lookup.limit.getLimit();
+            default -> throw new IllegalArgumentException("Unknown group " + name);
+        };
+    }
+
+    private static final class Group {
+        private final String name;
+        private final AdaptiveLimit limit;
+        private final Counter shed;
+
+        Group(String name, Environment environment, MeterRegistry meterRegistry, int defaultInitial, int defaultMin, int defaultMax) {
+            String prefix = "lms.concurrency-limit." + name + ".";
+            this.name = name;
+            this.limit = new AdaptiveLimit(
+                    environment.getProperty(prefix + "initial", Integer.class, defaultInitial),
+                    environment.getProperty(prefix + "min", Integer.class, defaultMin),
+                    environment.getProperty(prefix + "max", Integer.class, defaultMax),
+                    environment.getProperty(prefix + "tolerance", Double.class,
+                            environment.getProperty("lms.concurrency-limit.tolerance", Double.class, 2.0)),
+                    environment.getProperty("lms.concurrency-limit.backoff-ratio", Double.class, 0.9),
+                    TimeUnit.MILLISECONDS.toNanos(environment.getProperty("lms.concurrency-limit.latency-floor-ms", Long.class, 50L)),
+                    environment.getProperty("lms.concurrency-limit.window-size", Integer.class, 500));
+            this.shed = Counter.builder("lms.concurrency.shed")
+                    .description("Requests answered with 503 because the group was at its limit")
+                    .tag("group", name)
+                    .register(meterRegistry);
+            Gauge.builder("lms.concurrency.limit", limit, AdaptiveLimit::getLimit).tag("group", name).register(meterRegistry);
+            Gauge.builder("lms.concurrency.in-flight", limit, AdaptiveLimit::getInFlight).tag("group", name).register(meterRegistry);
+        }
+    }
+
+    /** Releases the slot exactly once, for async requests when the async processing ends */
+    private static final class Permit implements AsyncListener {
+        private final AdaptiveLimit limit;
+        private final long start;
+        private final HttpServletResponse response;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(AdaptiveLimit limit, long start, HttpServletResponse response) {
+            this.limit = limit;
+            this.start = start;
+            this.response = response;
+        }
+
+        void release(boolean failed) {
+            if (released.compareAndSet(false, true)) {
+                limit.release(start, System.nanoTime(), failed);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(response.getStatus() >= 500);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.mayhem.lms.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayhem.lms.util.LruCache;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET handling with a bounded cache of rendered bodies keyed by ETag.
+ * A matching If-None-Match / If-Modified-Since is answered with 304 before the body is loaded,
+ * and cache hits are written as raw bytes without going through Jackson.
+ * The body is rendered in the Jackson format picked by the Accept header (JSON by default, CBOR, Smile);
+ * each format gets its own ETag and cache entry and responses carry Vary: Accept.
+ */
+@Component
+public class ConditionalGetSupport {
+
+    private final List<Representation> representations;
+    private final LruCache<String, byte[]> renderedBodies;
+    private final LruCache<String, HashedBody> hashedBodies;
+    private final long contentHashTtlMillis;
+
+    public ConditionalGetSupport(List<AbstractJackson2HttpMessageConverter> converters,
+                                 @Value("${lms.response-cache.max-entries:10000}") int maxEntries,
+                                 @Value("${lms.response-cache.content-hash-ttl-ms:60000}") long contentHashTtlMillis) {
+        this.representations = new ArrayList<>();
+        for (AbstractJackson2HttpMessageConverter converter : converters) {
+            MediaType mediaType = converter.getSupportedMediaTypes().get(0);
+            Representation representation = new Representation(mediaType, converter.getObjectMapper());
+            if (MediaType.APPLICATION_JSON.equals(mediaType)) {
+                representations.add(0, representation);
+            } else {
+                representations.add(representation);
+            }
+        }
+        if (representations.isEmpty() || !MediaType.APPLICATION_JSON.equals(representations.get(0).mediaType())) {
+            throw new IllegalStateException("A JSON message converter is required");
+        }
+        this.renderedBodies = new LruCache<>(maxEntries);
+        this.hashedBodies = new LruCache<>(64);
+        this.contentHashTtlMillis = contentHashTtlMillis;
+    }
+
+    /**
+     * Respond to a GET for a versioned resource. Authorization must be checked before calling this
+     * @param request current request
+     * @param etag strong ETag derived from the resource version
+     * @param lastModified last modification time of the resource
+     * @param body loads the response body, only called on a cache miss
+     * @return null when a 304 was written, 404 if the resource vanished meanwhile, otherwise the rendered response
+     */
+    public ResponseEntity<byte[]> respond(WebRequest request, String etag, Instant lastModified, Supplier<Object> body) {
+        Representation representation = negotiate(request);
+        String representationEtag = representation.tag(etag);
+        long lastModifiedMillis = lastModified == null ? -1 : lastModified.toEpochMilli();
+        if (request.checkNotModified(representationEtag, lastModifiedMillis)) {
+            return null;
+        }
+        byte[] rendered = renderedBodies.computeIfAbsent(representationEtag, () -> representation.render(body.get()));
+        if (rendered == null) {
+            return ResponseEntity.notFound().build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(representation.mediaType())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(representationEtag);
+        if (lastModified != null) {
+            response.lastModified(lastModified);
+        }
+        return response.body(rendered);
+    }
+
+    /**
+     * Respond to a GET for an unversioned resource, the ETag is a hash of the rendered content
+     * which is reloaded at most once per TTL
+     * @param request current request
+     * @param key cache key of the resource
+     * @param body loads the response body
+     * @return null when a 304 was written, otherwise the rendered response
+     */
+    public ResponseEntity<byte[]> respondWithContentHash(WebRequest request, String key, Supplier<Object> body) {
+        Representation representation = negotiate(request);
+        String representationKey = representation.tag(key);
+        HashedBody hashed = hashedBodies.get(representationKey);
+        if (hashed == null || hashed.isExpired(contentHashTtlMillis)) {
+            byte[] rendered = representation.render(body.get());
+            hashed = new HashedBody("\"" + DigestUtils.md5DigestAsHex(rendered) + "\"", rendered, System.currentTimeMillis());
+            hashedBodies.put(representationKey, hashed);
+        }
+        if (request.checkNotModified(hashed.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(representation.mediaType())
+                .cacheControl(CacheControl.noCache())
+                .eTag(hashed.etag())
+                .body(hashed.body());
+    }
+
+    /**
+     * Pick the representation for the request's Accept header, JSON when nothing else matches.
+     * Also marks the response as varying by Accept, including a later 304
+     */
+    private Representation negotiate(WebRequest request) {
+        Representation json = representations.get(0);
+        if (representations.size() == 1) {
+            return json;
+        }
+        if (request instanceof NativeWebRequest nativeRequest) {
+            HttpServletResponse response = nativeRequest.getNativeResponse(HttpServletResponse.class);
+            if (response != null) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            }
+        }
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return json;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(accepted);
+        } catch (IllegalArgumentException e) {
+            return json;
+        }
+        for (MediaType acceptedType : accepted) {
+            if (acceptedType.getQualityValue() == 0) {
+                continue;
+            }
+            for (Representation representation : representations) {
+                if (acceptedType.isCompatibleWith(representation.mediaType())) {
+                    return representation;
+                }
+            }
+        }
+        return json;
+    }
+
+    private record Representation(MediaType mediaType, ObjectMapper objectMapper) {
+        /** Per-format variant of an ETag or cache key; JSON keeps the plain one */
+        String tag(String value) {
+            if (MediaType.APPLICATION_JSON.equals(mediaType)) {
+                return value;
+            }
+            String subtype = mediaType.getSubtype();
+            String suffix = "-" + subtype.substring(subtype.lastIndexOf('-') + 1);
+            return value.endsWith("\"") ? value.substring(0, value.length() - 1) + suffix + "\"" : value + suffix;
+        }
+
+        byte[] render(Object body) {
+            if (body == null) {
+                return null;
+            }
+            try {
+                return objectMapper.writeValueAsBytes(body);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to render response body", e);
+            }
+        }
+    }
+
+    private record HashedBody(String etag, byte[] body, long loadedAt) {
+        boolean isExpired(long ttlMillis) {
+            return System.currentTimeMillis() - loadedAt > ttlMillis;
+        }
+    }
+}
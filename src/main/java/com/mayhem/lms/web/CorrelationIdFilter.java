@@ -0,0 +1,58 @@
+package com.mayhem.lms.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Gives every request a correlation id, taken from the X-Correlation-Id header when the client sent a
+ * sensible one and generated otherwise. It is put in the logging MDC as correlationId for the duration of
+ * the request and echoed in the response header. Generated ids are 64 random bits, not a UUID, to keep
+ * SecureRandom off the request path. Executor threads get it through
+ * {@link com.mayhem.lms.config.ContextPropagatingTaskDecorator}, the async dispatch reuses the same id.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CorrelationIdFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Correlation-Id";
+    public static final String MDC_KEY = "correlationId";
+    private static final String ATTRIBUTE = CorrelationIdFilter.class.getName() + ".id";
+    private static final Pattern VALID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String correlationId = (String) request.getAttribute(ATTRIBUTE);
+        if (correlationId == null) {
+            correlationId = request.getHeader(HEADER);
+            if (correlationId == null || !VALID.matcher(correlationId).matches()) {
+                correlationId = HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextLong());
+            }
+            request.setAttribute(ATTRIBUTE, correlationId);
+            response.setHeader(HEADER, correlationId);
+        }
+        MDC.put(MDC_KEY, correlationId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MDC.remove(MDC_KEY);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.mayhem.lms.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.mayhem.lms.dto.GetLoanDto;
+import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.dto.UserExposureDto;
+import com.mayhem.lms.model.Money;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+
+/**
+ * Hand-written streaming serialisers for the DTOs returned in list endpoints.
+ * Field names are pre-encoded once and values are written straight to the generator,
+ * so a list of loans or users is rendered without bean introspection, per-field lookups
+ * or a temporary String per amount.
+ * The output is identical to the default record serialisation, nulls included
+ * except for a user's exposure, which is omitted when absent.
+ */
+@JsonComponent
+public class DtoJsonSerializers {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString AMOUNT = new SerializedString("amount");
+    private static final SerializedString TERM = new SerializedString("term");
+    private static final SerializedString TYPE = new SerializedString("type");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString CLIENT_NAME = new SerializedString("clientName");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString FIRST_NAME = new SerializedString("firstName");
+    private static final SerializedString LAST_NAME = new SerializedString("lastName");
+    private static final SerializedString PHONE_NUMBER = new SerializedString("phoneNumber");
+    private static final SerializedString ROLE = new SerializedString("role");
+    private static final SerializedString EXPOSURE = new SerializedString("exposure");
+    private static final SerializedString PENDING_LOANS = new SerializedString("pendingLoans");
+    private static final SerializedString PENDING_AMOUNT = new SerializedString("pendingAmount");
+    private static final SerializedString APPROVED_LOANS = new SerializedString("approvedLoans");
+    private static final SerializedString APPROVED_AMOUNT = new SerializedString("approvedAmount");
+    private static final SerializedString REJECTED_LOANS = new SerializedString("rejectedLoans");
+    private static final SerializedString MONTHLY_INSTALLMENT = new SerializedString("monthlyInstallment");
+
+    /** Scratch space for rendering amounts, reused per thread like Jackson's own buffer recycler */
+    private static final ThreadLocal<char[]> MONEY_DIGITS = ThreadLocal.withInitial(() -> new char[Money.MAX_CHARS]);
+
+    public static class GetLoanDtoSerializer extends JsonSerializer<GetLoanDto> {
+        @Override
+        public void serialize(GetLoanDto loan, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartObject(loan);
+            writeLong(gen, ID, loan.id());
+            writeMoney(gen, AMOUNT, loan.amount());
+            writeInt(gen, TERM, loan.term());
+            writeString(gen, TYPE, loan.type());
+            writeString(gen, STATUS, loan.status());
+            writeString(gen, CLIENT_NAME, loan.clientName());
+            gen.writeEndObject();
+        }
+
+        @Override
+        public Class<GetLoanDto> handledType() {
+            return GetLoanDto.class;
+        }
+    }
+
+    public static class GetUserDtoSerializer extends JsonSerializer<GetUserDto> {
+        @Override
+        public void serialize(GetUserDto user, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartObject(user);
+            writeLong(gen, ID, user.id());
+            writeString(gen, EMAIL, user.email());
+            writeString(gen, FIRST_NAME, user.firstName());
+            writeString(gen, LAST_NAME, user.lastName());
+            writeString(gen, PHONE_NUMBER, user.phoneNumber());
+            writeString(gen, ROLE, user.role());
+            UserExposureDto exposure = user.exposure();
+            if (exposure != null) {
+                gen.writeFieldName(EXPOSURE);
+                gen.writeStartObject(exposure);
+                writeLong(gen, PENDING_LOANS, exposure.pendingLoans());
+                writeMoney(gen, PENDING_AMOUNT, exposure.pendingAmount());
+                writeLong(gen, APPROVED_LOANS, exposure.approvedLoans());
+                writeMoney(gen, APPROVED_AMOUNT, exposure.approvedAmount());
+                writeLong(gen, REJECTED_LOANS, exposure.rejectedLoans());
+                writeMoney(gen, MONTHLY_INSTALLMENT, exposure.monthlyInstallment());
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        }
+
+        @Override
+        public Class<GetUserDto> handledType() {
+            return GetUserDto.class;
+        }
+    }
+
+    private static void writeLong(JsonGenerator gen, SerializedString name, Long value) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value.longValue());
+        }
+    }
+
+    private static void writeInt(JsonGenerator gen, SerializedString name, Integer value) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value.intValue());
+        }
+    }
+
+    private static void writeMoney(JsonGenerator gen, SerializedString name, Money value) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            value.writeTo(gen, MONEY_DIGITS.get());
+        }
+    }
+
+    private static void writeString(JsonGenerator gen, SerializedString name, String value) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(value);
+        }
+    }
+}
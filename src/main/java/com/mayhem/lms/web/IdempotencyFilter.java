@@ -0,0 +1,283 @@
+package com.mayhem.lms.web;
+
+import com.mayhem.lms.dto.GetUserDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Idempotency-Key support for the POSTs that clients retry on timeouts: creating a loan and registering.
+ * A retry with the same key and body gets the original response (marked Idempotent-Replayed) without
+ * running the controller again, so no duplicate loan is inserted and the password is not hashed twice.
+ * Duplicates arriving while the original still runs wait for it. The same key with a different body is
+ * refused with 422. Server errors are not stored, the next retry runs the request again.
+ * Keys are scoped to the session user, anonymous requests (registration) to the client address, so one
+ * client cannot replay or block another client's key.
+ */
+@Component
+@ConditionalOnProperty(name = "lms.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String REPLAYED = "Idempotent-Replayed";
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyFilter.class);
+    private static final Set<String> PATHS = Set.of("/api/loans", "/api/auth/register");
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final long waitTimeoutMillis;
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter coalesced;
+    private final Counter mismatched;
+    private final Counter conflicted;
+
+    public IdempotencyFilter(IdempotencyStore store, MeterRegistry meterRegistry,
+                             @Value("${lms.idempotency.wait-timeout-ms:10000}") long waitTimeoutMillis) {
+        this.store = store;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.executed = outcome(meterRegistry, "executed");
+        this.replayed = outcome(meterRegistry, "replayed");
+        this.coalesced = outcome(meterRegistry, "coalesced");
+        this.mismatched = outcome(meterRegistry, "mismatch");
+        this.conflicted = outcome(meterRegistry, "conflict");
+        meterRegistry.gauge("lms.idempotency.keys", store, IdempotencyStore::size);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY) == null
+                || !PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, IDEMPOTENCY_KEY + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        HttpServletRequest bufferedRequest = new BufferedBodyRequest(request, body);
+        String scopedKey = scope(request) + ' ' + request.getRequestURI() + ' ' + key;
+        String fingerprint = fingerprint(request, body);
+
+        IdempotencyStore.Claim claim = store.claim(scopedKey, fingerprint);
+        if (claim == null) {
+            executed.increment();
+            chain.doFilter(bufferedRequest, response);
+            return;
+        }
+        if (!claim.execution().getFingerprint().equals(fingerprint)) {
+            mismatched.increment();
+            reject(response, HttpStatus.UNPROCESSABLE_ENTITY, IDEMPOTENCY_KEY + " was already used for a different request");
+            return;
+        }
+        if (claim.owner()) {
+            execute(scopedKey, claim, bufferedRequest, response, chain);
+        } else {
+            replay(claim.execution(), response);
+        }
+    }
+
+    private void execute(String key, IdempotencyStore.Claim claim, HttpServletRequest request, HttpServletResponse response,
+                         FilterChain chain) throws ServletException, IOException {
+        executed.increment();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            chain.doFilter(request, wrapper);
+            int status = wrapper.getStatus();
+            if (status < 500 && status != HttpStatus.TOO_MANY_REQUESTS.value()) {
+                store.complete(key, claim, new IdempotencyStore.StoredResponse(status, wrapper.getContentType(),
+                        wrapper.getHeader(HttpHeaders.LOCATION), wrapper.getContentAsByteArray()));
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                store.abandon(key, claim);
+            }
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private void replay(IdempotencyStore.Execution execution, HttpServletResponse response) throws IOException {
+        (execution.isDone() ? replayed : coalesced).increment();
+        IdempotencyStore.StoredResponse stored;
+        try {
+            stored = execution.await(waitTimeoutMillis);
+        } catch (TimeoutException e) {
+            stored = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stored = null;
+        }
+        if (stored == null) {
+            conflicted.increment();
+            logger.debug("Idempotent request still in progress or failed, asking the client to retry");
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            reject(response, HttpStatus.CONFLICT, "A request with this " + IDEMPOTENCY_KEY + " is in progress, retry later");
+            return;
+        }
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        if (stored.location() != null) {
+            response.setHeader(HttpHeaders.LOCATION, stored.location());
+        }
+        response.setHeader(REPLAYED, "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+
+    private static String scope(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute("user") instanceof GetUserDto user && user.id() != null) {
+            return "user:" + user.id();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    /** Hash of what determines the outcome: media types and body */
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(request.getContentType()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(request.getHeader(HttpHeaders.ACCEPT)).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by the Java platform", e);
+        }
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("lms.idempotency.requests")
+                .description("Requests carrying an Idempotency-Key by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /** The body is read up front for the fingerprint, the controller reads it again from memory */
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                private ReadListener readListener;
+
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                /**
+                 * The body is already in memory, so the listener is called back at once: onDataAvailable while
+                 * there is something to read, then onAllDataRead once the listener has read it all
+                 */
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    if (listener == null) {
+                        throw new NullPointerException("Read listener must not be null");
+                    }
+                    if (readListener != null) {
+                        throw new IllegalStateException("Read listener already set");
+                    }
+                    if (!isAsyncStarted()) {
+                        throw new IllegalStateException("Non-blocking reads require async processing");
+                    }
+                    readListener = listener;
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            listener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return input.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
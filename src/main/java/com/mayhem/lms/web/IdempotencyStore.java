@@ -0,0 +1,189 @@
+package com.mayhem.lms.web;
+
+import com.mayhem.lms.model.IdempotencyRecord;
+import com.mayhem.lms.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executions of requests carrying an Idempotency-Key, by client scoped key. The first request for a key
+ * owns the execution, duplicates arriving while it runs wait for its response instead of running again,
+ * and later retries get the stored response until it expires after lms.idempotency.ttl-ms.
+ * The store holds at most lms.idempotency.max-entries keys; expired ones are evicted on a schedule.
+ * With lms.idempotency.persistent completed responses are also written to idempotency_record, so retries
+ * are answered after a restart or by another instance. Coalescing of in-flight duplicates stays per instance.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+    private static final long OVERFLOW_EVICTION_INTERVAL_MILLIS = 1000;
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final boolean persistent;
+    private final ConcurrentHashMap<String, Execution> executions = new ConcurrentHashMap<>();
+    private final AtomicLong lastOverflowEviction = new AtomicLong();
+
+    public IdempotencyStore(IdempotencyRecordRepository recordRepository,
+                            @Value("${lms.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${lms.idempotency.ttl-ms:86400000}") long ttlMillis,
+                            @Value("${lms.idempotency.persistent:false}") boolean persistent) {
+        this.recordRepository = recordRepository;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.persistent = persistent;
+    }
+
+    /**
+     * Claim a key for a request. The owner of the returned claim must run the request and then
+     * {@link #complete} or {@link #abandon} the execution, everybody else waits for its response
+     * @param key client scoped idempotency key
+     * @param fingerprint hash of the request, a different request under the same key is refused by the caller
+     * @return claim, or null when the store is full and the request must run unprotected
+     */
+    public Claim claim(String key, String fingerprint) {
+        long now = System.currentTimeMillis();
+        Execution existing = executions.get(key);
+        if (existing != null) {
+            if (!existing.isExpired(now)) {
+                return new Claim(existing, false);
+            }
+            executions.remove(key, existing);
+        }
+        if (executions.size() >= maxEntries) {
+            long lastEviction = lastOverflowEviction.get();
+            if (now - lastEviction > OVERFLOW_EVICTION_INTERVAL_MILLIS && lastOverflowEviction.compareAndSet(lastEviction, now)) {
+                evictExpired();
+            }
+            if (executions.size() >= maxEntries) {
+                logger.warn("Idempotency store full ({} keys), running request without idempotency", maxEntries);
+                return null;
+            }
+        }
+        if (persistent) {
+            IdempotencyRecord record = recordRepository.findById(key).orElse(null);
+            if (record != null && record.getExpiresAt().toEpochMilli() > now) {
+                Execution stored = new Execution(record.getFingerprint());
+                stored.finish(new StoredResponse(record.getStatus(), record.getContentType(), record.getLocation(), record.getBody()),
+                        record.getExpiresAt().toEpochMilli());
+                Execution raced = executions.putIfAbsent(key, stored);
+                return new Claim(raced != null ? raced : stored, false);
+            }
+        }
+        Execution created = new Execution(fingerprint);
+        Execution raced = executions.putIfAbsent(key, created);
+        return raced != null ? new Claim(raced, false) : new Claim(created, true);
+    }
+
+    /**
+     * Store the response of an owned execution and release the requests waiting for it
+     * @param key
+     * @param claim
+     * @param response
+     */
+    public void complete(String key, Claim claim, StoredResponse response) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        claim.execution().finish(response, expiresAt);
+        if (persistent) {
+            try {
+                recordRepository.save(new IdempotencyRecord(key, claim.execution().getFingerprint(), response.status(),
+                        response.contentType(), response.location(), response.body(), Instant.ofEpochMilli(expiresAt)));
+            } catch (RuntimeException e) {
+                // another instance stored the same key first, or the database is unavailable; memory still answers retries
+                logger.warn("Could not persist idempotent response for key {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Forget an owned execution whose response must not be replayed (server error or exception),
+     * so the next retry runs the request again
+     * @param key
+     * @param claim
+     */
+    public void abandon(String key, Claim claim) {
+        executions.remove(key, claim.execution());
+        claim.execution().finish(null, 0);
+    }
+
+    /**
+     * Drop expired responses from memory and, when persistent, from the database
+     * @return number of keys evicted from memory
+     */
+    @Scheduled(fixedDelayString = "${lms.idempotency.eviction-interval-ms:60000}")
+    public int evictExpired() {
+        long now = System.currentTimeMillis();
+        int before = executions.size();
+        executions.values().removeIf(execution -> execution.isExpired(now));
+        if (persistent) {
+            recordRepository.deleteExpired(Instant.ofEpochMilli(now));
+        }
+        return before - executions.size();
+    }
+
+    /**
+     * @return number of keys currently held in memory
+     */
+    public int size() {
+        return executions.size();
+    }
+
+    public record Claim(Execution execution, boolean owner) {
+    }
+
+    public record StoredResponse(int status, String contentType, String location, byte[] body) {
+    }
+
+    public static final class Execution {
+        private final String fingerprint;
+        private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        Execution(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public boolean isDone() {
+            return response.isDone();
+        }
+
+        /**
+         * Wait for the owner's response
+         * @param timeoutMillis
+         * @return response, null when the owner abandoned the execution
+         */
+        public StoredResponse await(long timeoutMillis) throws InterruptedException, TimeoutException {
+            try {
+                return response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        void finish(StoredResponse stored, long expiresAt) {
+            this.expiresAt = expiresAt;
+            response.complete(stored);
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.mayhem.lms.web;
+
+import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-client rate limiting for the API. Each client (session user id, or remote address before login)
+ * gets its own token bucket per rule: login, register and the full loan listing have tight limits,
+ * every other API call shares a generous default. Rejections are answered with 429 and Retry-After.
+ * Buckets that have refilled completely are evicted on a schedule; past lms.rate-limit.max-buckets
+ * new clients share one overflow bucket per rule, so memory stays bounded under a flood of addresses.
+ */
+@Component
+@ConditionalOnProperty(name = "lms.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+    private static final long OVERFLOW_EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<Rule> routeRules;
+    private final Rule defaultRule;
+    private final int maxBuckets;
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastOverflowEviction = new AtomicLong(System.nanoTime());
+
+    public RateLimitFilter(Environment environment, MeterRegistry meterRegistry) {
+        this.routeRules = List.of(
+                new Rule("login", "POST", "/api/auth/login", environment, meterRegistry, 10, 1),
+                new Rule("register", "POST", "/api/auth/register", environment, meterRegistry, 5, 0.2),
+                new Rule("loan-list", "GET", "/api/loans", environment, meterRegistry, 10, 2));
+        this.defaultRule = new Rule("default", null, null, environment, meterRegistry, 200, 50);
+        this.maxBuckets = environment.getProperty("lms.rate-limit.max-buckets", Integer.class, 100_000);
+        meterRegistry.gauge("lms.ratelimit.buckets", buckets, ConcurrentHashMap::size);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return "OPTIONS".equals(request.getMethod()) || !path(request).startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Rule rule = match(request);
+        String client = clientKey(request);
+        long now = System.nanoTime();
+        long waitNanos = bucketFor(rule, rule.name + ':' + client, now).tryAcquire(now);
+        if (waitNanos > 0) {
+            rule.rejected.increment();
+            logger.debug("Rate limit '{}' exceeded by {}", rule.name, client);
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Too many requests");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Drop buckets that have refilled completely, recreating them later yields the same state
+     * @return number of evicted buckets
+     */
+    @Scheduled(fixedDelayString = "${lms.rate-limit.eviction-interval-ms:30000}")
+    public int evictIdleBuckets() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+        return before - buckets.size();
+    }
+
+    /**
+     * @return number of per-client buckets currently held
+     */
+    public int bucketCount() {
+        return buckets.size();
+    }
+
+    private TokenBucket bucketFor(Rule rule, String key, long now) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxBuckets) {
+            long lastEviction = lastOverflowEviction.get();
+            if (now - lastEviction > OVERFLOW_EVICTION_INTERVAL_NANOS && lastOverflowEviction.compareAndSet(lastEviction, now)) {
+                evictIdleBuckets();
+            }
+            if (buckets.size() >= maxBuckets) {
+                return rule.overflow;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> rule.newBucket(now));
+    }
+
+    private Rule match(HttpServletRequest request) {
+        String path = path(request);
+        for (Rule rule : routeRules) {
+            if (rule.method.equals(request.getMethod()) && rule.path.equals(path)) {
+                return rule;
+            }
+        }
+        return defaultRule;
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute("user") instanceof GetUserDto user && user.id() != null) {
+            return "user:" + user.id();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static final class Rule {
+        private final String name;
+        private final String method;
+        private final String path;
+        private final long capacity;
+        private final double tokensPerSecond;
+        private final Counter rejected;
+        private final TokenBucket overflow;
+
+        Rule(String name, String method, String path, Environment environment, MeterRegistry meterRegistry,
+             long defaultCapacity, double defaultTokensPerSecond) {
+            this.name = name;
+            this.method = method;
+            this.path = path;
+            this.capacity = environment.getProperty("lms.rate-limit." + name + ".capacity", Long.class, defaultCapacity);
+            this.tokensPerSecond = environment.getProperty("lms.rate-limit." + name + ".per-second", Double.class, defaultTokensPerSecond);
+            this.rejected = Counter.builder("lms.ratelimit.rejected")
+                    .description("Requests answered with 429")
+                    .tag("rule", name)
+                    .register(meterRegistry);
+            this.overflow = newBucket(System.nanoTime());
+        }
+
+        TokenBucket newBucket(long now) {
+            return new TokenBucket(capacity, tokensPerSecond, now);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+-- Baseline schema, identical to what spring.jpa.hibernate.ddl-auto=update produced.
+-- Constraint names match Hibernate's generated names so databases baselined from an
+-- existing ddl-auto schema and databases created by this script can share later migrations.
+
+create table account_role (
+    role_id bigint generated by default as identity,
+    role_name varchar(50) not null unique,
+    primary key (role_id)
+);
+
+create table account (
+    account_id bigint generated by default as identity,
+    role_id bigint not null,
+    email varchar(50) not null unique,
+    password varchar(255) not null,
+    primary key (account_id)
+);
+
+create table user_profile (
+    user_id bigint generated by default as identity,
+    account_id bigint not null unique,
+    first_name varchar(50) not null,
+    last_name varchar(50) not null,
+    phone_number varchar(10),
+    primary key (user_id)
+);
+
+create table loan_type (
+    type_id bigint generated by default as identity,
+    type varchar(50) not null unique,
+    primary key (type_id)
+);
+
+create table loan_status (
+    status_id bigint generated by default as identity,
+    status varchar(50) not null unique,
+    primary key (status_id)
+);
+
+create table loan (
+    loan_id bigint generated by default as identity,
+    amount float(53) not null,
+    term integer not null,
+    user_id bigint not null,
+    type_id bigint not null,
+    status_id bigint not null,
+    primary key (loan_id)
+);
+
+create table audit_record (
+    audit_id bigint generated by default as identity,
+    entity_type varchar(20) not null,
+    entity_id bigint not null,
+    action varchar(20) not null,
+    actor_id bigint,
+    before_state text,
+    after_state text,
+    created_at timestamp(6) with time zone not null,
+    primary key (audit_id)
+);
+
+create index idx_audit_record_entity on audit_record (entity_type, entity_id, created_at);
+
+alter table account add constraint FKcp50qbq0dv55q04m36vtc5qu9 foreign key (role_id) references account_role;
+alter table user_profile add constraint FKi40avvmutd6fvi700ykq5bu2k foreign key (account_id) references account;
+alter table loan add constraint FKblnfcfucgwdtnbq50ep7dyw2u foreign key (user_id) references user_profile;
+alter table loan add constraint FK27xjexubv65i2hp754pig0pfj foreign key (type_id) references loan_type;
+alter table loan add constraint FK6c36qbxpvk83qdle5mcbk0hrj foreign key (status_id) references loan_status;
+
+-- Reference data, the services rely on these ids (role 2 = Customer, status 1/2/3 = Pending/Approved/Rejected)
+insert into account_role (role_name) values ('Manager'), ('Customer');
+insert into loan_status (status) values ('Pending'), ('Approved'), ('Rejected');
+insert into loan_type (type) values ('Personal'), ('Mortgage'), ('Auto'), ('Student'), ('Medical');
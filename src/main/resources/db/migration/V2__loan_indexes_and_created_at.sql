@@ -0,0 +1,15 @@
+-- Foreign-key strategy: every FK stays ON DELETE NO ACTION, the application deletes children
+-- before parents. Postgres does not index referencing columns, so each FK column used in joins,
+-- filters or parent deletes gets an index here.
+
+alter table loan add column created_at timestamp(6) with time zone default current_timestamp not null;
+
+-- findByUsersId, per-user exposure/status checks and user deletes (leading user_id serves the FK)
+create index idx_loan_user_status on loan (user_id, status_id);
+
+-- Manager listings and maintenance jobs filtering by status and age
+create index idx_loan_status_created on loan (status_id, created_at);
+
+create index idx_loan_type on loan (type_id);
+
+create index idx_account_role on account (role_id);
@@ -0,0 +1,7 @@
+-- Row versions and modification times backing optimistic locking and conditional GETs (ETag / Last-Modified)
+
+alter table loan add column version bigint default 0 not null;
+alter table loan add column updated_at timestamp(6) with time zone default current_timestamp not null;
+
+alter table user_profile add column version bigint default 0 not null;
+alter table user_profile add column updated_at timestamp(6) with time zone default current_timestamp not null;
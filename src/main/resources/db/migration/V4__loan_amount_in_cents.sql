@@ -0,0 +1,6 @@
+-- Loan amounts become exact integer minor units (cents) instead of double precision
+
+alter table loan add column amount_cents bigint;
+update loan set amount_cents = round(amount * 100);
+alter table loan alter column amount_cents set not null;
+alter table loan drop column amount;
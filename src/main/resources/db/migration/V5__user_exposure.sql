@@ -0,0 +1,29 @@
+-- Per-user aggregate of loans by status, maintained with atomic delta updates by the loan service.
+-- Credit limit checks and the "has approved loans" test read this single row instead of the user's loans.
+
+create table user_exposure (
+    user_id bigint not null,
+    pending_loans bigint default 0 not null,
+    pending_cents bigint default 0 not null,
+    approved_loans bigint default 0 not null,
+    approved_cents bigint default 0 not null,
+    rejected_loans bigint default 0 not null,
+    monthly_installment_cents bigint default 0 not null,
+    version bigint default 0 not null,
+    updated_at timestamp(6) with time zone default current_timestamp not null,
+    primary key (user_id),
+    constraint fk_user_exposure_user foreign key (user_id) references user_profile (user_id) on delete cascade
+);
+
+insert into user_exposure (user_id, pending_loans, pending_cents, approved_loans, approved_cents, rejected_loans, monthly_installment_cents)
+select u.user_id,
+       count(case when l.status_id = 1 then 1 end),
+       coalesce(sum(case when l.status_id = 1 then l.amount_cents end), 0),
+       count(case when l.status_id = 2 then 1 end),
+       coalesce(sum(case when l.status_id = 2 then l.amount_cents end), 0),
+       count(case when l.status_id = 3 then 1 end),
+       coalesce(sum(case when l.status_id in (1, 2) then
+           case when l.term > 0 then l.amount_cents / l.term else l.amount_cents end end), 0)
+from user_profile u
+left join loan l on l.user_id = u.user_id
+group by u.user_id;
@@ -0,0 +1,15 @@
+-- Responses of completed idempotent POSTs (Idempotency-Key header), only written when
+-- lms.idempotency.persistent is on so that retries are answered across restarts and instances
+
+create table idempotency_record (
+    idempotency_key varchar(400) not null,
+    fingerprint varchar(64) not null,
+    status integer not null,
+    content_type varchar(255),
+    location varchar(255),
+    body bytea,
+    expires_at timestamp(6) with time zone not null,
+    primary key (idempotency_key)
+);
+
+create index idx_idempotency_record_expires on idempotency_record (expires_at);
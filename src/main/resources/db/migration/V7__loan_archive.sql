@@ -0,0 +1,22 @@
+-- When a loan last changed status. Loans that have been Rejected for a while move to the archive.
+alter table loan add column status_updated_at timestamp(6) with time zone default current_timestamp not null;
+update loan set status_updated_at = updated_at;
+create index idx_loan_status_updated on loan (status_id, status_updated_at);
+
+-- Cold tier for closed loans. Rows are immutable copies of the loan at archival time and are only
+-- read by lookups that ask for history. They go with the user, like the loans themselves.
+create table loan_archive (
+    loan_id bigint not null,
+    amount_cents bigint not null,
+    term integer not null,
+    user_id bigint not null,
+    type_id bigint not null,
+    status_id bigint not null,
+    created_at timestamp(6) with time zone not null,
+    status_updated_at timestamp(6) with time zone not null,
+    archived_at timestamp(6) with time zone not null,
+    primary key (loan_id),
+    constraint fk_loan_archive_user foreign key (user_id) references user_profile (user_id) on delete cascade
+);
+
+create index idx_loan_archive_user on loan_archive (user_id);
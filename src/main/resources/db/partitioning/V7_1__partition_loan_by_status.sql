@@ -0,0 +1,52 @@
+-- Optional, PostgreSQL only. Enabled by the "partitioned" profile, see application-partitioned.properties.
+-- Rebuilds loan as a LIST-partitioned table on status_id so Pending and Approved loans live in
+-- small hot partitions and Rejected loans do not bloat the indexes used by the hot queries.
+-- Postgres requires the partition key in the primary key, so it becomes (loan_id, status_id);
+-- loan_id stays unique because it is drawn from a single sequence.
+-- The rebuilt table is loan as of V7, with every column, index and foreign key. The version sorts after
+-- the last migration that changes loan, so it runs in order on a fresh database and on one already at V7.
+-- A later migration that changes loan runs against the partitioned table, SchemaMigrationTest checks
+-- that no migration that changes loan sorts after this one.
+
+create sequence loan_partitioned_loan_id_seq;
+
+create table loan_partitioned (
+    loan_id bigint not null default nextval('loan_partitioned_loan_id_seq'),
+    term integer not null,
+    user_id bigint not null,
+    type_id bigint not null,
+    status_id bigint not null,
+    created_at timestamp(6) with time zone default current_timestamp not null,
+    version bigint default 0 not null,
+    updated_at timestamp(6) with time zone default current_timestamp not null,
+    amount_cents bigint not null,
+    status_updated_at timestamp(6) with time zone default current_timestamp not null,
+    primary key (loan_id, status_id)
+) partition by list (status_id);
+
+create table loan_pending partition of loan_partitioned for values in (1);
+create table loan_approved partition of loan_partitioned for values in (2);
+create table loan_rejected partition of loan_partitioned for values in (3);
+create table loan_other partition of loan_partitioned default;
+
+insert into loan_partitioned (loan_id, term, user_id, type_id, status_id, created_at, version, updated_at,
+                              amount_cents, status_updated_at)
+select loan_id, term, user_id, type_id, status_id, created_at, version, updated_at, amount_cents, status_updated_at
+from loan;
+
+select setval('loan_partitioned_loan_id_seq', coalesce((select max(loan_id) from loan), 0) + 1, false);
+
+drop table loan;
+alter table loan_partitioned rename to loan;
+alter table loan rename constraint loan_partitioned_pkey to loan_pkey;
+alter sequence loan_partitioned_loan_id_seq rename to loan_loan_id_seq;
+alter sequence loan_loan_id_seq owned by loan.loan_id;
+
+alter table loan add constraint FKblnfcfucgwdtnbq50ep7dyw2u foreign key (user_id) references user_profile;
+alter table loan add constraint FK27xjexubv65i2hp754pig0pfj foreign key (type_id) references loan_type;
+alter table loan add constraint FK6c36qbxpvk83qdle5mcbk0hrj foreign key (status_id) references loan_status;
+
+create index idx_loan_user_status on loan (user_id, status_id);
+create index idx_loan_status_created on loan (status_id, created_at);
+create index idx_loan_type on loan (type_id);
+create index idx_loan_status_updated on loan (status_id, status_updated_at);
@@ -0,0 +1,126 @@
+package com.mayhem.lms;
+
+import com.mayhem.lms.config.ContextPropagatingTaskDecorator;
+import com.mayhem.lms.config.ReplicaRoutingContext;
+import com.mayhem.lms.web.AsyncWorkload;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncWorkloadTest {
+
+    private ThreadPoolTaskExecutor executor;
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+        MDC.clear();
+        RequestContextHolder.resetRequestAttributes();
+        ReplicaRoutingContext.clear();
+    }
+
+    @Test
+    public void testRequestContextIsPropagatedAndNotLeaked() throws Exception {
+        AsyncWorkload workload = new AsyncWorkload("test", executor(1, 10), 1000);
+        MDC.put("correlationId", "abc");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", "/api/loans")));
+        ReplicaRoutingContext.forcePrimary();
+
+        ResponseEntity<?> response = workload.submit(() -> ResponseEntity.ok(MDC.get("correlationId") + " "
+                + ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getRequest().getRequestURI() + " "
+                + ReplicaRoutingContext.isPrimaryForced())).get(5, TimeUnit.SECONDS);
+
+        assertEquals("abc /api/loans true", response.getBody());
+        MDC.clear();
+        RequestContextHolder.resetRequestAttributes();
+        ReplicaRoutingContext.clear();
+        ResponseEntity<?> next = workload.submit(() -> ResponseEntity.ok(MDC.get("correlationId") + " "
+                + RequestContextHolder.getRequestAttributes() + " " + ReplicaRoutingContext.isPrimaryForced())).get(5, TimeUnit.SECONDS);
+        assertEquals("null null false", next.getBody(), "The pooled thread must not keep the previous request's context");
+    }
+
+    @Test
+    public void testTimeoutAndSaturationAnswer503() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncWorkload workload = new AsyncWorkload("test", executor(1, 1), 100);
+
+        var slow = workload.submit(() -> {
+            await(release);
+            return ResponseEntity.ok("late");
+        });
+        var queued = workload.submit(() -> ResponseEntity.ok("queued"));
+        var rejected = workload.submit(() -> ResponseEntity.ok("rejected"));
+
+        assertEquals(503, rejected.get(1, TimeUnit.SECONDS).getStatusCode().value());
+        assertEquals("1", rejected.get().getHeaders().getFirst("Retry-After"));
+        assertEquals(503, queued.get(5, TimeUnit.SECONDS).getStatusCode().value(), "Time spent queued counts against the timeout");
+        assertEquals(503, slow.get(5, TimeUnit.SECONDS).getStatusCode().value());
+        release.countDown();
+    }
+
+    @Test
+    public void testWorkFinishingAfterTimeoutIsNotSeenByLaterStages() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AsyncWorkload workload = new AsyncWorkload("test", executor(1, 1), 100);
+        List<Object> applied = new CopyOnWriteArrayList<>();
+
+        var response = workload.submit(() -> {
+            await(release);
+            finished.countDown();
+            return ResponseEntity.ok("late");
+        }).thenApply(r -> {
+            applied.add(r.getBody());
+            return r;
+        });
+
+        assertEquals(503, response.get(5, TimeUnit.SECONDS).getStatusCode().value());
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS);
+        assertEquals(List.of("Request timed out, retry later"), applied, "The late response must not reach the completion stage");
+    }
+
+    @Test
+    public void testFailuresAreNotTurnedInto503() {
+        AsyncWorkload workload = new AsyncWorkload("test", executor(1, 10), 1000);
+
+        var failed = workload.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        Exception e = assertThrows(Exception.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    private ThreadPoolTaskExecutor executor(int threads, int queueCapacity) {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.initialize();
+        return executor;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
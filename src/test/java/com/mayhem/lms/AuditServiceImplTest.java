@@ -0,0 +1,161 @@
+package com.mayhem.lms;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayhem.lms.constants.AuditAction;
+import com.mayhem.lms.constants.AuditEntityType;
+import com.mayhem.lms.dto.GetLoanDto;
+import com.mayhem.lms.model.Money;
+import com.mayhem.lms.repository.AuditRecordRepository;
+import com.mayhem.lms.service.AuditServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AuditServiceImplTest {
+
+    @Mock
+    private AuditRecordRepository auditRecordRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AuditServiceImpl auditServiceImpl;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        auditServiceImpl = new AuditServiceImpl(auditRecordRepository, jdbcTemplate, new ObjectMapper(), meterRegistry, 4, 2, 3, 4);
+    }
+
+    @Test
+    public void testRecordIsBufferedUntilFlush() {
+        auditServiceImpl.record(AuditEntityType.LOAN, 1L, AuditAction.CREATE, 1L, null,
+                new GetLoanDto(1L, Money.ofCents(100_000), 12, "Personal", "Pending", "John Smith"));
+
+        verifyNoInteractions(jdbcTemplate);
+
+        assertEquals(1, auditServiceImpl.flush());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList(), eq(1), any());
+    }
+
+    @Test
+    public void testFlushWritesInBatches() {
+        for (long i = 1; i <= 3; i++) {
+            auditServiceImpl.record(AuditEntityType.USER, i, AuditAction.UPDATE, i, null, null);
+        }
+
+        assertEquals(3, auditServiceImpl.flush());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList(), eq(2), any());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList(), eq(1), any());
+        assertEquals(0, auditServiceImpl.flush());
+    }
+
+    @Test
+    public void testRecordInTransactionIsQueuedOnCommitOnly() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            auditServiceImpl.record(AuditEntityType.USER, 1L, AuditAction.UPDATE, 1L, null, null);
+            auditServiceImpl.record(AuditEntityType.USER, 2L, AuditAction.UPDATE, 2L, null, null);
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+
+            assertEquals(0, auditServiceImpl.flush(), "Nothing is queued before the commit");
+            synchronizations.get(0).afterCommit();
+            synchronizations.get(1).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, auditServiceImpl.flush());
+    }
+
+    @Test
+    public void testRedactWritesQueuedRecordsFirst() {
+        auditServiceImpl.record(AuditEntityType.USER, 1L, AuditAction.UPDATE, 1L, null, null);
+
+        auditServiceImpl.redact(AuditEntityType.USER, List.of(1L, 2L));
+
+        var order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).batchUpdate(startsWith("INSERT"), anyList(), eq(1), any());
+        order.verify(jdbcTemplate).batchUpdate(startsWith("UPDATE"), eq(List.of(1L, 2L)), eq(2), any());
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedOnNextFlush() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(new int[][]{{1, 1}});
+        auditServiceImpl.record(AuditEntityType.USER, 1L, AuditAction.UPDATE, 1L, null, null);
+        auditServiceImpl.record(AuditEntityType.USER, 2L, AuditAction.UPDATE, 2L, null, null);
+
+        assertEquals(0, auditServiceImpl.flush());
+        assertEquals(2, meterRegistry.get("lms.audit.records.retained").gauge().value());
+        assertEquals(2, auditServiceImpl.flush());
+        assertEquals(0, meterRegistry.get("lms.audit.records.retained").gauge().value());
+        assertEquals(1, meterRegistry.get("lms.audit.write.failures").counter().count());
+        assertEquals(0, meterRegistry.get("lms.audit.records.dropped").counter().count());
+    }
+
+    @Test
+    public void testRecordsAreDroppedAndCountedAfterMaxAttempts() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        auditServiceImpl.record(AuditEntityType.USER, 1L, AuditAction.UPDATE, 1L, null, null);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, auditServiceImpl.flush());
+        }
+        assertEquals(1, meterRegistry.get("lms.audit.records.dropped").counter().count(), "Dropped after 3 failed writes");
+        assertEquals(0, meterRegistry.get("lms.audit.records.retained").gauge().value());
+    }
+
+    @Test
+    public void testOldestRecordsAreDroppedPastMaxRetainedRecords() {
+        meterRegistry = new SimpleMeterRegistry();
+        auditServiceImpl = new AuditServiceImpl(auditRecordRepository, jdbcTemplate, new ObjectMapper(), meterRegistry, 8, 4, 100, 3);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        for (long i = 1; i <= 5; i++) {
+            auditServiceImpl.record(AuditEntityType.USER, i, AuditAction.UPDATE, i, null, null);
+        }
+
+        auditServiceImpl.flush();
+
+        assertEquals(0, meterRegistry.get("lms.audit.records.retained").gauge().value());
+        assertEquals(4, meterRegistry.get("lms.audit.records.dropped").counter().count(), "The failed batch goes past 3 records");
+    }
+
+    @Test
+    public void testFullBufferDropsRecordsWithoutWritingOnCallerThread() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(new int[][]{{1, 1}});
+        for (long i = 1; i <= 4; i++) {
+            auditServiceImpl.record(AuditEntityType.LOAN, i, AuditAction.DELETE, 1L, null, null);
+        }
+        assertEquals(0, auditServiceImpl.flush());
+
+        // the database is down and the buffer refills, the request thread neither writes nor waits for a flush
+        for (long i = 5; i <= 7; i++) {
+            auditServiceImpl.record(AuditEntityType.LOAN, i, AuditAction.DELETE, 1L, null, null);
+        }
+
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList(), anyInt(), any());
+        assertEquals(1, meterRegistry.get("lms.audit.records.dropped").counter().count());
+        assertEquals(6, auditServiceImpl.flush(), "The retained batch and the buffer are written by the next flush");
+    }
+}
@@ -0,0 +1,103 @@
+package com.mayhem.lms;
+
+import com.mayhem.lms.util.AdaptiveLimit;
+import com.mayhem.lms.web.ConcurrencyLimitFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimitFilterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private ConcurrencyLimitFilter concurrencyLimitFilter;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("lms.concurrency-limit.loan-read-bulk.initial", "1")
+                .withProperty("lms.concurrency-limit.loan-read-bulk.min", "1");
+        meterRegistry = new SimpleMeterRegistry();
+        concurrencyLimitFilter = new ConcurrencyLimitFilter(environment, meterRegistry);
+    }
+
+    @Test
+    public void testGroupAtItsLimitShedsWhileOtherEndpointsStayAvailable() throws Exception {
+        MockHttpServletRequest listing = new MockHttpServletRequest("GET", "/api/loans");
+        listing.setAsyncSupported(true);
+        FilterChain startAsync = (request, response) -> request.startAsync();
+        send(listing, startAsync);
+
+        MockHttpServletResponse shed = send(new MockHttpServletRequest("GET", "/api/users"), new MockFilterChain());
+
+        assertEquals(503, shed.getStatus());
+        assertEquals("1", shed.getHeader("Retry-After"));
+        assertEquals(1.0, meterRegistry.get("lms.concurrency.shed").tag("group", "loan-read-bulk").counter().count());
+        assertEquals(200, send(new MockHttpServletRequest("GET", "/api/loans/7"), new MockFilterChain()).getStatus());
+        assertEquals(200, send(new MockHttpServletRequest("GET", "/api/loan-types"), new MockFilterChain()).getStatus());
+        assertEquals(200, send(new MockHttpServletRequest("GET", "/api/auth/session-check"), new MockFilterChain()).getStatus());
+
+        ((MockAsyncContext) listing.getAsyncContext()).complete();
+        assertEquals(200, send(new MockHttpServletRequest("GET", "/api/users"), new MockFilterChain()).getStatus(),
+                "The async listing released its slot when it completed");
+    }
+
+    @Test
+    public void testServerErrorsShrinkTheLimit() throws Exception {
+        int before = concurrencyLimitFilter.currentLimit("lookup");
+        FilterChain failing = (request, response) -> ((HttpServletResponse) response).setStatus(500);
+
+        send(new MockHttpServletRequest("GET", "/api/users/1"), failing);
+
+        assertTrue(concurrencyLimitFilter.currentLimit("lookup") < before);
+        assertEquals(20, concurrencyLimitFilter.currentLimit("loan-write"), "Other groups are not affected");
+    }
+
+    @Test
+    public void testLimitGrowsWhenUsedAndBacksOffOncePerRoundTripOnSlowCalls() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 2, 20, 2.0, 0.5, 5 * MS, 100);
+        long now = 0;
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < limit.getLimit(); j++) {
+                assertTrue(limit.tryAcquire());
+            }
+            int admitted = limit.getLimit();
+            for (int j = 0; j < admitted; j++) {
+                limit.release(now, now + 10 * MS, false);
+            }
+            now += 10 * MS;
+        }
+        assertEquals(20, limit.getLimit(), "Healthy latency under full use grows the limit to its maximum");
+
+        for (int j = 0; j < 20; j++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+        for (int j = 0; j < 20; j++) {
+            limit.release(now, now + 100 * MS, false);
+        }
+        assertEquals(10, limit.getLimit(), "A burst of slow completions backs off once");
+        now += 200 * MS;
+        limit.tryAcquire();
+        limit.release(now, now + 100 * MS, false);
+        assertEquals(5, limit.getLimit());
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        concurrencyLimitFilter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,110 @@
+package com.mayhem.lms;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.mayhem.lms.dto.GetLoanTypesDto;
+import com.mayhem.lms.web.ConditionalGetSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionalGetSupportTest {
+
+    private ConditionalGetSupport conditionalGetSupport;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setUp() {
+        conditionalGetSupport = new ConditionalGetSupport(List.of(
+                new MappingJackson2CborHttpMessageConverter(new CBORMapper()),
+                new MappingJackson2HttpMessageConverter(new ObjectMapper())), 100, 60000);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void testFirstRequestRendersBodyWithEtag() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ResponseEntity<byte[]> entity = conditionalGetSupport.respond(get(null, response), "\"loan1-0-0\"",
+                Instant.parse("2025-01-01T00:00:00Z"), this::loadBody);
+
+        assertNotNull(entity);
+        assertEquals(200, entity.getStatusCode().value());
+        assertEquals("\"loan1-0-0\"", entity.getHeaders().getETag());
+        assertEquals("{\"id\":1,\"type\":\"Personal\"}", new String(entity.getBody()));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testMatchingIfNoneMatchSkipsLoading() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ResponseEntity<byte[]> entity = conditionalGetSupport.respond(get("\"loan1-0-0\"", response), "\"loan1-0-0\"",
+                Instant.now(), this::loadBody);
+
+        assertNull(entity);
+        assertEquals(304, response.getStatus());
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void testRenderedBodyIsCachedByEtag() {
+        conditionalGetSupport.respond(get(null, new MockHttpServletResponse()), "\"loan1-0-0\"", Instant.now(), this::loadBody);
+        conditionalGetSupport.respond(get(null, new MockHttpServletResponse()), "\"loan1-0-0\"", Instant.now(), this::loadBody);
+        conditionalGetSupport.respond(get(null, new MockHttpServletResponse()), "\"loan1-1-0\"", Instant.now(), this::loadBody);
+
+        assertEquals(2, loads.get(), "A new version must be rendered again, the same version only once");
+    }
+
+    @Test
+    public void testContentHashEtagIsStable() {
+        ResponseEntity<byte[]> first = conditionalGetSupport.respondWithContentHash(get(null, new MockHttpServletResponse()),
+                "loan-types", () -> List.of(new GetLoanTypesDto(1L, "Personal")));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ResponseEntity<byte[]> second = conditionalGetSupport.respondWithContentHash(get(first.getHeaders().getETag(), response),
+                "loan-types", () -> List.of(new GetLoanTypesDto(1L, "Personal")));
+
+        assertNull(second);
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    public void testCborRepresentationHasOwnEtagAndCacheEntry() throws Exception {
+        MockHttpServletResponse jsonResponse = new MockHttpServletResponse();
+        ResponseEntity<byte[]> json = conditionalGetSupport.respond(get(null, jsonResponse), "\"loan1-0-0\"", Instant.now(), this::loadBody);
+        MockHttpServletResponse cborResponse = new MockHttpServletResponse();
+        ServletWebRequest cborRequest = get(null, cborResponse);
+        ((MockHttpServletRequest) cborRequest.getRequest()).addHeader("Accept", "application/cbor, application/json;q=0.5");
+        ResponseEntity<byte[]> cbor = conditionalGetSupport.respond(cborRequest, "\"loan1-0-0\"", Instant.now(), this::loadBody);
+
+        assertEquals(MediaType.APPLICATION_JSON, json.getHeaders().getContentType());
+        assertEquals(MediaType.APPLICATION_CBOR, cbor.getHeaders().getContentType());
+        assertEquals("\"loan1-0-0-cbor\"", cbor.getHeaders().getETag());
+        assertEquals("Accept", cborResponse.getHeader("Vary"));
+        assertEquals(new CBORMapper().readTree(cbor.getBody()), new ObjectMapper().readTree(json.getBody()));
+        assertEquals(2, loads.get(), "Each representation is rendered and cached separately");
+    }
+
+    private Object loadBody() {
+        loads.incrementAndGet();
+        return new GetLoanTypesDto(1L, "Personal");
+    }
+
+    private static ServletWebRequest get(String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/loans/1");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, response);
+    }
+}
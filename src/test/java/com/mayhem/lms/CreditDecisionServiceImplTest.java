@@ -0,0 +1,125 @@
+package com.mayhem.lms;
+
+import com.mayhem.lms.constants.CreditOutcome;
+import com.mayhem.lms.dto.CreateLoanDto;
+import com.mayhem.lms.dto.CreditDecisionDto;
+import com.mayhem.lms.model.LoanType;
+import com.mayhem.lms.model.Money;
+import com.mayhem.lms.model.UserExposure;
+import com.mayhem.lms.repository.LoanTypeRepository;
+import com.mayhem.lms.repository.UserExposureRepository;
+import com.mayhem.lms.service.CreditDecisionServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CreditDecisionServiceImplTest {
+
+    @Mock
+    private UserExposureRepository userExposureRepository;
+
+    @Mock
+    private LoanTypeRepository loanTypeRepository;
+
+    private MockEnvironment environment;
+    private CreditDecisionServiceImpl creditDecisionService;
+
+    @BeforeEach
+    public void setUp() {
+        environment = new MockEnvironment()
+                .withProperty("lms.credit.max-exposure", "100000.00")
+                .withProperty("lms.credit.reference-monthly-income", "5000.00")
+                .withProperty("lms.credit.max-debt-to-income", "0.40")
+                .withProperty("lms.credit.auto-approve-below", "60")
+                .withProperty("lms.credit.auto-reject", "true")
+                .withProperty("lms.credit.types.Personal.max-amount", "50000.00")
+                .withProperty("lms.credit.types.Personal.min-term", "6")
+                .withProperty("lms.credit.types.Personal.max-term", "84");
+        creditDecisionService = new CreditDecisionServiceImpl(userExposureRepository, loanTypeRepository, environment, true);
+        lenient().when(loanTypeRepository.findAll()).thenReturn(List.of(
+                new LoanType(1L, "Personal", new ArrayList<>()),
+                new LoanType(2L, "Mortgage", new ArrayList<>())));
+    }
+
+    @Test
+    public void testSmallLoanIsApproved() {
+        when(userExposureRepository.findForUpdate(1L)).thenReturn(exposure(0, 0, 0));
+
+        CreditDecisionDto decision = creditDecisionService.decide(application("10000.00", 24, 1L));
+
+        assertEquals(CreditOutcome.APPROVE, decision.outcome());
+        assertEquals(20, decision.riskScore(), "Highest utilisation: 10000 of the 50000 type limit");
+    }
+
+    @Test
+    public void testLoanCloseToExposureLimitStaysPending() {
+        when(userExposureRepository.findForUpdate(1L)).thenReturn(exposure(2, 6_000_000, 50_000));
+
+        CreditDecisionDto decision = creditDecisionService.decide(application("10000.00", 60, 1L));
+
+        assertEquals(CreditOutcome.REVIEW, decision.outcome());
+        assertEquals(70, decision.riskScore());
+    }
+
+    @Test
+    public void testHardLimitsReject() {
+        when(userExposureRepository.findForUpdate(1L)).thenReturn(exposure(0, 0, 0));
+
+        assertEquals(CreditOutcome.REJECT, creditDecisionService.decide(application("50000.01", 24, 1L)).outcome());
+        assertEquals(CreditOutcome.REJECT, creditDecisionService.decide(application("1000.00", 3, 1L)).outcome());
+        assertEquals("Debt-to-income above the limit",
+                creditDecisionService.decide(application("20000.00", 6, 1L)).reason(), "3333.33 a month is above 40% of 5000");
+        verify(loanTypeRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void testExposureAboveLimitRejects() {
+        when(userExposureRepository.findForUpdate(1L)).thenReturn(exposure(5, 9_500_000, 100_000));
+
+        CreditDecisionDto decision = creditDecisionService.decide(application("6000.00", 60, 1L));
+
+        assertEquals(CreditOutcome.REJECT, decision.outcome());
+        assertEquals("Total exposure above the limit", decision.reason());
+    }
+
+    @Test
+    public void testUnconfiguredTypeOrDisabledEngineLeavesLoanPending() {
+        when(userExposureRepository.findForUpdate(1L)).thenReturn(exposure(0, 0, 0));
+
+        assertEquals(CreditOutcome.REVIEW, creditDecisionService.decide(application("1000.00", 120, 2L)).outcome());
+        CreditDecisionServiceImpl disabled = new CreditDecisionServiceImpl(userExposureRepository, loanTypeRepository, environment, false);
+        assertEquals(CreditOutcome.REVIEW, disabled.decide(application("1000.00", 24, 1L)).outcome());
+        verify(userExposureRepository, times(1)).findForUpdate(1L);
+    }
+
+    @Test
+    public void testHardLimitBreachStaysPendingUnlessAutoRejectIsSet() {
+        when(userExposureRepository.findForUpdate(1L)).thenReturn(exposure(0, 0, 0));
+        environment.setProperty("lms.credit.auto-reject", "false");
+        CreditDecisionServiceImpl reviewOnly = new CreditDecisionServiceImpl(userExposureRepository, loanTypeRepository, environment, true);
+
+        CreditDecisionDto decision = reviewOnly.decide(application("50000.01", 24, 1L));
+
+        assertEquals(CreditOutcome.REVIEW, decision.outcome());
+        assertEquals(101, decision.riskScore());
+    }
+
+    private static CreateLoanDto application(String amount, int term, Long type) {
+        return new CreateLoanDto(null, Money.parse(amount), term, 1L, type);
+    }
+
+    private static Optional<UserExposure> exposure(long openLoans, long openAmountCents, long monthlyInstallmentCents) {
+        return Optional.of(new UserExposure(1L, 0, 0, openLoans, openAmountCents, 0, monthlyInstallmentCents));
+    }
+}
@@ -0,0 +1,64 @@
+package com.mayhem.lms;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.mayhem.lms.dto.GetLoanDto;
+import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.model.Money;
+import com.mayhem.lms.web.DtoJsonSerializers;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DtoJsonSerializersTest {
+
+    private final ObjectMapper defaultMapper = new ObjectMapper();
+    private final ObjectMapper streamingMapper = streamingMapper(new JsonFactory());
+
+    @Test
+    public void testLoanOutputMatchesDefaultSerialisation() throws Exception {
+        List<GetLoanDto> loans = List.of(
+                new GetLoanDto(1L, Money.parse("1250.5"), 12, "Personal", "Pending", "John \"Jr\" Smith"),
+                new GetLoanDto(2L, "Approved"));
+
+        String json = streamingMapper.writeValueAsString(loans);
+
+        assertEquals(defaultMapper.writeValueAsString(loans), json);
+        assertEquals("{\"id\":2,\"amount\":null,\"term\":null,\"type\":null,\"status\":\"Approved\",\"clientName\":null}",
+                streamingMapper.writeValueAsString(loans.get(1)));
+    }
+
+    @Test
+    public void testUserOutputMatchesDefaultSerialisation() throws Exception {
+        List<GetUserDto> users = List.of(
+                new GetUserDto(1L, "manu@example.com", "Manu", "Rios", null, "Manager"),
+                new GetUserDto("jane@example.com", "Jane", "Doe", "555-0101", "Customer"));
+
+        assertEquals(defaultMapper.writeValueAsString(users), streamingMapper.writeValueAsString(users));
+    }
+
+    @Test
+    public void testBinaryFormatsRoundTripAmountsExactly() throws Exception {
+        List<GetLoanDto> loans = List.of(
+                new GetLoanDto(1L, Money.parse("1250.5"), 12, "Personal", "Pending", "John Smith"),
+                new GetLoanDto(2L, Money.parse("0.07"), 36, "Auto", "Approved", "Jane Doe"));
+
+        for (ObjectMapper binary : List.of(streamingMapper(new CBORFactory()), streamingMapper(new SmileFactory()))) {
+            byte[] encoded = binary.writeValueAsBytes(loans);
+
+            assertEquals(loans, binary.readValue(encoded, new TypeReference<List<GetLoanDto>>() { }));
+        }
+    }
+
+    private static ObjectMapper streamingMapper(JsonFactory factory) {
+        return new ObjectMapper(factory).registerModule(new SimpleModule()
+                .addSerializer(new DtoJsonSerializers.GetLoanDtoSerializer())
+                .addSerializer(new DtoJsonSerializers.GetUserDtoSerializer()));
+    }
+}
@@ -0,0 +1,227 @@
+package com.mayhem.lms;
+
+import com.mayhem.lms.repository.IdempotencyRecordRepository;
+import com.mayhem.lms.web.IdempotencyFilter;
+import com.mayhem.lms.web.IdempotencyStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyFilterTest {
+
+    @Mock
+    private IdempotencyRecordRepository recordRepository;
+
+    private IdempotencyFilter idempotencyFilter;
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyFilter = new IdempotencyFilter(new IdempotencyStore(recordRepository, 100, 60_000, false), meterRegistry, 2_000);
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    public void testRetryReplaysOriginalResponseWithoutRunningAgain() throws Exception {
+        FilterChain controller = createLoan(null);
+
+        MockHttpServletResponse first = send(post("k1", "{\"amount\":100}"), controller);
+        MockHttpServletResponse retry = send(post("k1", "{\"amount\":100}"), controller);
+
+        assertEquals(1, executions.get());
+        assertEquals(201, retry.getStatus());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED));
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED));
+        verifyNoInteractions(recordRepository);
+    }
+
+    @Test
+    public void testSameKeyWithDifferentBodyIsRefused() throws Exception {
+        FilterChain controller = createLoan(null);
+        send(post("k1", "{\"amount\":100}"), controller);
+
+        MockHttpServletResponse reused = send(post("k1", "{\"amount\":999}"), controller);
+
+        assertEquals(422, reused.getStatus());
+        assertEquals(1, executions.get());
+        assertEquals(201, send(post("k2", "{\"amount\":999}"), controller).getStatus(), "A new key runs the request");
+    }
+
+    @Test
+    public void testAnonymousKeysAreScopedToTheClient() throws Exception {
+        FilterChain controller = createLoan(null);
+        MockHttpServletRequest first = post("k1", "{\"email\":\"a@example.com\"}");
+        first.setRequestURI("/api/auth/register");
+        first.setRemoteAddr("10.0.0.1");
+        MockHttpServletRequest other = post("k1", "{\"email\":\"b@example.com\"}");
+        other.setRequestURI("/api/auth/register");
+        other.setRemoteAddr("10.0.0.2");
+
+        send(first, controller);
+        MockHttpServletResponse otherResponse = send(other, controller);
+
+        assertEquals(201, otherResponse.getStatus(), "Another client's key must neither replay nor refuse the request");
+        assertNull(otherResponse.getHeader(IdempotencyFilter.REPLAYED));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testConcurrentDuplicatesShareOneExecution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain controller = createLoan(release);
+
+        CompletableFuture<MockHttpServletResponse> original = CompletableFuture.supplyAsync(() -> sendUnchecked(post("k1", "{}"), controller));
+        while (executions.get() == 0) {
+            Thread.onSpinWait();
+        }
+        CompletableFuture<MockHttpServletResponse> duplicate = CompletableFuture.supplyAsync(() -> sendUnchecked(post("k1", "{}"), controller));
+        while (meterRegistry.get("lms.idempotency.requests").tag("outcome", "coalesced").counter().count() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertEquals(201, original.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(original.get().getContentAsString(), duplicate.get(5, TimeUnit.SECONDS).getContentAsString());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void testServerErrorsAreNotStored() throws Exception {
+        FilterChain failing = (request, response) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(503);
+        };
+
+        send(post("k1", "{}"), failing);
+        send(post("k1", "{}"), failing);
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testRequestsWithoutKeyOrOnOtherRoutesPassThrough() throws Exception {
+        FilterChain controller = createLoan(null);
+        MockHttpServletRequest noKey = post(null, "{}");
+        MockHttpServletRequest login = post("k1", "{}");
+        login.setRequestURI("/api/auth/login");
+
+        send(noKey, controller);
+        send(post(null, "{}"), controller);
+        send(login, controller);
+        send(login, controller);
+
+        assertEquals(4, executions.get());
+    }
+
+    @Test
+    public void testBufferedBodyCanBeReadWithAReadListener() throws Exception {
+        List<String> callbacks = new ArrayList<>();
+        FilterChain nonBlocking = (request, response) -> {
+            assertThrows(IllegalStateException.class, () -> request.getInputStream().setReadListener(mock(ReadListener.class)),
+                    "Non-blocking reads need async processing");
+            request.startAsync();
+            ServletInputStream input = request.getInputStream();
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            input.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    callbacks.add("data");
+                    byte[] chunk = new byte[4];
+                    while (input.isReady() && !input.isFinished()) {
+                        read.write(chunk, 0, input.read(chunk));
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() throws IOException {
+                    callbacks.add("done");
+                    response.getWriter().write(read.toString(StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    callbacks.add("error");
+                }
+            });
+            assertThrows(IllegalStateException.class, () -> input.setReadListener(mock(ReadListener.class)));
+        };
+        MockHttpServletRequest request = post("k1", "{\"amount\":100}");
+        request.setAsyncSupported(true);
+
+        MockHttpServletResponse response = send(request, nonBlocking);
+
+        assertEquals(List.of("data", "done"), callbacks);
+        assertEquals("{\"amount\":100}", response.getContentAsString());
+    }
+
+    /** Stands in for the controller, echoes the body it reads so replays can be compared */
+    private FilterChain createLoan(CountDownLatch release) {
+        return (request, response) -> {
+            int id = executions.incrementAndGet();
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            String body = StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8);
+            HttpServletResponse http = (HttpServletResponse) response;
+            http.setStatus(201);
+            http.setContentType("application/json");
+            http.getWriter().write("{\"id\":" + id + ",\"request\":" + body + "}");
+        };
+    }
+
+    private static MockHttpServletRequest post(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/loans");
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY, key);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        idempotencyFilter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private MockHttpServletResponse sendUnchecked(MockHttpServletRequest request, FilterChain chain) {
+        try {
+            return send(request, chain);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.mayhem.lms;
+
+import com.mayhem.lms.config.LazyInitializationConfig;
+import com.mayhem.lms.controller.LoanController;
+import com.mayhem.lms.service.AuditServiceImpl;
+import com.mayhem.lms.service.LoanArchiveServiceImpl;
+import com.mayhem.lms.service.LoanServiceImpl;
+import com.mayhem.lms.web.IdempotencyStore;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazyInitializationConfigTest {
+
+    private final LazyInitializationExcludeFilter filter = LazyInitializationConfig.eagerInfrastructureAndScheduledBeans();
+
+    @Test
+    public void testInfrastructureAndScheduledBeansStayEager() {
+        assertTrue(filter.isExcluded("dataSource", null, HikariDataSource.class));
+        assertTrue(filter.isExcluded("entityManagerFactory", null, LocalContainerEntityManagerFactoryBean.class));
+        assertTrue(filter.isExcluded("auditServiceImpl", null, AuditServiceImpl.class));
+        assertTrue(filter.isExcluded("loanArchiveServiceImpl", null, LoanArchiveServiceImpl.class));
+        assertTrue(filter.isExcluded("idempotencyStore", null, IdempotencyStore.class));
+    }
+
+    @Test
+    public void testControllersAndServicesAreLazy() {
+        assertFalse(filter.isExcluded("loanController", null, LoanController.class));
+        assertFalse(filter.isExcluded("loanServiceImpl", null, LoanServiceImpl.class));
+        assertFalse(filter.isExcluded("unknown", null, null));
+    }
+}
@@ -0,0 +1,78 @@
+package com.mayhem.lms;
+
+import com.mayhem.lms.repository.LoanArchiveRepository;
+import com.mayhem.lms.repository.LoanRepository;
+import com.mayhem.lms.repository.UserExposureRepository;
+import com.mayhem.lms.service.LoanArchiveServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LoanArchiveServiceImplTest {
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private LoanArchiveRepository loanArchiveRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private LoanArchiveServiceImpl loanArchiveService;
+
+    @BeforeEach
+    public void setUp() {
+        loanArchiveService = new LoanArchiveServiceImpl(loanRepository, loanArchiveRepository, transactionManager,
+                true, Duration.ofDays(90), 2);
+    }
+
+    @Test
+    public void testArchivesInChunksUntilAShortChunk() {
+        Instant cutoff = Instant.parse("2026-01-01T00:00:00Z");
+        when(loanRepository.lockIdsInStatusSince(eq(UserExposureRepository.REJECTED), eq(cutoff), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L)).thenReturn(List.of(3L));
+        when(loanArchiveRepository.copyFromLoans(any(), eq(UserExposureRepository.REJECTED), any())).thenReturn(2, 1);
+        when(loanRepository.deleteByIdsInStatus(any(), eq(UserExposureRepository.REJECTED))).thenReturn(2, 1);
+
+        assertEquals(3, loanArchiveService.archiveRejectedBefore(cutoff));
+
+        verify(loanArchiveRepository).copyFromLoans(eq(List.of(1L, 2L)), eq(UserExposureRepository.REJECTED), any());
+        verify(loanRepository).deleteByIdsInStatus(List.of(3L), UserExposureRepository.REJECTED);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    public void testChunkIsRolledBackWhenCopyAndDeleteDisagree() {
+        when(loanRepository.lockIdsInStatusSince(any(), any(), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(loanArchiveRepository.copyFromLoans(any(), any(), any())).thenReturn(2);
+        when(loanRepository.deleteByIdsInStatus(any(), any())).thenReturn(1);
+
+        assertThrows(IllegalStateException.class, () -> loanArchiveService.archiveRejectedBefore(Instant.now()));
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    public void testDisabledArchiveDoesNothing() {
+        LoanArchiveServiceImpl disabled = new LoanArchiveServiceImpl(loanRepository, loanArchiveRepository, transactionManager,
+                false, Duration.ofDays(90), 2);
+
+        assertEquals(0, disabled.archiveRejectedLoans());
+        verifyNoInteractions(loanRepository, loanArchiveRepository);
+    }
+}
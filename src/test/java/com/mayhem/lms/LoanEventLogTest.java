@@ -0,0 +1,122 @@
+package com.mayhem.lms;
+
+import com.mayhem.lms.constants.LoanEventKind;
+import com.mayhem.lms.util.LoanEventLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanEventLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReplaysEventsToAnyPointInTime() throws IOException {
+        try (LoanEventLog log = new LoanEventLog(directory, 16, 16)) {
+            Instant before = Instant.now().minusSeconds(1);
+            Instant created = log.append(event(LoanEventKind.CREATED, 1L, 100_000, 12, 1L, 1L, 7L));
+            Instant changed = log.append(event(LoanEventKind.TERMS_CHANGED, 1L, 250_000, 24, 2L, 1L, 7L));
+            Instant approved = log.append(event(LoanEventKind.STATUS_CHANGED, 1L, 250_000, 24, 2L, 2L, 9L));
+            Instant deleted = log.append(event(LoanEventKind.DELETED, 1L, 250_000, 24, 2L, 2L, 7L));
+
+            assertTrue(log.stateAt(1L, before).isEmpty(), "Not created yet");
+            assertEquals(new LoanEventLog.State(1L, 7L, 100_000, 12, 1L, 1L, LoanEventKind.CREATED, created, 7L),
+                    log.stateAt(1L, created).orElseThrow());
+            assertEquals(new LoanEventLog.State(1L, 7L, 250_000, 24, 2L, 1L, LoanEventKind.TERMS_CHANGED, changed, 7L),
+                    log.stateAt(1L, approved.minusNanos(1_000)).orElseThrow());
+            assertEquals(new LoanEventLog.State(1L, 7L, 250_000, 24, 2L, 2L, LoanEventKind.STATUS_CHANGED, approved, 9L),
+                    log.stateAt(1L, approved).orElseThrow());
+            assertTrue(log.stateAt(1L, deleted).isEmpty(), "Deleted by then");
+            assertTrue(log.stateAt(2L, deleted).isEmpty());
+        }
+    }
+
+    @Test
+    public void testSnapshotsAndSegmentsSurviveReopening() throws IOException {
+        List<Instant> times = new ArrayList<>();
+        try (LoanEventLog log = new LoanEventLog(directory, 4, 3)) {
+            times.add(log.append(event(LoanEventKind.CREATED, 1L, 1_000, 1, 1L, 1L, 7L)));
+            log.append(event(LoanEventKind.CREATED, 2L, 5_000, 6, 3L, 1L, 8L));
+            for (int term = 2; term <= 10; term++) {
+                times.add(log.append(event(LoanEventKind.TERMS_CHANGED, 1L, term * 1_000L, term, 1L, 1L, 7L)));
+                log.append(event(LoanEventKind.STATUS_CHANGED, 2L, 5_000, 6, 3L, term % 2 + 2, 9L));
+            }
+            assertEquals(20, log.size());
+        }
+
+        try (LoanEventLog reopened = new LoanEventLog(directory, 4, 3)) {
+            assertEquals(20, reopened.size());
+            for (int term = 1; term <= 10; term++) {
+                LoanEventLog.State state = reopened.stateAt(1L, times.get(term - 1)).orElseThrow();
+                assertEquals(term, state.term());
+                assertEquals(term * 1_000L, state.amountCents());
+            }
+            assertEquals(3L, reopened.stateAt(2L, times.get(9)).orElseThrow().statusId(), "Loan 2 changes right after loan 1");
+            Instant appended = reopened.append(event(LoanEventKind.STATUS_CHANGED, 1L, 10_000, 10, 1L, 3L, 9L));
+            assertTrue(appended.isAfter(times.get(9)));
+            assertEquals(3L, reopened.stateAt(1L, appended).orElseThrow().statusId());
+            assertEquals(10, reopened.stateAt(1L, appended).orElseThrow().term());
+        }
+    }
+
+    @Test
+    public void testErasedLoanHasNoStateAtAnyTime() throws IOException {
+        Instant created;
+        Instant deleted;
+        try (LoanEventLog log = new LoanEventLog(directory, 8, 4)) {
+            created = log.append(event(LoanEventKind.CREATED, 1L, 1_000, 12, 1L, 1L, 7L));
+            log.append(event(LoanEventKind.CREATED, 2L, 2_000, 6, 1L, 1L, 7L));
+            deleted = log.append(event(LoanEventKind.DELETED, 1L, 1_000, 12, 1L, 1L, 7L));
+            log.append(new LoanEventLog.Event(LoanEventKind.ERASED, 1L, 0, 0, 0, 0, 0, 0));
+
+            assertTrue(log.stateAt(1L, created).isEmpty(), "Erased loans have no past states");
+            assertTrue(log.stateAt(1L, deleted.minusNanos(1_000)).isEmpty());
+            assertEquals(2_000, log.stateAt(2L, deleted).orElseThrow().amountCents());
+        }
+
+        try (LoanEventLog reopened = new LoanEventLog(directory, 8, 4)) {
+            assertEquals(4, reopened.size());
+            assertTrue(reopened.stateAt(1L, created).isEmpty(), "The tombstone survives reopening");
+            assertTrue(reopened.stateAt(2L, created).isEmpty());
+            assertTrue(reopened.stateAt(2L, deleted).isPresent());
+        }
+    }
+
+    @Test
+    public void testTornRecordEndsTheLog() throws IOException {
+        try (LoanEventLog log = new LoanEventLog(directory, 8, 4)) {
+            log.append(event(LoanEventKind.CREATED, 1L, 1_000, 12, 1L, 1L, 7L));
+            log.append(event(LoanEventKind.TERMS_CHANGED, 1L, 2_000, 12, 1L, 1L, 7L));
+        }
+        try (RandomAccessFile segment = new RandomAccessFile(directory.resolve("loan-events-0000000000.seg").toFile(), "rw")) {
+            segment.seek(LoanEventLog.RECORD_SIZE + 32);
+            segment.writeLong(999_999);
+        }
+
+        try (LoanEventLog reopened = new LoanEventLog(directory, 8, 4)) {
+            assertEquals(1, reopened.size());
+            assertEquals(1_000, reopened.stateAt(1L, Instant.now()).orElseThrow().amountCents());
+        }
+    }
+
+    @Test
+    public void testDirectoryIsUsedByOneLogAtATime() throws IOException {
+        try (LoanEventLog log = new LoanEventLog(directory, 8, 4)) {
+            assertThrows(IllegalStateException.class, () -> new LoanEventLog(directory, 8, 4));
+        }
+    }
+
+    private static LoanEventLog.Event event(LoanEventKind kind, long loanId, long amountCents, int term, long typeId,
+                                            long statusId, long actorId) {
+        return new LoanEventLog.Event(kind, loanId, 7L, amountCents, term, typeId, statusId, actorId);
+    }
+}
@@ -2,25 +2,53 @@ package com.mayhem.lms;
 
 import com.mayhem.lms.dto.GetLoanDto;
 import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.dto.LoanStateDto;
+import com.mayhem.lms.dto.ResourceVersionDto;
 import com.mayhem.lms.model.*;
+import com.mayhem.lms.repository.LoanArchiveRepository;
 import com.mayhem.lms.repository.LoanRepository;
+import com.mayhem.lms.repository.LoanTypeRepository;
+import com.mayhem.lms.repository.UserExposureRepository;
 import com.mayhem.lms.repository.UserRepository;
+import com.mayhem.lms.service.AuditService;
+import com.mayhem.lms.service.RequestCoalescer;
+import com.mayhem.lms.service.CreditDecisionService;
+import com.mayhem.lms.service.LoanEventService;
 import com.mayhem.lms.service.LoanServiceImpl;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,6 +60,30 @@ public class LoanServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private LoanTypeRepository loanTypeRepository;
+
+    @Mock
+    private AuditService auditService;
+
+    @Mock
+    private CreditDecisionService creditDecisionService;
+
+    @Mock
+    private UserExposureRepository userExposureRepository;
+
+    @Mock
+    private LoanArchiveRepository loanArchiveRepository;
+
+    @Mock
+    private LoanEventService loanEventService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private RequestCoalescer requestCoalescer = new RequestCoalescer(new SimpleMeterRegistry());
+
     @InjectMocks
     private LoanServiceImpl loanServiceImpl;
 
@@ -48,7 +100,7 @@ public class LoanServiceImplTest {
         loanTest = new Loan();
 
         loanTest.setId(3L);
-        loanTest.setAmount(30000D);
+        loanTest.setAmount(Money.ofCents(3_000_000));
         loanTest.setTerm(3);
         loanTest.setLoanTypes(new LoanType());
         loanTest.setLoanStatus(new LoanStatus());
@@ -75,8 +127,7 @@ public class LoanServiceImplTest {
 
         userTest.setAccount(accountTest);
 
-        getUserDtoTest = new GetUserDto();
-        getUserDtoTest.setId(1L);
+        getUserDtoTest = new GetUserDto(1L, null, null, null, null, null);
     }
 
     @Test
@@ -88,7 +139,7 @@ public class LoanServiceImplTest {
 
         assertNotEquals(3, loans.size());
         assertEquals(1, loans.size());
-        assertEquals(3, loans.get(0).getId());
+        assertEquals(3, loans.get(0).id());
 
         verify(loanRepository, Mockito.times(1)).findAll();
     }
@@ -101,7 +152,86 @@ public class LoanServiceImplTest {
 
         GetLoanDto loanById = loanServiceImpl.getLoanById(1L, getUserDtoTest);
 
-        assertEquals(3, loanById.getId());
+        assertEquals(3, loanById.id());
+    }
+
+    @Test
+    public void testLookupAfterAnUpdateDoesNotJoinTheLookupStartedBeforeIt() throws Exception {
+        Loan updated = new Loan();
+        updated.setId(3L);
+        updated.setAmount(Money.ofCents(3_000_000));
+        updated.setTerm(6);
+        updated.setLoanTypes(new LoanType());
+        updated.setLoanStatus(new LoanStatus());
+        updated.setUsers(userTest);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        when(loanRepository.findById(1L)).thenAnswer(invocation -> {
+            if (reads.incrementAndGet() > 1) {
+                return Optional.of(updated);
+            }
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(loanTest);
+        });
+        when(userRepository.findById(1L)).thenReturn(Optional.of(userTest));
+        Instant now = Instant.now();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<GetLoanDto> beforeUpdate = CompletableFuture.supplyAsync(
+                    () -> loanServiceImpl.getLoanById(1L, getUserDtoTest, new ResourceVersionDto(1L, 0L, now)), executor);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<GetLoanDto> afterUpdate = CompletableFuture.supplyAsync(
+                    () -> loanServiceImpl.getLoanById(1L, getUserDtoTest, new ResourceVersionDto(1L, 1L, now)), executor);
+
+            assertEquals(6, afterUpdate.get(5, TimeUnit.SECONDS).term(), "a caller that saw version 1 must read version 1");
+            release.countDown();
+            assertEquals(3, beforeUpdate.get(5, TimeUnit.SECONDS).term());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    public void testDeleteLoanIsConditionalOnOwnerStatusAndVersion() {
+        when(loanRepository.findStateById(3L)).thenReturn(Optional.of(state(UserExposureRepository.PENDING, "Pending")));
+        when(loanRepository.deleteOwnedUnlessApproved(3L, 1L, 4L, UserExposureRepository.APPROVED)).thenReturn(1);
+
+        assertTrue(loanServiceImpl.deleteLoan(3L, getUserDtoTest));
+        verify(userExposureRepository).moveLoan(1L, UserExposureRepository.PENDING, Money.ofCents(3_000_000), 3, null, null, null);
+        verify(loanRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testDeleteApprovedOrForeignLoanIsRefusedWithoutWriting() {
+        when(loanRepository.findStateById(3L)).thenReturn(Optional.of(state(UserExposureRepository.APPROVED, "Approved")));
+        assertFalse(loanServiceImpl.deleteLoan(3L, getUserDtoTest));
+
+        when(loanRepository.findStateById(3L)).thenReturn(Optional.of(state(UserExposureRepository.PENDING, "Pending")));
+        assertFalse(loanServiceImpl.deleteLoan(3L, new GetUserDto(2L, null, null, null, null, null)));
+
+        verify(loanRepository, never()).deleteOwnedUnlessApproved(any(), any(), any(), any());
+        verifyNoInteractions(userExposureRepository);
+    }
+
+    @Test
+    public void testUpdateOfConcurrentlyChangedLoanFails() {
+        LoanType personal = new LoanType(1L, "Personal", new ArrayList<>());
+        when(loanRepository.findStateById(3L)).thenReturn(Optional.of(state(UserExposureRepository.PENDING, "Pending")));
+        when(loanTypeRepository.findById(1L)).thenReturn(Optional.of(personal));
+        when(loanRepository.updateOwnedTerms(eq(3L), eq(1L), eq(4L), any(), any(), eq(personal), any())).thenReturn(0);
+        Loan details = new Loan(null, Money.ofCents(100_000), 12, null, personal, null);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> loanServiceImpl.updateLoan(3L, details, getUserDtoTest));
+        verifyNoInteractions(userExposureRepository, auditService);
+    }
+
+    private static LoanStateDto state(long statusId, String status) {
+        return new LoanStateDto(3L, 4L, 1L, statusId, 1L, Money.ofCents(3_000_000), 3, "Personal", status, "John Smith");
     }
 
 
@@ -0,0 +1,64 @@
+package com.mayhem.lms;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.mayhem.lms.dto.CreateLoanDto;
+import com.mayhem.lms.dto.GetLoanDto;
+import com.mayhem.lms.model.Money;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testParseAndFormat() {
+        assertEquals(125050, Money.parse("1250.5").getCents());
+        assertEquals(125000, Money.parse("1250").getCents());
+        assertEquals(-307, Money.parse("-3.07").getCents());
+        assertEquals(7, Money.parse("0.070").getCents());
+        assertEquals("1250.50", Money.ofCents(125050).toString());
+        assertEquals("-0.07", Money.ofCents(-7).toString());
+        assertEquals("-3.07", Money.ofCents(-307).toString());
+        assertEquals("0.00", Money.ZERO.toString());
+        assertEquals("-92233720368547758.08", Money.ofCents(Long.MIN_VALUE).toString());
+        assertEquals("92233720368547758.07", Money.ofCents(Long.MAX_VALUE).toString());
+    }
+
+    @Test
+    public void testParseRejectsSubCentPrecision() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("10.005"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e3"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("-"));
+    }
+
+    @Test
+    public void testArithmeticIsExact() {
+        Money sum = Money.ZERO;
+        for (int i = 0; i < 1000; i++) {
+            sum = sum.add(Money.parse("0.10"));
+        }
+        assertEquals(Money.parse("100.00"), sum);
+        assertEquals(Money.parse("33.33"), Money.parse("100").multiply(1, 3));
+        assertEquals(Money.parse("0.02"), Money.parse("0.05").multiply(1, 2), "Half-even rounds 2.5 cents down");
+        assertEquals(Money.parse("0.04"), Money.parse("0.07").multiply(1, 2), "Half-even rounds 3.5 cents up");
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MAX_VALUE).add(Money.ofCents(1)));
+    }
+
+    @Test
+    public void testJsonRoundTrip() throws Exception {
+        String json = objectMapper.writeValueAsString(new GetLoanDto(1L, Money.parse("1250.5"), 12, "Personal", "Pending", "John Smith"));
+        assertTrue(json.contains("\"amount\":1250.50"), json);
+
+        CreateLoanDto created = objectMapper.readValue("{\"amount\":1250.5,\"term\":12,\"userId\":1,\"type\":1}", CreateLoanDto.class);
+        assertEquals(125050, created.getAmount().getCents());
+
+        CreateLoanDto fromString = objectMapper.readValue("{\"amount\":\"99.99\"}", CreateLoanDto.class);
+        assertEquals(9999, fromString.getAmount().getCents());
+
+        assertThrows(InvalidFormatException.class,
+                () -> objectMapper.readValue("{\"amount\":0.001}", CreateLoanDto.class));
+    }
+}
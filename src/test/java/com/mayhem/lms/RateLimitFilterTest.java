@@ -0,0 +1,104 @@
+package com.mayhem.lms;
+
+import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.util.TokenBucket;
+import com.mayhem.lms.web.RateLimitFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitFilterTest {
+
+    private RateLimitFilter rateLimitFilter;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("lms.rate-limit.login.capacity", "2")
+                .withProperty("lms.rate-limit.login.per-second", "0.01")
+                .withProperty("lms.rate-limit.max-buckets", "3");
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimitFilter = new RateLimitFilter(environment, meterRegistry);
+    }
+
+    @Test
+    public void testBurstThenRejectWithRetryAfter() throws Exception {
+        assertEquals(200, send(login("10.0.0.1")).getStatus());
+        assertEquals(200, send(login("10.0.0.1")).getStatus());
+        MockHttpServletResponse rejected = send(login("10.0.0.1"));
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("100", rejected.getHeader("Retry-After"));
+        assertEquals(1.0, meterRegistry.get("lms.ratelimit.rejected").tag("rule", "login").counter().count());
+        assertEquals(200, send(login("10.0.0.2")).getStatus(), "Other clients keep their own budget");
+    }
+
+    @Test
+    public void testSessionUserIsKeyedSeparatelyFromAddress() throws Exception {
+        send(login("10.0.0.1"));
+        send(login("10.0.0.1"));
+        MockHttpServletRequest request = login("10.0.0.1");
+        request.getSession().setAttribute("user", new GetUserDto(7L, null, null, null, null, "Customer"));
+
+        assertEquals(200, send(request).getStatus());
+    }
+
+    @Test
+    public void testOtherRoutesUseDefaultRuleAndStaticPathsAreIgnored() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, send(new MockHttpServletRequest("GET", "/api/loan-types")).getStatus());
+        }
+        MockHttpServletRequest swagger = new MockHttpServletRequest("GET", "/swagger-ui/index.html");
+
+        assertEquals(200, send(swagger).getStatus());
+        assertEquals(1, rateLimitFilter.bucketCount());
+    }
+
+    @Test
+    public void testBucketCountIsBoundedAndIdleBucketsAreEvicted() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/loan-types");
+            request.setRemoteAddr("10.0.1." + i);
+            send(request);
+        }
+
+        assertTrue(rateLimitFilter.bucketCount() <= 3);
+        Thread.sleep(50);
+        assertEquals(rateLimitFilter.bucketCount(), rateLimitFilter.evictIdleBuckets(),
+                "Default buckets refill within milliseconds and carry no state");
+    }
+
+    @Test
+    public void testTokenBucketRefillsAtConfiguredRate() {
+        long start = 0;
+        TokenBucket bucket = new TokenBucket(2, 10, start);
+
+        assertEquals(0, bucket.tryAcquire(start));
+        assertEquals(0, bucket.tryAcquire(start));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.tryAcquire(start));
+        assertFalse(bucket.isFull(start));
+        assertEquals(0, bucket.tryAcquire(start + TimeUnit.MILLISECONDS.toNanos(100)));
+        assertTrue(bucket.isFull(start + TimeUnit.MILLISECONDS.toNanos(300)));
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest login(String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+        request.setRemoteAddr(address);
+        return request;
+    }
+}
@@ -0,0 +1,196 @@
+package com.mayhem.lms;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigrationTest {
+
+    private static final String PARTITIONING_SCRIPT = "classpath:db/partitioning/V7_1__partition_loan_by_status.sql";
+    private static final Pattern CHANGES_LOAN = Pattern.compile(
+            "(?i)(create|alter|drop)\\s+table\\s+(if\\s+(not\\s+)?exists\\s+)?loan\\b|\\bon\\s+loan\\s*\\(");
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private Flyway flyway;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:migration_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        flyway = Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load();
+    }
+
+    @Test
+    public void testAllMigrationsApplyOnEmptyDatabase() {
+        flyway.migrate();
+
+        MigrationInfo[] pending = flyway.info().pending();
+        assertEquals(0, pending.length, "No migration should be left pending");
+        assertTrue(Arrays.stream(flyway.info().applied()).allMatch(info -> info.getState().isApplied()));
+    }
+
+    @Test
+    public void testReferenceDataIsSeeded() {
+        flyway.migrate();
+
+        assertEquals("Pending", jdbcTemplate.queryForObject("SELECT status FROM loan_status WHERE status_id = 1", String.class));
+        assertEquals("Approved", jdbcTemplate.queryForObject("SELECT status FROM loan_status WHERE status_id = 2", String.class));
+        assertEquals("Rejected", jdbcTemplate.queryForObject("SELECT status FROM loan_status WHERE status_id = 3", String.class));
+        assertEquals("Customer", jdbcTemplate.queryForObject("SELECT role_name FROM account_role WHERE role_id = 2", String.class));
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM loan_type", Integer.class));
+    }
+
+    @Test
+    public void testForeignKeyColumnsAreIndexed() {
+        flyway.migrate();
+
+        List<String> loanIndexes = indexedColumns("loan");
+        assertTrue(loanIndexes.contains("idx_loan_user_status:user_id"), "loan.user_id must lead an index");
+        assertTrue(loanIndexes.contains("idx_loan_status_created:status_id"));
+        assertTrue(loanIndexes.contains("idx_loan_type:type_id"));
+        assertTrue(indexedColumns("account").contains("idx_account_role:role_id"));
+        assertTrue(loanIndexes.contains("idx_loan_status_updated:status_id"), "the archive job finds rejected loans by status age");
+        assertTrue(indexedColumns("loan_archive").contains("idx_loan_archive_user:user_id"));
+    }
+
+    @Test
+    public void testLoansByUserDoNotScanTheTable() {
+        flyway.migrate();
+
+        String plan = jdbcTemplate.queryForObject("EXPLAIN SELECT * FROM loan WHERE user_id = 1", String.class);
+        assertNotNull(plan);
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    @Test
+    public void testLoanRequiresExistingUser() {
+        flyway.migrate();
+
+        assertThrows(Exception.class, () -> jdbcTemplate.update(
+                "INSERT INTO loan (amount, term, user_id, type_id, status_id) VALUES (1000, 12, 999, 1, 1)"));
+    }
+
+    @Test
+    public void testExistingDdlAutoSchemaIsBaselined() {
+        Flyway baseline = Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").target("1").load();
+        baseline.migrate();
+        jdbcTemplate.execute("DROP TABLE flyway_schema_history");
+
+        Flyway upgrade = Flyway.configure().dataSource(dataSource).locations("classpath:db/migration")
+                .baselineOnMigrate(true).baselineVersion("1").load();
+        upgrade.migrate();
+
+        assertEquals(0, upgrade.info().pending().length);
+        assertTrue(indexedColumns("loan").contains("idx_loan_user_status:user_id"));
+    }
+
+    @Test
+    public void testEntitiesValidateAgainstMigratedSchema() {
+        flyway.migrate();
+
+        assertDoesNotThrow(() -> validateEntities().destroy(), "ddl-auto=validate must accept the Flyway schema");
+        jdbcTemplate.execute("ALTER TABLE loan DROP COLUMN term");
+        assertThrows(Exception.class, this::validateEntities, "validate must reject a schema that lost a mapped column");
+    }
+
+    @Test
+    public void testPartitioningMigrationSortsAfterEveryLoanMigration() throws IOException {
+        Flyway partitioned = Flyway.configure().dataSource(dataSource)
+                .locations("classpath:db/migration", "classpath:db/partitioning").load();
+        MigrationInfo[] all = partitioned.info().all();
+        MigrationInfo last = all[all.length - 1];
+        assertEquals("7.1", last.getVersion().getVersion(), "the partitioning migration must run last, in order");
+
+        for (Resource script : new PathMatchingResourcePatternResolver().getResources("classpath:db/migration/*.sql")) {
+            if (CHANGES_LOAN.matcher(read(script)).find()) {
+                String version = script.getFilename().substring(1, script.getFilename().indexOf("__")).replace('_', '.');
+                assertTrue(Arrays.stream(all).anyMatch(info -> info.getVersion().getVersion().equals(version)
+                                && info.getVersion().compareTo(last.getVersion()) < 0),
+                        script.getFilename() + " changes loan and must sort before the partitioning migration");
+            }
+        }
+    }
+
+    @Test
+    public void testPartitioningMigrationRebuildsTheWholeLoanTable() throws IOException {
+        flyway.migrate();
+        String script = read(new PathMatchingResourcePatternResolver().getResource(PARTITIONING_SCRIPT));
+
+        Set<String> columns = new TreeSet<>(jdbcTemplate.queryForList(
+                "SELECT column_name FROM information_schema.columns WHERE table_name = 'loan'", String.class));
+        Matcher copied = Pattern.compile("insert into loan_partitioned \\(([^)]*)\\)").matcher(script);
+        assertTrue(copied.find());
+        assertEquals(columns, new TreeSet<>(Arrays.asList(copied.group(1).split("\\s*,\\s*"))),
+                "the partitioned loan table must carry every column of the migrated one");
+
+        Set<String> indexes = new TreeSet<>(jdbcTemplate.queryForList(
+                "SELECT index_name FROM information_schema.indexes WHERE table_name = 'loan' AND index_name LIKE 'idx_%'",
+                String.class));
+        assertEquals(indexes, matches(script, "create index (\\w+) on loan "));
+
+        Set<String> foreignKeys = new TreeSet<>(jdbcTemplate.queryForList(
+                "SELECT LOWER(constraint_name) FROM information_schema.table_constraints "
+                        + "WHERE table_name = 'loan' AND constraint_type = 'FOREIGN KEY'", String.class));
+        assertEquals(foreignKeys, matches(script, "add constraint (\\w+) foreign key"));
+    }
+
+    private static Set<String> matches(String script, String regex) {
+        List<String> found = new ArrayList<>();
+        Matcher matcher = Pattern.compile(regex).matcher(script);
+        while (matcher.find()) {
+            found.add(matcher.group(1).toLowerCase());
+        }
+        return new TreeSet<>(found);
+    }
+
+    private static String read(Resource resource) throws IOException {
+        return new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Boot JPA over the entities the way Spring Boot does, with ddl-auto=validate
+     */
+    private LocalContainerEntityManagerFactoryBean validateEntities() {
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan("com.mayhem.lms.model");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "validate",
+                "hibernate.dialect", "org.hibernate.dialect.H2Dialect",
+                "hibernate.physical_naming_strategy", "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy",
+                "hibernate.implicit_naming_strategy", "org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy"));
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    private List<String> indexedColumns(String table) {
+        return jdbcTemplate.queryForList(
+                "SELECT i.index_name || ':' || c.column_name FROM information_schema.indexes i "
+                        + "JOIN information_schema.index_columns c ON c.index_name = i.index_name AND c.table_name = i.table_name "
+                        + "WHERE i.table_name = ? AND c.ordinal_position = 1", String.class, table);
+    }
+}
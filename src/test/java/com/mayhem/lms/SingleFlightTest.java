@@ -0,0 +1,77 @@
+package com.mayhem.lms;
+
+import com.mayhem.lms.util.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsForSameKeyShareOneExecution() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<String>> calls = new ArrayList<>();
+            calls.add(CompletableFuture.supplyAsync(() -> singleFlight.execute(1L, () -> {
+                loads.incrementAndGet();
+                await(release);
+                return "user1";
+            }), executor));
+            while (singleFlight.inFlightCount() == 0) {
+                Thread.onSpinWait();
+            }
+            for (int i = 0; i < 7; i++) {
+                calls.add(CompletableFuture.supplyAsync(() -> singleFlight.execute(1L, () -> {
+                    loads.incrementAndGet();
+                    return "duplicate";
+                }), executor));
+            }
+            while (singleFlight.sharedCount() < 7) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (CompletableFuture<String> call : calls) {
+                assertEquals("user1", call.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(1, singleFlight.executedCount());
+            assertEquals(0, singleFlight.inFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNothingIsCachedAndFailuresAreNotKept() {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute(1L, () -> {
+            throw new IllegalStateException("database down");
+        }));
+        assertEquals("user1", singleFlight.execute(1L, () -> "user1"));
+        assertNull(singleFlight.execute(2L, () -> null));
+        assertEquals(3, singleFlight.executedCount());
+        assertEquals(0, singleFlight.sharedCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
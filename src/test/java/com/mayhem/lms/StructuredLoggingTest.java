@@ -0,0 +1,94 @@
+package com.mayhem.lms;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import com.mayhem.lms.config.RequestLogSampler;
+import com.mayhem.lms.web.CorrelationIdFilter;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StructuredLoggingTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final Logger controllerLogger = context.getLogger("com.mayhem.lms.controller.LoanController");
+    private final Logger otherLogger = context.getLogger("org.hibernate.SQL");
+
+    @AfterEach
+    public void tearDown() {
+        MDC.clear();
+    }
+
+    @Test
+    public void testSamplerKeepsWholeRequestsAndAlwaysKeepsWarnings() {
+        RequestLogSampler sampler = sampler(0.25);
+        int kept = 0;
+        for (int i = 0; i < 10_000; i++) {
+            MDC.put("correlationId", Integer.toHexString(i * 7919));
+            FilterReply first = sampler.decide(null, controllerLogger, Level.INFO, "Loan {} found", null, null);
+            assertEquals(first, sampler.decide(null, controllerLogger, Level.INFO, "Loan {} updated", null, null),
+                    "Every line of a request gets the same decision");
+            assertEquals(FilterReply.NEUTRAL, sampler.decide(null, controllerLogger, Level.ERROR, "Loan not found", null, null));
+            assertEquals(FilterReply.NEUTRAL, sampler.decide(null, otherLogger, Level.INFO, "select", null, null));
+            if (first == FilterReply.NEUTRAL) {
+                kept++;
+            }
+        }
+        assertTrue(kept > 2_000 && kept < 3_000, "About a quarter of the requests are kept, was " + kept);
+
+        MDC.clear();
+        assertEquals(FilterReply.NEUTRAL, sampler.decide(null, controllerLogger, Level.INFO, "Outside a request", null, null));
+        MDC.put("correlationId", "any");
+        assertEquals(FilterReply.DENY, sampler(0).decide(null, controllerLogger, Level.INFO, "Loan {} found", null, null));
+        assertEquals(FilterReply.NEUTRAL, sampler(0).decide(null, controllerLogger, Level.WARN, "Concurrent change", null, null));
+        assertThrows(IllegalArgumentException.class, () -> sampler(1.5));
+    }
+
+    @Test
+    public void testCorrelationIdIsInMdcDuringRequestAndEchoed() throws Exception {
+        AtomicReference<String> seen = new AtomicReference<>();
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                seen.set(MDC.get(CorrelationIdFilter.MDC_KEY));
+            }
+        };
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/loans/1");
+        request.addHeader(CorrelationIdFilter.HEADER, "abc-123");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new CorrelationIdFilter().doFilter(request, response, chain);
+
+        assertEquals("abc-123", seen.get());
+        assertEquals("abc-123", response.getHeader(CorrelationIdFilter.HEADER));
+        assertNull(MDC.get(CorrelationIdFilter.MDC_KEY));
+
+        MockHttpServletRequest invalid = new MockHttpServletRequest("GET", "/api/loans/1");
+        invalid.addHeader(CorrelationIdFilter.HEADER, "bad id\nwith newline");
+        MockHttpServletResponse generated = new MockHttpServletResponse();
+        new CorrelationIdFilter().doFilter(invalid, generated, chain);
+        assertTrue(generated.getHeader(CorrelationIdFilter.HEADER).matches("[0-9a-f]{16}"));
+        assertEquals(generated.getHeader(CorrelationIdFilter.HEADER), seen.get());
+    }
+
+    private RequestLogSampler sampler(double rate) {
+        RequestLogSampler sampler = new RequestLogSampler();
+        sampler.setContext(context);
+        sampler.addLoggerPrefix("com.mayhem.lms.controller");
+        sampler.addLoggerPrefix("com.mayhem.lms.service");
+        sampler.setRate(rate);
+        sampler.start();
+        return sampler;
+    }
+}
@@ -0,0 +1,98 @@
+package com.mayhem.lms;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayhem.lms.config.FileSpanExporter;
+import com.mayhem.lms.config.LayerTracingAspect;
+import com.mayhem.lms.dto.GetLoanDto;
+import com.mayhem.lms.service.LoanService;
+import com.mayhem.lms.service.LoanServiceImpl;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TracingTest {
+
+    @Test
+    public void testServiceCallsAreObservedOnlyWithinObservedWork() {
+        List<Observation.Context> stopped = new ArrayList<>();
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public void onStop(Observation.Context context) {
+                stopped.add(context);
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+        LoanServiceImpl target = mock(LoanServiceImpl.class);
+        when(target.getLoanByUserId(7L)).thenReturn(List.of(
+                new GetLoanDto(3L, null, 12, "Personal", "Pending", "Jane Doe"),
+                new GetLoanDto(4L, null, 24, "Auto", "Approved", "Jane Doe")));
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setInterfaces(LoanService.class);
+        factory.addAspect(new LayerTracingAspect(registry));
+        LoanService loanService = factory.getProxy();
+
+        loanService.getLoanByUserId(7L);
+        assertTrue(stopped.isEmpty(), "No span outside a request");
+
+        Observation.createNotStarted("http.server.requests", registry).observe(() -> loanService.getLoanByUserId(7L));
+
+        assertEquals(2, stopped.size());
+        Observation.Context service = stopped.get(0);
+        assertEquals("lms.service", service.getName());
+        assertTrue(service.getContextualName().endsWith(".getLoanByUserId"));
+        assertEquals("service", service.getLowCardinalityKeyValue("lms.layer").getValue());
+        assertEquals("7", service.getHighCardinalityKeyValue("lms.user.id").getValue());
+        assertEquals("2", service.getHighCardinalityKeyValue("lms.result.count").getValue());
+        assertEquals("http.server.requests", service.getParentObservation().getContextView().getName());
+    }
+
+    @Test
+    public void testFileExporterWritesOneJsonLinePerSpan(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("spans.jsonl");
+        FileSpanExporter exporter = new FileSpanExporter(file, 1024 * 1024);
+        SdkTracerProvider provider = SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(exporter)).build();
+        Tracer tracer = provider.get("test");
+
+        Span request = tracer.spanBuilder("http get /api/loans/{id}").startSpan();
+        try (Scope scope = request.makeCurrent()) {
+            tracer.spanBuilder("LoanRepository.findById").setAttribute("lms.loan.id", "3").startSpan().end();
+        } finally {
+            request.end();
+        }
+        provider.shutdown().join(5, TimeUnit.SECONDS);
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode child = objectMapper.readTree(lines.get(0));
+        JsonNode parent = objectMapper.readTree(lines.get(1));
+        assertEquals("LoanRepository.findById", child.get("name").asText());
+        assertEquals("3", child.get("attributes").get("lms.loan.id").asText());
+        assertEquals(parent.get("spanId").asText(), child.get("parentSpanId").asText());
+        assertEquals(parent.get("traceId").asText(), child.get("traceId").asText());
+        assertFalse(parent.has("parentSpanId"));
+    }
+}
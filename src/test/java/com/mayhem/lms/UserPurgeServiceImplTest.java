@@ -0,0 +1,169 @@
+package com.mayhem.lms;
+
+import com.mayhem.lms.constants.AuditAction;
+import com.mayhem.lms.constants.AuditEntityType;
+import com.mayhem.lms.constants.LoanEventKind;
+import com.mayhem.lms.dto.LoanStateDto;
+import com.mayhem.lms.dto.PurgeResultDto;
+import com.mayhem.lms.model.Money;
+import com.mayhem.lms.repository.AccountRepository;
+import com.mayhem.lms.repository.LoanArchiveRepository;
+import com.mayhem.lms.repository.LoanRepository;
+import com.mayhem.lms.repository.UserExposureRepository;
+import com.mayhem.lms.repository.UserRepository;
+import com.mayhem.lms.service.AuditService;
+import com.mayhem.lms.service.LoanEventService;
+import com.mayhem.lms.service.UserPurgeServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserPurgeServiceImplTest {
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private LoanArchiveRepository loanArchiveRepository;
+
+    @Mock
+    private UserExposureRepository userExposureRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private AuditService auditService;
+
+    @Mock
+    private LoanEventService loanEventService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserPurgeServiceImpl userPurgeService;
+
+    @BeforeEach
+    public void setUp() {
+        userPurgeService = new UserPurgeServiceImpl(loanRepository, loanArchiveRepository, userExposureRepository, userRepository,
+                accountRepository, auditService, loanEventService, transactionManager, 2);
+    }
+
+    @Test
+    public void testPurgeDeletesInChunksAndDependencyOrder() {
+        when(loanRepository.findUserIdsWithLoanStatus(any(), eq(UserExposureRepository.APPROVED))).thenReturn(List.of());
+        when(userRepository.findAccountIds(List.of(1L, 2L))).thenReturn(List.of(ids(1L, 11L), ids(2L, 12L)));
+        when(userRepository.findAccountIds(List.of(3L))).thenReturn(List.of(ids(3L, 13L)));
+        when(loanRepository.findStatesByUserIdsUnlessApproved(List.of(1L, 2L), UserExposureRepository.APPROVED)).thenReturn(loans(1L, 100L, 5000));
+        when(loanRepository.findStatesByUserIdsUnlessApproved(List.of(3L), UserExposureRepository.APPROVED)).thenReturn(loans(3L, 9000L, 1));
+        when(loanArchiveRepository.findIdsByUserIds(List.of(1L, 2L))).thenReturn(List.of(7000L));
+        when(loanRepository.deleteByUserIdsUnlessApproved(any(), eq(UserExposureRepository.APPROVED))).thenReturn(5000, 1);
+
+        PurgeResultDto result = userPurgeService.purgeUsers(List.of(3L, 1L, 2L, 1L), 9L);
+
+        assertEquals(new PurgeResultDto(3, 5001, List.of()), result);
+        verify(transactionManager, times(2)).commit(any());
+        var order = inOrder(loanRepository, userExposureRepository, userRepository, accountRepository);
+        order.verify(loanRepository).deleteByUserIdsUnlessApproved(List.of(1L, 2L), UserExposureRepository.APPROVED);
+        order.verify(userExposureRepository).deleteByUserIds(List.of(1L, 2L));
+        order.verify(userRepository).deleteByIds(List.of(1L, 2L));
+        order.verify(accountRepository).deleteByIds(List.of(11L, 12L));
+        verify(auditService).record(AuditEntityType.USER, 3L, AuditAction.DELETE, 9L, null, null);
+        verify(auditService).record(AuditEntityType.LOAN, 9000L, AuditAction.DELETE, 9L, null, null);
+        verify(loanEventService).record(LoanEventKind.DELETED, 9000L, 3L, Money.ofCents(100_000), 12, 1L, 1L, 9L);
+        verify(loanEventService, times(5001)).record(eq(LoanEventKind.DELETED), any(), any(), any(), any(), any(), any(), eq(9L));
+        verify(auditService).redact(AuditEntityType.USER, List.of(1L, 2L));
+        verify(auditService).redact(eq(AuditEntityType.LOAN), argThat(ids -> ids.size() == 5001 && ids.contains(7000L)));
+        verify(auditService).redact(AuditEntityType.USER, List.of(3L));
+        var erasure = inOrder(transactionManager, loanEventService);
+        erasure.verify(transactionManager).commit(any());
+        erasure.verify(loanEventService).erase(argThat(ids -> ids.size() == 5001 && ids.contains(7000L)));
+        erasure.verify(transactionManager).commit(any());
+        erasure.verify(loanEventService).erase(List.of(9000L));
+        verify(loanRepository, never()).findAll();
+    }
+
+    @Test
+    public void testUsersWithApprovedLoansAndUnknownUsersAreSkipped() {
+        when(loanRepository.findUserIdsWithLoanStatus(List.of(1L, 2L), UserExposureRepository.APPROVED)).thenReturn(List.of(2L));
+        when(userRepository.findAccountIds(List.of(1L))).thenReturn(List.of());
+
+        PurgeResultDto result = userPurgeService.purgeUsers(List.of(1L, 2L), 9L);
+
+        assertEquals(new PurgeResultDto(0, 0, List.of(2L)), result);
+        verify(loanRepository, never()).deleteByUserIdsUnlessApproved(any(), any());
+        verify(auditService, never()).record(any(), any(), any(), any(), any(), any());
+        verify(loanEventService, never()).record(any(), any(), any(), any(), any(), any(), any(), any());
+        verify(loanEventService).erase(List.of());
+    }
+
+    @Test
+    public void testLoanApprovedDuringPurgeRollsBackAndRetriesChunk() {
+        when(loanRepository.findUserIdsWithLoanStatus(List.of(1L, 2L), UserExposureRepository.APPROVED))
+                .thenReturn(List.of()).thenReturn(List.of(2L));
+        when(userRepository.findAccountIds(List.of(1L, 2L))).thenReturn(List.of(ids(1L, 11L), ids(2L, 12L)));
+        when(userRepository.findAccountIds(List.of(1L))).thenReturn(List.of(ids(1L, 11L)));
+        when(loanRepository.findUserIdsWithLoanStatus(List.of(1L), UserExposureRepository.APPROVED)).thenReturn(List.of());
+        when(loanRepository.findStatesByUserIdsUnlessApproved(List.of(1L, 2L), UserExposureRepository.APPROVED)).thenReturn(loans(1L, 100L, 3));
+        when(loanRepository.findStatesByUserIdsUnlessApproved(List.of(1L), UserExposureRepository.APPROVED)).thenReturn(loans(1L, 100L, 1));
+        when(loanRepository.deleteByUserIdsUnlessApproved(any(), eq(UserExposureRepository.APPROVED))).thenReturn(3, 1);
+
+        PurgeResultDto result = userPurgeService.purgeUsers(List.of(1L, 2L), 9L);
+
+        assertEquals(new PurgeResultDto(1, 1, List.of(2L)), result);
+        verify(transactionManager).rollback(any());
+        verify(transactionManager).commit(any());
+        verify(userRepository, never()).deleteByIds(List.of(1L, 2L));
+        verify(auditService).record(AuditEntityType.USER, 1L, AuditAction.DELETE, 9L, null, null);
+        verify(auditService, never()).record(eq(AuditEntityType.USER), eq(2L), any(), any(), any(), any());
+        verify(auditService).redact(AuditEntityType.USER, List.of(1L));
+    }
+
+    @Test
+    public void testLoanAddedDuringPurgeRollsBackChunk() {
+        when(loanRepository.findUserIdsWithLoanStatus(List.of(1L), UserExposureRepository.APPROVED)).thenReturn(List.of());
+        when(userRepository.findAccountIds(List.of(1L))).thenReturn(List.of(ids(1L, 11L)));
+        when(loanRepository.findStatesByUserIdsUnlessApproved(List.of(1L), UserExposureRepository.APPROVED)).thenReturn(loans(1L, 100L, 2));
+        when(loanRepository.deleteByUserIdsUnlessApproved(List.of(1L), UserExposureRepository.APPROVED)).thenReturn(3, 2);
+
+        assertEquals(new PurgeResultDto(1, 2, List.of()), userPurgeService.purgeUsers(List.of(1L), 9L));
+        verify(transactionManager).rollback(any());
+        verify(userRepository, times(1)).deleteByIds(List.of(1L));
+        verify(loanEventService, times(2)).record(eq(LoanEventKind.DELETED), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    private static List<LoanStateDto> loans(Long userId, long firstLoanId, int count) {
+        return LongStream.range(firstLoanId, firstLoanId + count)
+                .mapToObj(id -> new LoanStateDto(id, 0L, userId, 1L, 1L, Money.ofCents(100_000), 12, "Personal", "Pending", "John Smith"))
+                .toList();
+    }
+
+    private static UserRepository.UserAccountIds ids(Long userId, Long accountId) {
+        return new UserRepository.UserAccountIds() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public Long getAccountId() {
+                return accountId;
+            }
+        };
+    }
+}
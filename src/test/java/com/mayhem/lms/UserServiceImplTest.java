@@ -1,21 +1,43 @@
 package com.mayhem.lms;
 
 import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.dto.ResourceVersionDto;
 import com.mayhem.lms.model.Account;
 import com.mayhem.lms.model.AccountRole;
+import com.mayhem.lms.model.Money;
 import com.mayhem.lms.model.User;
+import com.mayhem.lms.model.UserExposure;
+import com.mayhem.lms.repository.AccountRepository;
+import com.mayhem.lms.repository.LoanRepository;
+import com.mayhem.lms.repository.UserExposureRepository;
 import com.mayhem.lms.repository.UserRepository;
+import com.mayhem.lms.service.AuditService;
+import com.mayhem.lms.service.RequestCoalescer;
+import com.mayhem.lms.service.UserPurgeService;
 import com.mayhem.lms.service.UserServiceImpl;
 import org.checkerframework.checker.units.qual.A;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -25,6 +47,27 @@ public class UserServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private AuditService auditService;
+
+    @Mock
+    private UserPurgeService userPurgeService;
+
+    @Mock
+    private UserExposureRepository userExposureRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private RequestCoalescer requestCoalescer = new RequestCoalescer(new SimpleMeterRegistry());
+
     @InjectMocks
     private UserServiceImpl userServiceImpl;
 
@@ -54,14 +97,27 @@ public class UserServiceImplTest {
     }
 
     @Test
-    public void testFindAllUsers() {
-        when(userRepository.findAll()).thenReturn(List.of(userTest));
-        List<GetUserDto> users = userServiceImpl.findAllUsers();
+    public void testFindUsers() {
+        GetUserDto manu = new GetUserDto(1L, "manu.rios@example.com", "Manu", "Rios", "1234567890", "Manager");
+        when(userRepository.findUserViews(eq("Manager"), eq("m\\_a%"), isNull(), any()))
+                .thenReturn(new SliceImpl<>(List.of(manu)));
+        Slice<GetUserDto> users = userServiceImpl.findUsers("Manager", " M_a", null,
+                PageRequest.of(2, 10, Sort.by(Sort.Direction.DESC, "email")));
+
+        assertEquals(List.of(manu), users.getContent());
+        // Sorted on the joined account, ties broken by id so offset pages never overlap
+        verify(userRepository, times(1)).findUserViews(any(), any(), any(),
+                eq(PageRequest.of(2, 10, Sort.by(Sort.Order.desc("a.email"), Sort.Order.asc("id")))));
+    }
 
-        assertNotEquals(2, users.size(), "The list should contain only 1 user");
-        assertEquals("Manu", users.get(0).getFirstName(), "The list should contain user user named Manu");
-        // Verify that findAll() on the repository was called exactly once.
-        verify(userRepository, times(1)).findAll();
+    @Test
+    public void testFindUsersAfterIdIsKeysetInIdOrder() {
+        when(userRepository.findUserViews(isNull(), isNull(), eq(40L), any())).thenReturn(new SliceImpl<>(List.of()));
+        userServiceImpl.findUsers(null, "", 40L, PageRequest.of(3, 25, Sort.by("id")));
+
+        verify(userRepository, times(1)).findUserViews(null, null, 40L, PageRequest.of(0, 25, Sort.by("id")));
+        assertThrows(IllegalArgumentException.class,
+                () -> userServiceImpl.findUsers(null, null, null, PageRequest.of(0, 25, Sort.by("password"))));
     }
 
     @Test
@@ -70,20 +126,65 @@ public class UserServiceImplTest {
         boolean result = userServiceImpl.deleteUser(1L);
 
         assertTrue(result, "Should be able to delete user then is true");
+        verify(userPurgeService, times(1)).deleteUsers(List.of(1L), 1L);
         // Verify that findAll() on the repository was called exactly once.
         verify(userRepository, times(1)).findById(any());
 
     }
 
+    @Test
+    public void testDeleteUserWithApprovedLoansIsRefused() {
+        when(loanRepository.existsByUsersIdAndLoanStatusId(1L, UserExposureRepository.APPROVED)).thenReturn(true);
+
+        assertFalse(userServiceImpl.deleteUser(1L), "A user with an approved loan must not be deleted");
+        verify(userRepository, never()).findById(any());
+        verify(userRepository, never()).delete(any());
+    }
+
     @Test
     public void testGetUserById() {
         when(userRepository.findById(1L)).thenReturn(Optional.of(userTest));
         GetUserDto user = userServiceImpl.getUserById(1L);
-        assertEquals("Manu", user.getFirstName(), "The list should contain user user named Manu");
+        assertEquals("Manu", user.firstName(), "The list should contain user user named Manu");
+        assertEquals(Money.ZERO, user.exposure().pendingAmount(), "A user without an exposure row has no loans");
         // Verify that findAll() on the repository was called exactly once.
         verify(userRepository, times(1)).findById(any());
     }
 
+    @Test
+    public void testLookupAfterAnUpdateDoesNotJoinTheLookupStartedBeforeIt() throws Exception {
+        User updated = new User();
+        updated.setId(1L);
+        updated.setFirstName("Manuel");
+        updated.setLastName("Rios");
+        updated.setAccount(accountTest);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findById(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(userTest);
+        }).thenReturn(Optional.of(updated));
+        Instant now = Instant.now();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<GetUserDto> beforeUpdate = CompletableFuture.supplyAsync(
+                    () -> userServiceImpl.getUserById(1L, new ResourceVersionDto(1L, 0L, now)), executor);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<GetUserDto> afterUpdate = CompletableFuture.supplyAsync(
+                    () -> userServiceImpl.getUserById(1L, new ResourceVersionDto(1L, 1L, now)), executor);
+
+            assertEquals("Manuel", afterUpdate.get(5, TimeUnit.SECONDS).firstName(), "a caller that saw version 1 must read version 1");
+            release.countDown();
+            assertEquals("Manu", beforeUpdate.get(5, TimeUnit.SECONDS).firstName());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        verify(userRepository, times(2)).findById(1L);
+    }
+
     @Test
     public void testGetUserByIdNotFound() {
         when(userRepository.findById(4L)).thenReturn(Optional.empty());
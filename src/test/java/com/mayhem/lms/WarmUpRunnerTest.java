@@ -0,0 +1,107 @@
+package com.mayhem.lms;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayhem.lms.config.WarmUpRunner;
+import com.mayhem.lms.dto.GetLoanDto;
+import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.model.Money;
+import com.mayhem.lms.repository.LoanStatusRepository;
+import com.mayhem.lms.repository.LoanTypeRepository;
+import com.mayhem.lms.repository.RoleRepository;
+import com.mayhem.lms.service.LoanEventService;
+import com.mayhem.lms.service.LoanService;
+import com.mayhem.lms.service.LoanTypeService;
+import com.mayhem.lms.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WarmUpRunnerTest {
+
+    @Mock
+    private ApplicationContext applicationContext;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private LoanService loanService;
+
+    @Mock
+    private LoanTypeService loanTypeService;
+
+    @Mock
+    private LoanEventService loanEventService;
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @Mock
+    private LoanStatusRepository loanStatusRepository;
+
+    @Mock
+    private LoanTypeRepository loanTypeRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void testWarmUpRunsReadPathsAndRecordsDuration() throws Exception {
+        GetUserDto user = new GetUserDto(7L, "jane@example.com", "Jane", "Doe", "555", "Customer");
+        when(applicationContext.getBeansOfType(HikariDataSource.class)).thenReturn(Map.of());
+        when(userService.findUsers(isNull(), isNull(), isNull(), any())).thenReturn(new SliceImpl<>(List.of(user)));
+        when(userService.getUserById(7L)).thenReturn(user);
+        when(loanService.getLoanByUserId(7L)).thenReturn(List.of(
+                new GetLoanDto(3L, Money.parse("1000.00"), 12, "Personal", "Pending", "Jane Doe")));
+
+        runner(true, 3).run(new DefaultApplicationArguments());
+
+        verify(roleRepository).findAll();
+        verify(loanStatusRepository).findAll();
+        verify(loanTypeRepository).findAll();
+        verify(loanTypeService, times(3)).getAllLoanTypes();
+        verify(loanService, times(3)).getLoanById(eq(3L), argThat(caller -> "Manager".equals(caller.role())));
+        verify(loanService, times(3)).getLoanVersion(3L);
+        Timer timer = meterRegistry.find("lms.warmup.duration").tag("outcome", "completed").timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+    }
+
+    @Test
+    public void testFailingOrDisabledWarmUpDoesNotBlockStartup() throws Exception {
+        when(applicationContext.getBeansOfType(HikariDataSource.class)).thenThrow(new IllegalStateException("no pool"));
+
+        assertDoesNotThrow(() -> runner(true, 3).run(new DefaultApplicationArguments()));
+        assertNotNull(meterRegistry.find("lms.warmup.duration").tag("outcome", "failed").timer());
+
+        runner(false, 3).run(new DefaultApplicationArguments());
+        verify(applicationContext, times(1)).getBeansOfType(HikariDataSource.class);
+        verifyNoInteractions(userService, loanService);
+    }
+
+    private WarmUpRunner runner(boolean enabled, int iterations) {
+        return new WarmUpRunner(applicationContext, userService, loanService, loanTypeService, loanEventService,
+                roleRepository, loanStatusRepository, loanTypeRepository, new ObjectMapper(), meterRegistry,
+                enabled, iterations, 5, 30_000);
+    }
+}
@@ -0,0 +1,137 @@
+package com.mayhem.lms.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.mayhem.lms.dto.GetLoanDto;
+import com.mayhem.lms.dto.GetUserDto;
+import com.mayhem.lms.model.Money;
+import com.mayhem.lms.web.DtoJsonSerializers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialisation cost of the loan and user list payloads.
+ * "bean" is the former mutable getter/setter DTO, "record" is default Jackson record handling,
+ * "streaming" uses {@link DtoJsonSerializers}. Output goes to a reused buffer, as the HTTP message converter
+ * streams to the response, so bytes/op is the serialisation garbage only. Run with -prof gc for gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoSerializationBenchmark {
+
+    @Param({"1000"})
+    private int size;
+
+    private List<LegacyLoanDto> beanLoans;
+    private List<GetLoanDto> loans;
+    private List<GetUserDto> users;
+
+    private ObjectWriter beanLoanWriter;
+    private ObjectWriter recordLoanWriter;
+    private ObjectWriter recordUserWriter;
+    private ObjectWriter streamingLoanWriter;
+    private ObjectWriter streamingUserWriter;
+    private final ByteArrayOutputStream sink = new ByteArrayOutputStream(1 << 20);
+
+    @Setup
+    public void setUp() {
+        beanLoans = new ArrayList<>(size);
+        loans = new ArrayList<>(size);
+        users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long cents = 100_000L + i * 1_337L;
+            String name = "Client " + i;
+            beanLoans.add(new LegacyLoanDto((long) i, cents / 100.0, 12 + i % 48, "Personal", "Pending", name));
+            loans.add(new GetLoanDto((long) i, Money.ofCents(cents), 12 + i % 48, "Personal", "Pending", name));
+            users.add(new GetUserDto((long) i, "user" + i + "@example.com", "First" + i, "Last" + i, "555-010" + i % 10, "Customer"));
+        }
+
+        ObjectMapper plain = new ObjectMapper();
+        beanLoanWriter = plain.writerFor(new TypeReference<List<LegacyLoanDto>>() { });
+        recordLoanWriter = plain.writerFor(new TypeReference<List<GetLoanDto>>() { });
+        recordUserWriter = plain.writerFor(new TypeReference<List<GetUserDto>>() { });
+
+        ObjectMapper streaming = new ObjectMapper().registerModule(new SimpleModule()
+                .addSerializer(new DtoJsonSerializers.GetLoanDtoSerializer())
+                .addSerializer(new DtoJsonSerializers.GetUserDtoSerializer()));
+        streamingLoanWriter = streaming.writerFor(new TypeReference<List<GetLoanDto>>() { });
+        streamingUserWriter = streaming.writerFor(new TypeReference<List<GetUserDto>>() { });
+    }
+
+    @Benchmark
+    public int loansBean() throws Exception {
+        return write(beanLoanWriter, beanLoans);
+    }
+
+    @Benchmark
+    public int loansRecord() throws Exception {
+        return write(recordLoanWriter, loans);
+    }
+
+    @Benchmark
+    public int loansStreaming() throws Exception {
+        return write(streamingLoanWriter, loans);
+    }
+
+    @Benchmark
+    public int usersRecord() throws Exception {
+        return write(recordUserWriter, users);
+    }
+
+    @Benchmark
+    public int usersStreaming() throws Exception {
+        return write(streamingUserWriter, users);
+    }
+
+    private int write(ObjectWriter writer, Object value) throws Exception {
+        sink.reset();
+        writer.writeValue(sink, value);
+        return sink.size();
+    }
+
+    /** Shape of GetLoanDto before it became a record, kept as the baseline. */
+    public static class LegacyLoanDto {
+        private Long id;
+        private Double amount;
+        private Integer term;
+        private String type;
+        private String status;
+        private String clientName;
+
+        public LegacyLoanDto(Long id, Double amount, Integer term, String type, String status, String clientName) {
+            this.id = id;
+            this.amount = amount;
+            this.term = term;
+            this.type = type;
+            this.status = status;
+            this.clientName = clientName;
+        }
+
+        public Long getId() { return id; }
+        public Double getAmount() { return amount; }
+        public Integer getTerm() { return term; }
+        public String getType() { return type; }
+        public String getStatus() { return status; }
+        public String getClientName() { return clientName; }
+    }
+}
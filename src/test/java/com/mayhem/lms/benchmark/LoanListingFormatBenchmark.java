@@ -0,0 +1,105 @@
+package com.mayhem.lms.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.mayhem.lms.dto.GetLoanDto;
+import com.mayhem.lms.model.Money;
+import com.mayhem.lms.web.DtoJsonSerializers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Producing and parsing a 100k-loan listing as JSON, gzipped JSON (what server compression sends),
+ * CBOR and Smile. Payload sizes are printed once per format at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoanListingFormatBenchmark {
+
+    private static final String[] TYPES = {"Personal", "Mortgage", "Auto", "Student", "Medical"};
+    private static final String[] STATUSES = {"Pending", "Approved", "Rejected"};
+
+    @Param({"json", "json-gzip", "cbor", "smile"})
+    private String format;
+
+    @Param({"100000"})
+    private int size;
+
+    private List<GetLoanDto> loans;
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private byte[] encoded;
+    private final ByteArrayOutputStream sink = new ByteArrayOutputStream(16 << 20);
+
+    @Setup
+    public void setUp() throws Exception {
+        loans = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            loans.add(new GetLoanDto((long) i, Money.ofCents(50_000L + i * 7_919L % 5_000_000L), 12 + i % 48,
+                    TYPES[i % TYPES.length], STATUSES[i % STATUSES.length], "Client " + (i % 5_000)));
+        }
+        ObjectMapper mapper = new ObjectMapper(factory()).registerModule(new SimpleModule()
+                .addSerializer(new DtoJsonSerializers.GetLoanDtoSerializer()));
+        writer = mapper.writerFor(new TypeReference<List<GetLoanDto>>() { });
+        reader = mapper.readerFor(new TypeReference<List<GetLoanDto>>() { });
+        serialize();
+        encoded = sink.toByteArray();
+        System.out.printf("%n%s payload for %d loans: %d bytes%n", format, size, encoded.length);
+    }
+
+    @Benchmark
+    public int serialize() throws Exception {
+        sink.reset();
+        try (OutputStream out = gzip() ? new GZIPOutputStream(sink, 8192) : sink) {
+            writer.writeValue(out, loans);
+        }
+        return sink.size();
+    }
+
+    @Benchmark
+    public List<GetLoanDto> parse() throws Exception {
+        InputStream in = new ByteArrayInputStream(encoded);
+        return reader.readValue(gzip() ? new GZIPInputStream(in, 8192) : in);
+    }
+
+    private boolean gzip() {
+        return format.endsWith("-gzip");
+    }
+
+    private JsonFactory factory() {
+        return switch (format) {
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> new JsonFactory();
+        };
+    }
+}
@@ -0,0 +1,139 @@
+package com.mayhem.lms.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import com.mayhem.lms.config.RequestLogSampler;
+import com.mayhem.lms.web.CorrelationIdFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+import org.springframework.boot.logging.logback.StructuredLogEncoder;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging cost of one request on the loan lookup path: correlation id in the MDC and the four INFO lines
+ * LoanController and LoanServiceImpl write for a create and a lookup, into a file as the console would be.
+ * "sync-text" is the former setup (Boot's text pattern, appended on the request thread), "async-json" is
+ * logback-spring.xml with every line kept, "async-json-sampled" adds {@link RequestLogSampler} at 10%.
+ * The async appender drops INFO lines once its queue is 80% full, so with a single fast producer part of
+ * the gain is dropped lines; the log file size per variant shows how many were written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingOverheadBenchmark {
+
+    private static final Path LOG_DIR = Path.of("target", "logging-benchmark");
+
+    @Param({"sync-text", "async-json", "async-json-sampled"})
+    private String variant;
+
+    private LoggerContext context;
+    private Logger controllerLogger;
+    private Logger serviceLogger;
+    private long request;
+
+    @Setup
+    public void setUp() throws Exception {
+        Files.createDirectories(LOG_DIR);
+        Path file = LOG_DIR.resolve(variant + ".log");
+        Files.deleteIfExists(file);
+        context = new LoggerContext();
+        context.setMDCAdapter(MDC.getMDCAdapter());
+        context.putObject(Environment.class.getName(), new StandardEnvironment());
+        context.start();
+
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setName("FILE");
+        fileAppender.setFile(file.toString());
+        fileAppender.setEncoder(variant.equals("sync-text") ? textEncoder() : jsonEncoder());
+        fileAppender.start();
+
+        Appender<ILoggingEvent> appender = fileAppender;
+        if (!variant.equals("sync-text")) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setName("ASYNC_FILE");
+            async.setQueueSize(8192);
+            async.setIncludeCallerData(false);
+            async.addAppender(fileAppender);
+            async.start();
+            appender = async;
+        }
+        if (variant.equals("async-json-sampled")) {
+            RequestLogSampler sampler = new RequestLogSampler();
+            sampler.setContext(context);
+            sampler.addLoggerPrefix("com.mayhem.lms.controller");
+            sampler.addLoggerPrefix("com.mayhem.lms.service");
+            sampler.setRate(0.1);
+            sampler.start();
+            context.addTurboFilter(sampler);
+        }
+        Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(ch.qos.logback.classic.Level.INFO);
+        root.addAppender(appender);
+        controllerLogger = context.getLogger("com.mayhem.lms.controller.LoanController");
+        serviceLogger = context.getLogger("com.mayhem.lms.service.LoanServiceImpl");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.stop();
+        System.out.printf("%n%s: %d bytes logged%n", variant, Files.size(LOG_DIR.resolve(variant + ".log")));
+    }
+
+    @Benchmark
+    public void request() {
+        long id = ++request;
+        MDC.put(CorrelationIdFilter.MDC_KEY, Long.toHexString(id * 0x9E3779B97F4A7C15L));
+        try {
+            controllerLogger.info("Creating a new loan");
+            serviceLogger.info("Loan created successfully for userId: {}", id);
+            controllerLogger.info("Loan id {} found for user id: {}", id, id % 100);
+            serviceLogger.info("Loan status updated for loanId {} with statusId: {}", id, 2L);
+        } finally {
+            MDC.remove(CorrelationIdFilter.MDC_KEY);
+        }
+    }
+
+    private Encoder<ILoggingEvent> textEncoder() {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p --- [%15.15t] %-40.40logger{39} : %m%n");
+        encoder.start();
+        return encoder;
+    }
+
+    private Encoder<ILoggingEvent> jsonEncoder() {
+        StructuredLogEncoder encoder = new StructuredLogEncoder();
+        encoder.setContext(context);
+        encoder.setFormat("logstash");
+        encoder.start();
+        return encoder;
+    }
+}
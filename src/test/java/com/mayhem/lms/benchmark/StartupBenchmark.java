@@ -0,0 +1,159 @@
+package com.mayhem.lms.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Time from launching a JVM to the first 200 from GET /api/loan-types, for the default configuration and the
+ * faststart profile with and without class data sharing and AOT. Every run is a fresh JVM on an in-memory H2
+ * database, so it includes Flyway and Hibernate bootstrap; JMH does not fit process startup.
+ * <p>
+ * The AOT variant needs the classes of mvn -Pfaststart package in target/classes. The CDS archives are
+ * written to target/startup by one training run per variant. devtools is only in the default variant,
+ * and only when it is on the classpath (-Pbenchmark,devtools). Run with
+ * mvn -Pbenchmark,devtools test-compile exec:exec -Dbenchmark.main=com.mayhem.lms.benchmark.StartupBenchmark -Djmh.args=5
+ */
+public class StartupBenchmark {
+
+    private static final Path WORK_DIR = Path.of("target", "startup");
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+    private static final String AOT_INITIALIZER = "com.mayhem.lms.LmsApplication__ApplicationContextInitializer";
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 && args[0].matches("\\d+") ? Integer.parseInt(args[0]) : 5;
+        Files.createDirectories(WORK_DIR);
+        String classpath = System.getProperty("java.class.path");
+        String withoutDevtools = Arrays.stream(classpath.split(File.pathSeparator))
+                .filter(entry -> !entry.contains("spring-boot-devtools"))
+                .collect(Collectors.joining(File.pathSeparator));
+
+        List<Variant> variants = new ArrayList<>();
+        variants.add(new Variant("default", classpath, List.of(), false));
+        variants.add(new Variant("faststart", withoutDevtools, List.of("-Dspring.profiles.active=faststart"), false));
+        variants.add(new Variant("faststart+cds", withoutDevtools, List.of("-Dspring.profiles.active=faststart"), true));
+        if (isPresent(AOT_INITIALIZER)) {
+            variants.add(new Variant("faststart+cds+aot", withoutDevtools,
+                    List.of("-Dspring.profiles.active=faststart", "-Dspring.aot.enabled=true"), true));
+        } else {
+            System.out.println("No AOT classes in target/classes, run mvn -Pfaststart package first to include the AOT variant");
+        }
+        System.out.printf("devtools on the classpath of the default variant: %s%n", !classpath.equals(withoutDevtools));
+
+        List<String> report = new ArrayList<>();
+        for (Variant variant : variants) {
+            if (variant.cds()) {
+                Path archive = variant.archive();
+                Files.deleteIfExists(archive);
+                List<String> training = new ArrayList<>(variant.jvmArguments());
+                training.add("-XX:ArchiveClassesAtExit=" + archive);
+                training.add("-Xlog:cds=off");
+                training.add("-Dspring.context.exit=onRefresh");
+                launch(variant, training, "training").waitFor(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+            }
+            long[] millis = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                millis[run] = timeToFirstResponse(variant, run);
+            }
+            Arrays.sort(millis);
+            String line = String.format("%-20s runs=%d min=%dms median=%dms max=%dms", variant.name(), runs,
+                    millis[0], millis[runs / 2], millis[runs - 1]);
+            System.out.println(line);
+            report.add(line);
+        }
+        Files.write(WORK_DIR.resolve("report.txt"), report);
+        System.out.println("Report written to " + WORK_DIR.resolve("report.txt"));
+    }
+
+    private static long timeToFirstResponse(Variant variant, int run) throws Exception {
+        int port = freePort();
+        List<String> jvmArguments = new ArrayList<>(variant.jvmArguments());
+        if (variant.cds()) {
+            jvmArguments.add("-XX:SharedArchiveFile=" + variant.archive());
+            jvmArguments.add("-Xlog:cds=off");
+        }
+        jvmArguments.add("-Dserver.port=" + port);
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/loan-types"))
+                .timeout(Duration.ofSeconds(10)).build();
+
+        long start = System.nanoTime();
+        Process process = launch(variant, jvmArguments, "run-" + run);
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(variant.name() + " exited with " + process.exitValue()
+                            + ", see " + log(variant, "run-" + run));
+                }
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // not listening yet
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException(variant.name() + " did not answer within " + TIMEOUT);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static Process launch(Variant variant, List<String> jvmArguments, String label) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArguments);
+        command.add("-Dspring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_ON_EXIT=FALSE");
+        command.add("-Dspring.datasource.username=sa");
+        command.add("-Dspring.datasource.password=");
+        command.add("-Dspring.jpa.database-platform=org.hibernate.dialect.H2Dialect");
+        command.add("-Dlms.event-log.dir=" + WORK_DIR.resolve("events-" + variant.name() + "-" + label));
+        command.add("-cp");
+        command.add(variant.classpath());
+        command.add("com.mayhem.lms.LmsApplication");
+        File log = log(variant, label).toFile();
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+    }
+
+    private static Path log(Variant variant, String label) {
+        return WORK_DIR.resolve(variant.name() + "-" + label + ".log");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className, false, StartupBenchmark.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private record Variant(String name, String classpath, List<String> jvmArguments, boolean cds) {
+
+        Path archive() {
+            return WORK_DIR.resolve(name + ".jsa").toAbsolutePath();
+        }
+    }
+}
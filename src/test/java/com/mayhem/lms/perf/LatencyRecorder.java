@@ -0,0 +1,72 @@
+package com.mayhem.lms.perf;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects request latencies of one scenario from many threads. Every sample is kept, scenarios are
+ * sized in thousands of requests, so percentiles are exact rather than bucketed.
+ */
+public class LatencyRecorder {
+
+    private final long[] samples;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+    public LatencyRecorder(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * Record one request
+     * @param startNanos System.nanoTime() before sending
+     * @param endNanos System.nanoTime() after the response was read
+     * @param ok whether the response had the expected status
+     */
+    public void record(long startNanos, long endNanos, boolean ok) {
+        int index = count.getAndIncrement();
+        if (index < samples.length) {
+            samples[index] = endNanos - startNanos;
+        }
+        if (!ok) {
+            errors.incrementAndGet();
+        }
+        firstStart.accumulateAndGet(startNanos, Math::min);
+        lastEnd.accumulateAndGet(endNanos, Math::max);
+    }
+
+    /**
+     * @return summary of everything recorded so far
+     */
+    public Summary summarize() {
+        int recorded = Math.min(count.get(), samples.length);
+        long[] sorted = Arrays.copyOf(samples, recorded);
+        Arrays.sort(sorted);
+        double seconds = recorded == 0 ? 0 : (lastEnd.get() - firstStart.get()) / 1e9;
+        return new Summary(recorded, errors.get(), seconds == 0 ? 0 : recorded / seconds,
+                millis(sorted, 0.50), millis(sorted, 0.99), millis(sorted, 0.999));
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @param requests requests sent
+     * @param errors responses with an unexpected status
+     * @param throughput requests per second over the scenario's wall time
+     * @param p50Millis median latency
+     * @param p99Millis 99th percentile latency
+     * @param p999Millis 99.9th percentile latency
+     */
+    public record Summary(int requests, int errors, double throughput, double p50Millis, double p99Millis, double p999Millis) {
+    }
+}
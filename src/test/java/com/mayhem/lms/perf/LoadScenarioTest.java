@@ -0,0 +1,324 @@
+package com.mayhem.lms.perf;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End to end load test of the REST API. Boots the application on a random port against an in-memory
+ * H2 database in PostgreSQL mode, seeds it with {@link PerfDataGenerator} and drives scripted scenarios
+ * over HTTP from perf.concurrency client threads: a login storm, manager dashboards listing all loans,
+ * customers creating and updating loans, and managers working through the approval queue.
+ * <p>
+ * Each scenario reports throughput, p50/p99/p999 latency and SQL statements per request to
+ * target/perf/report.txt, and fails when p99 or SQL per request regress against
+ * src/test/resources/perf/baseline.properties. Latency is allowed perf.latency-tolerance (default 1.0,
+ * so up to twice the baseline) because machines differ; statement counts are deterministic and get 10%.
+ * Run with -Dperf.write-baseline=true to write fresh numbers to target/perf/baseline.properties.
+ * Rate limiting and adaptive concurrency limits are off, they would measure the limiters instead of the API.
+ * <p>
+ * Tagged perf and excluded from the default build: mvn -Pperf test
+ */
+@Tag("perf")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:perf;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "lms.rate-limit.enabled=false",
+        "lms.concurrency-limit.enabled=false",
+        "lms.event-log.dir=target/perf/loan-events-${random.uuid}",
+        "logging.level.com.mayhem.lms=WARN",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"})
+public class LoadScenarioTest {
+
+    private static final Path REPORT_DIR = Path.of("target", "perf");
+    private static final double SQL_TOLERANCE = 0.1;
+
+    private final int concurrency = Integer.getInteger("perf.concurrency", 16);
+    private final double latencyTolerance = Double.parseDouble(System.getProperty("perf.latency-tolerance", "1.0"));
+    private final Map<String, String> report = new LinkedHashMap<>();
+    private final Map<String, String> measured = new LinkedHashMap<>();
+    private final Map<Long, String> sessions = new ConcurrentHashMap<>();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private PerfDataGenerator.Spec spec;
+    private PerfDataGenerator.Dataset dataset;
+    private Properties baseline;
+    private ExecutorService clients;
+
+    @BeforeAll
+    public void seed() throws IOException {
+        spec = PerfDataGenerator.Spec.fromSystemProperties();
+        long start = System.nanoTime();
+        dataset = new PerfDataGenerator(jdbcTemplate).generate(spec);
+        report.put("dataset", String.format(Locale.ROOT, "%d customers, %d managers, %d loans, skew %.2f, seeded in %d ms",
+                spec.customers(), spec.managers(), dataset.loans(), spec.skew(), (System.nanoTime() - start) / 1_000_000));
+        baseline = new Properties();
+        try (InputStream in = getClass().getResourceAsStream("/perf/baseline.properties")) {
+            if (in != null) {
+                baseline.load(in);
+            }
+        }
+        clients = Executors.newFixedThreadPool(concurrency);
+    }
+
+    @AfterAll
+    public void writeReport() throws IOException {
+        clients.shutdownNow();
+        Files.createDirectories(REPORT_DIR);
+        StringBuilder text = new StringBuilder();
+        report.forEach((name, line) -> text.append(String.format("%-18s %s%n", name, line)));
+        Files.writeString(REPORT_DIR.resolve("report.txt"), text);
+        System.out.print(text);
+        if (Boolean.getBoolean("perf.write-baseline")) {
+            Properties fresh = new Properties();
+            fresh.putAll(measured);
+            try (Writer out = Files.newBufferedWriter(REPORT_DIR.resolve("baseline.properties"))) {
+                fresh.store(out, "Measured by LoadScenarioTest, copy to src/test/resources/perf to adopt");
+            }
+        }
+    }
+
+    @Test
+    @Order(1)
+    public void loginStorm() throws Exception {
+        int requests = Integer.getInteger("perf.login-storm.requests", 400);
+        run("login-storm", requests, i -> {
+            int customer = i % spec.customers();
+            HttpResponse<String> response = login("customer" + (customer + 1) + "@perf.test");
+            if (response.statusCode() == 200) {
+                sessions.put(dataset.customerIds()[customer], cookie(response));
+            }
+            return response.statusCode() == 200;
+        });
+    }
+
+    @Test
+    @Order(2)
+    public void managerDashboard() throws Exception {
+        int requests = Integer.getInteger("perf.manager-dashboard.requests", 100);
+        List<String> managers = managerSessions();
+        run("manager-dashboard", requests, i ->
+                send(get("/api/loans", managers.get(i % managers.size()))).statusCode() == 200);
+    }
+
+    @Test
+    @Order(3)
+    public void customerWrites() throws Exception {
+        int customers = Math.min(spec.customers(), Integer.getInteger("perf.customer-writes.customers", 500));
+        for (int i = 0; i < customers; i++) {
+            customerSession(i);
+        }
+        SplittableRandom seeds = new SplittableRandom(spec.seed());
+        long[] seedPerRequest = seeds.longs(customers).toArray();
+        run("customer-writes", customers * 2, i -> {
+            int customer = i / 2;
+            long userId = dataset.customerIds()[customer];
+            String session = customerSession(customer);
+            SplittableRandom random = new SplittableRandom(seedPerRequest[customer]);
+            if (i % 2 == 0) {
+                String body = String.format(Locale.ROOT, "{\"amount\":%d.00,\"term\":%d,\"userId\":%d,\"type\":1}",
+                        1000 + random.nextInt(20_000), 12 + random.nextInt(49), userId);
+                HttpResponse<String> created = send(json("POST", "/api/loans", body, session));
+                return created.statusCode() == 201;
+            }
+            // the loan this customer created is their newest one
+            Long loanId = jdbcTemplate.queryForObject("select max(loan_id) from loan where user_id = ?", Long.class, userId);
+            String body = String.format(Locale.ROOT, "{\"amount\":%d.50,\"term\":%d,\"loanTypes\":{\"id\":%d}}",
+                    1000 + random.nextInt(20_000), 12 + random.nextInt(49), 1 + random.nextInt(5));
+            return send(json("PUT", "/api/loans/" + loanId, body, session)).statusCode() == 200;
+        }, true);
+    }
+
+    @Test
+    @Order(4)
+    public void approvalQueue() throws Exception {
+        int requests = Integer.getInteger("perf.approval-queue.requests", 1000);
+        List<Long> pending = jdbcTemplate.queryForList(
+                "select loan_id from loan where status_id = 1 order by created_at, loan_id limit ?", Long.class, requests);
+        List<String> managers = managerSessions();
+        run("approval-queue", pending.size(), i -> {
+            String decision = i % 4 == 3 ? "reject" : "approve";
+            HttpRequest request = HttpRequest.newBuilder(uri("/api/loans/" + pending.get(i) + "/" + decision))
+                    .method("PATCH", HttpRequest.BodyPublishers.noBody())
+                    .header("Cookie", managers.get(i % managers.size()))
+                    .build();
+            return send(request).statusCode() == 200;
+        });
+    }
+
+    private void run(String scenario, int requests, Step step) throws Exception {
+        run(scenario, requests, step, false);
+    }
+
+    /**
+     * Run one scenario and compare it with the baseline
+     * @param scenario name used in the report and baseline keys
+     * @param requests number of requests
+     * @param step sends request i, returns whether the response was the expected one
+     * @param pairwise steps 2k and 2k+1 belong to one virtual user and run in order on one thread
+     */
+    private void run(String scenario, int requests, Step step, boolean pairwise) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        LatencyRecorder recorder = new LatencyRecorder(requests);
+        statistics.clear();
+        int stride = pairwise ? 2 : 1;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int first = 0; first < requests; first += stride) {
+            int from = first;
+            futures.add(clients.submit(() -> {
+                for (int i = from; i < Math.min(requests, from + stride); i++) {
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = step.send(i);
+                    } catch (IOException e) {
+                        ok = false;
+                    }
+                    recorder.record(start, System.nanoTime(), ok);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double sqlPerRequest = requests == 0 ? 0 : statistics.getPrepareStatementCount() / (double) requests;
+
+        LatencyRecorder.Summary summary = recorder.summarize();
+        report.put(scenario, String.format(Locale.ROOT,
+                "%6d requests %4d errors %9.1f req/s   p50 %8.2f ms  p99 %8.2f ms  p999 %8.2f ms  %6.2f SQL/request",
+                summary.requests(), summary.errors(), summary.throughput(), summary.p50Millis(), summary.p99Millis(),
+                summary.p999Millis(), sqlPerRequest));
+        measured.put(scenario + ".p99-ms", String.format(Locale.ROOT, "%.2f", summary.p99Millis()));
+        measured.put(scenario + ".sql-per-request", String.format(Locale.ROOT, "%.2f", sqlPerRequest));
+
+        List<String> regressions = new ArrayList<>();
+        if (summary.errors() > 0) {
+            regressions.add(summary.errors() + " unexpected responses");
+        }
+        String p99 = baseline.getProperty(scenario + ".p99-ms");
+        if (p99 != null && summary.p99Millis() > Double.parseDouble(p99) * (1 + latencyTolerance)) {
+            regressions.add(String.format(Locale.ROOT, "p99 %.2f ms, baseline %s ms", summary.p99Millis(), p99));
+        }
+        String sql = baseline.getProperty(scenario + ".sql-per-request");
+        if (sql != null && sqlPerRequest > Double.parseDouble(sql) * (1 + SQL_TOLERANCE) + 0.5) {
+            regressions.add(String.format(Locale.ROOT, "%.2f SQL/request, baseline %s", sqlPerRequest, sql));
+        }
+        assertTrue(regressions.isEmpty(), scenario + " regressed: " + String.join(", ", regressions));
+    }
+
+    private List<String> managerSessions() throws IOException, InterruptedException {
+        List<String> managers = new ArrayList<>();
+        for (int i = 0; i < dataset.managerIds().length; i++) {
+            String session = sessions.get(dataset.managerIds()[i]);
+            if (session == null) {
+                session = cookie(login("manager" + (i + 1) + "@perf.test"));
+                sessions.put(dataset.managerIds()[i], session);
+            }
+            managers.add(session);
+        }
+        return managers;
+    }
+
+    private String customerSession(int customer) throws IOException, InterruptedException {
+        long userId = dataset.customerIds()[customer];
+        String session = sessions.get(userId);
+        if (session == null) {
+            session = cookie(login("customer" + (customer + 1) + "@perf.test"));
+            sessions.put(userId, session);
+        }
+        return session;
+    }
+
+    private HttpResponse<String> login(String email) throws IOException, InterruptedException {
+        return send(json("POST", "/api/auth/login",
+                "{\"email\":\"" + email + "\",\"password\":\"" + PerfDataGenerator.PASSWORD + "\"}", null));
+    }
+
+    private static String cookie(HttpResponse<String> response) {
+        return response.headers().firstValue("Set-Cookie")
+                .map(header -> header.split(";", 2)[0])
+                .orElseThrow(() -> new IllegalStateException("No session cookie, status " + response.statusCode()));
+    }
+
+    private HttpRequest get(String path, String session) {
+        return HttpRequest.newBuilder(uri(path)).GET().header("Cookie", session).build();
+    }
+
+    private HttpRequest json(String method, String path, String body, String session) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path))
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json");
+        if (session != null) {
+            builder.header("Cookie", session);
+        }
+        return builder.build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        boolean send(int request) throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,147 @@
+package com.mayhem.lms.perf;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Seeds accounts, users, loans and the exposure index with JDBC batch inserts, bypassing the services
+ * so tens of thousands of rows load in seconds. Loans are spread over customers with a Zipf distribution:
+ * skew 0 is uniform, around 1 a few power users hold most loans. Ids are assigned here and the identity
+ * columns restarted past them, so the application keeps inserting normally afterwards.
+ * Everybody's password is {@link #PASSWORD}, hashed once.
+ */
+public class PerfDataGenerator {
+
+    public static final String PASSWORD = "secret";
+    private static final int BATCH_SIZE = 1000;
+    private static final long PENDING = 1;
+    private static final long APPROVED = 2;
+    private static final long REJECTED = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PerfDataGenerator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Cardinalities of the generated data, read from perf.* system properties
+     * @param customers customer accounts, customer{n}@perf.test
+     * @param managers manager accounts, manager{n}@perf.test
+     * @param loansPerCustomer average loans per customer
+     * @param skew Zipf exponent of loans per customer
+     * @param seed random seed, the same seed generates the same data
+     */
+    public record Spec(int customers, int managers, double loansPerCustomer, double skew, long seed) {
+        public static Spec fromSystemProperties() {
+            return new Spec(Integer.getInteger("perf.customers", 2000),
+                    Integer.getInteger("perf.managers", 10),
+                    Double.parseDouble(System.getProperty("perf.loans-per-customer", "5")),
+                    Double.parseDouble(System.getProperty("perf.skew", "0.8")),
+                    Long.getLong("perf.seed", 42));
+        }
+
+        public int loans() {
+            return (int) Math.round(customers * loansPerCustomer);
+        }
+    }
+
+    /**
+     * Seed an empty, migrated database
+     * @param spec
+     * @return generated ids
+     */
+    public Dataset generate(Spec spec) {
+        SplittableRandom random = new SplittableRandom(spec.seed());
+        String passwordHash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt());
+        int people = spec.managers() + spec.customers();
+
+        List<Object[]> accounts = new ArrayList<>(people);
+        List<Object[]> users = new ArrayList<>(people);
+        long[] customerIds = new long[spec.customers()];
+        long[] managerIds = new long[spec.managers()];
+        for (int i = 0; i < people; i++) {
+            long id = i + 1;
+            boolean manager = i < spec.managers();
+            int number = manager ? i + 1 : i - spec.managers() + 1;
+            String email = (manager ? "manager" : "customer") + number + "@perf.test";
+            accounts.add(new Object[]{id, manager ? 1L : 2L, email, passwordHash});
+            users.add(new Object[]{id, id, manager ? "Manager" : "Customer", "No" + number, "555" + String.format("%07d", number)});
+            if (manager) {
+                managerIds[i] = id;
+            } else {
+                customerIds[number - 1] = id;
+            }
+        }
+        batch("insert into account (account_id, role_id, email, password) values (?, ?, ?, ?)", accounts);
+        batch("insert into user_profile (user_id, account_id, first_name, last_name, phone_number) values (?, ?, ?, ?, ?)", users);
+
+        double[] cumulative = zipfCumulative(spec.customers(), spec.skew());
+        List<Object[]> loans = new ArrayList<>(BATCH_SIZE);
+        int loanCount = spec.loans();
+        for (int i = 0; i < loanCount; i++) {
+            long owner = customerIds[rank(cumulative, random.nextDouble())];
+            int roll = random.nextInt(100);
+            long status = roll < 50 ? PENDING : roll < 85 ? APPROVED : REJECTED;
+            long amountCents = 100_000L + random.nextLong(4_900_000L);
+            int term = 12 + random.nextInt(73);
+            loans.add(new Object[]{i + 1L, amountCents, term, owner, 1L + random.nextInt(5), status});
+            if (loans.size() == BATCH_SIZE) {
+                batch("insert into loan (loan_id, amount_cents, term, user_id, type_id, status_id) values (?, ?, ?, ?, ?, ?)", loans);
+                loans.clear();
+            }
+        }
+        batch("insert into loan (loan_id, amount_cents, term, user_id, type_id, status_id) values (?, ?, ?, ?, ?, ?)", loans);
+
+        jdbcTemplate.update("delete from user_exposure");
+        jdbcTemplate.update("insert into user_exposure (user_id, pending_loans, pending_cents, approved_loans, approved_cents, rejected_loans, monthly_installment_cents) " +
+                "select u.user_id, " +
+                "count(case when l.status_id = 1 then 1 end), coalesce(sum(case when l.status_id = 1 then l.amount_cents end), 0), " +
+                "count(case when l.status_id = 2 then 1 end), coalesce(sum(case when l.status_id = 2 then l.amount_cents end), 0), " +
+                "count(case when l.status_id = 3 then 1 end), " +
+                "coalesce(sum(case when l.status_id in (1, 2) then case when l.term > 0 then l.amount_cents / l.term else l.amount_cents end end), 0) " +
+                "from user_profile u left join loan l on l.user_id = u.user_id group by u.user_id");
+
+        jdbcTemplate.execute("alter table account alter column account_id restart with " + (people + 1));
+        jdbcTemplate.execute("alter table user_profile alter column user_id restart with " + (people + 1));
+        jdbcTemplate.execute("alter table loan alter column loan_id restart with " + (loanCount + 1));
+        return new Dataset(customerIds, managerIds, loanCount);
+    }
+
+    /**
+     * @param customerIds user ids of customers, in rank order (the first holds most loans)
+     * @param managerIds user ids of managers
+     * @param loans number of generated loans, ids 1 to loans
+     */
+    public record Dataset(long[] customerIds, long[] managerIds, int loans) {
+    }
+
+    private void batch(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(rows.size(), from + BATCH_SIZE)));
+        }
+    }
+
+    private static double[] zipfCumulative(int n, double skew) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int rank(double[] cumulative, double u) {
+        int index = Arrays.binarySearch(cumulative, u);
+        return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+    }
+}